@@ -0,0 +1,45 @@
+package com.kesik.bladecommerce.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Enables @Async work that must not block the request that triggered it (back-in-stock mail fan-out)
+ * and holds the executors for blocking I/O that must stay off the scheduler threads
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+    /**
+     * Small pool: notification runs are I/O bound against one SMTP server, which throttles parallel sessions
+     */
+    @Bean
+    public ThreadPoolTaskExecutor notificationExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(500);
+        executor.setThreadNamePrefix("notification-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Writes to stock stream (SSE) clients. A slow client blocks one of these threads, never the scheduler;
+     * each stream has at most one task queued (its pending levels are coalesced)
+     */
+    @Bean
+    public ThreadPoolTaskExecutor stockStreamExecutor(@Value("${stock.stream.send-threads:4}") int sendThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(sendThreads);
+        executor.setMaxPoolSize(sendThreads);
+        executor.setQueueCapacity(10000);
+        executor.setThreadNamePrefix("stock-stream-");
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,26 @@
+package com.kesik.bladecommerce.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Registers ETag / conditional GET handling on catalog read endpoints
+ */
+@Configuration
+public class CatalogCacheConfig implements WebMvcConfigurer {
+
+    private final CatalogETagInterceptor catalogETagInterceptor;
+
+    public CatalogCacheConfig(CatalogETagInterceptor catalogETagInterceptor) {
+        this.catalogETagInterceptor = catalogETagInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(catalogETagInterceptor)
+                .addPathPatterns("/api/knives", "/api/knives/**", "/api/categories", "/api/categories/**")
+                // Rankings change with orders, not with the catalog version - a catalog ETag would serve them stale
+                .excludePathPatterns("/api/knives/best-sellers", "/api/knives/*/bought-together");
+    }
+}
@@ -2,15 +2,31 @@ package com.kesik.bladecommerce.config;
 
 import com.kesik.bladecommerce.dto.knife.KnifeDto;
 import com.kesik.bladecommerce.dto.order.OrderDto;
+import com.kesik.bladecommerce.entity.BackInStockSubscription;
+import com.kesik.bladecommerce.entity.OrderPlacementIntent;
+import com.kesik.bladecommerce.entity.ProductRanking;
+import com.kesik.bladecommerce.entity.StockDriftReport;
+import com.kesik.bladecommerce.entity.StockMovement;
+import com.kesik.bladecommerce.entity.StockReservation;
+import com.kesik.bladecommerce.entity.StockShard;
 import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
 import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
 import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.List;
 
 @Configuration
+@Slf4j
 public class MongoIndexConfig {
 
     @Autowired
@@ -20,6 +36,12 @@ public class MongoIndexConfig {
     public void initIndexes() {
         createOrderIndexes();
         createKnifeIndexes();
+        createStockReservationIndexes();
+        createStockShardIndexes();
+        createOrderPlacementIntentIndexes();
+        createStockLedgerIndexes();
+        createBackInStockIndexes();
+        createProductRankingIndexes();
     }
 
     private void createOrderIndexes() {
@@ -27,6 +49,12 @@ public class MongoIndexConfig {
         mongoTemplate.indexOps(OrderDto.class)
             .ensureIndex(new Index("orderDate", Sort.Direction.DESC));
 
+        // Compound index for keyset (cursor) pagination on (orderDate, _id)
+        mongoTemplate.indexOps(OrderDto.class)
+            .ensureIndex(new Index()
+                .on("orderDate", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC));
+
         // Index for status filtering
         mongoTemplate.indexOps(OrderDto.class)
             .ensureIndex(new Index("orderStatus.orderStatusCode", Sort.Direction.ASC));
@@ -56,9 +84,51 @@ public class MongoIndexConfig {
 
         mongoTemplate.indexOps(OrderDto.class)
             .ensureIndex(new Index("phoneNumber", Sort.Direction.ASC));
+
+        // Placement recovery: which intents got as far as saving their order
+        mongoTemplate.indexOps(OrderDto.class)
+            .ensureIndex(new Index("placementIntentId", Sort.Direction.ASC).sparse());
+
+        createOrderNumberIndex();
+    }
+
+    /**
+     * Unique order numbers - safety net for the counter allocator (legacy orders without a number are skipped).
+     * Legacy hashed numbers may already collide; the index is then skipped instead of failing startup.
+     */
+    private void createOrderNumberIndex() {
+        Aggregation duplicates = Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("orderNumber").gt("")),
+            Aggregation.group("orderNumber").count().as("count"),
+            Aggregation.match(Criteria.where("count").gt(1)),
+            Aggregation.limit(5))
+            .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+        List<Document> found = mongoTemplate.aggregate(duplicates, OrderDto.class, Document.class).getMappedResults();
+        if (!found.isEmpty()) {
+            log.error("Unique index on orders.orderNumber not created: duplicate order numbers exist (e.g. {}). "
+                + "Run POST /api/orders/migrate-order-numbers to renumber them, then restart.",
+                found.stream().map(doc -> String.valueOf(doc.get("_id"))).toList());
+            return;
+        }
+        try {
+            mongoTemplate.indexOps(OrderDto.class)
+                .ensureIndex(new Index("orderNumber", Sort.Direction.ASC).unique()
+                    .partial(PartialIndexFilter.of(Criteria.where("orderNumber").gt(""))));
+        } catch (Exception e) {
+            log.error("Unique index on orders.orderNumber not created: {}. "
+                + "Run POST /api/orders/migrate-order-numbers to renumber duplicates, then restart.", e.getMessage());
+        }
     }
 
     private void createKnifeIndexes() {
+        // Unique slug for product page lookups (sparse until existing knives are backfilled)
+        mongoTemplate.indexOps(KnifeDto.class)
+            .ensureIndex(new Index("slug", Sort.Direction.ASC).unique().sparse());
+
+        // Index for exact name lookups (/api/knives/name/{name})
+        mongoTemplate.indexOps(KnifeDto.class)
+            .ensureIndex(new Index("name", Sort.Direction.ASC));
+
         // Index for category filtering (most common filter)
         mongoTemplate.indexOps(KnifeDto.class)
             .ensureIndex(new Index("categoryId", Sort.Direction.ASC));
@@ -67,6 +137,23 @@ public class MongoIndexConfig {
         mongoTemplate.indexOps(KnifeDto.class)
             .ensureIndex(new Index("price", Sort.Direction.ASC));
 
+        // Compound index for keyset (cursor) pagination on (price, _id)
+        mongoTemplate.indexOps(KnifeDto.class)
+            .ensureIndex(new Index()
+                .on("price", Sort.Direction.ASC)
+                .on("_id", Sort.Direction.ASC));
+
+        // Compound indexes for effective price / biggest discount sorting (also serve onSaleOnly)
+        mongoTemplate.indexOps(KnifeDto.class)
+            .ensureIndex(new Index()
+                .on("effectivePrice", Sort.Direction.ASC)
+                .on("_id", Sort.Direction.ASC));
+
+        mongoTemplate.indexOps(KnifeDto.class)
+            .ensureIndex(new Index()
+                .on("discountPercent", Sort.Direction.ASC)
+                .on("_id", Sort.Direction.ASC));
+
         // Index for discounted items
         mongoTemplate.indexOps(KnifeDto.class)
             .ensureIndex(new Index("discountPrice", Sort.Direction.ASC));
@@ -89,6 +176,12 @@ public class MongoIndexConfig {
                 .on("categoryId", Sort.Direction.ASC)
                 .on("price", Sort.Direction.ASC));
 
+        // Category + price range filter (ranges are on effectivePrice)
+        mongoTemplate.indexOps(KnifeDto.class)
+            .ensureIndex(new Index()
+                .on("categoryId", Sort.Direction.ASC)
+                .on("effectivePrice", Sort.Direction.ASC));
+
         // Text index for product search
         mongoTemplate.indexOps(KnifeDto.class)
             .ensureIndex(new TextIndexDefinition.TextIndexDefinitionBuilder()
@@ -97,4 +190,96 @@ public class MongoIndexConfig {
                 .onField("knifeType")
                 .build());
     }
-}
\ No newline at end of file
+
+    private void createStockReservationIndexes() {
+        // Expiry sweep: ACTIVE reservations past expiresAt
+        mongoTemplate.indexOps(StockReservation.class)
+            .ensureIndex(new Index()
+                .on("status", Sort.Direction.ASC)
+                .on("expiresAt", Sort.Direction.ASC));
+
+        // Open reservations per client (abuse limit)
+        mongoTemplate.indexOps(StockReservation.class)
+            .ensureIndex(new Index()
+                .on("clientKey", Sort.Direction.ASC)
+                .on("status", Sort.Direction.ASC)
+                .sparse());
+
+        // TTL: purgeAt is only set once a reservation is CONFIRMED or RELEASED,
+        // so MongoDB never deletes a reservation that still holds stock
+        mongoTemplate.indexOps(StockReservation.class)
+            .ensureIndex(new Index("purgeAt", Sort.Direction.ASC).expire(0));
+    }
+
+    private void createStockShardIndexes() {
+        // Shard lookup per knife (decrement, sum, sync)
+        mongoTemplate.indexOps(StockShard.class)
+            .ensureIndex(new Index("knifeId", Sort.Direction.ASC));
+
+        // Sync job: striped knives only
+        mongoTemplate.indexOps(KnifeDto.class)
+            .ensureIndex(new Index("stockStriped", Sort.Direction.ASC));
+    }
+
+    private void createOrderPlacementIntentIndexes() {
+        // Recovery worker: stale PENDING intents, oldest first
+        mongoTemplate.indexOps(OrderPlacementIntent.class)
+            .ensureIndex(new Index()
+                .on("status", Sort.Direction.ASC)
+                .on("createdAt", Sort.Direction.ASC));
+
+        // TTL: purgeAt is only set once an intent is COMPLETED or COMPENSATED
+        mongoTemplate.indexOps(OrderPlacementIntent.class)
+            .ensureIndex(new Index("purgeAt", Sort.Direction.ASC).expire(0));
+    }
+
+    private void createStockLedgerIndexes() {
+        // Ledger tail and history per knife: movements after a snapshot's compactedBefore, newest first
+        mongoTemplate.indexOps(StockMovement.class)
+            .ensureIndex(new Index()
+                .on("knifeId", Sort.Direction.ASC)
+                .on("_id", Sort.Direction.ASC));
+
+        // Reconciliation reports: latest first, removed after the retention period
+        mongoTemplate.indexOps(StockDriftReport.class)
+            .ensureIndex(new Index("generatedAt", Sort.Direction.DESC));
+        mongoTemplate.indexOps(StockDriftReport.class)
+            .ensureIndex(new Index("purgeAt", Sort.Direction.ASC).expire(0));
+    }
+
+    private void createBackInStockIndexes() {
+        // One subscription per shopper and knife
+        mongoTemplate.indexOps(BackInStockSubscription.class)
+            .ensureIndex(new Index()
+                .on("knifeId", Sort.Direction.ASC)
+                .on("email", Sort.Direction.ASC)
+                .unique());
+
+        // Restock fan-out: waiting subscribers of a knife, paged by _id
+        mongoTemplate.indexOps(BackInStockSubscription.class)
+            .ensureIndex(new Index()
+                .on("knifeId", Sort.Direction.ASC)
+                .on("notifiedAt", Sort.Direction.ASC)
+                .on("_id", Sort.Direction.ASC));
+
+        // Confirmation / unsubscribe links
+        mongoTemplate.indexOps(BackInStockSubscription.class)
+            .ensureIndex(new Index("token", Sort.Direction.ASC).unique().sparse());
+
+        // Unconfirmed subscriptions per address (bounds confirmation mails to one address)
+        mongoTemplate.indexOps(BackInStockSubscription.class)
+            .ensureIndex(new Index()
+                .on("email", Sort.Direction.ASC)
+                .on("confirmedAt", Sort.Direction.ASC));
+
+        // TTL: purgeAt is set while a subscription awaits confirmation and once the subscriber was notified
+        mongoTemplate.indexOps(BackInStockSubscription.class)
+            .ensureIndex(new Index("purgeAt", Sort.Direction.ASC).expire(0));
+    }
+
+    private void createProductRankingIndexes() {
+        // Best sellers by units sold
+        mongoTemplate.indexOps(ProductRanking.class)
+            .ensureIndex(new Index("quantity", Sort.Direction.DESC));
+    }
+}
@@ -0,0 +1,78 @@
+package com.kesik.bladecommerce.config;
+
+import com.kesik.bladecommerce.util.RetryBackoff;
+import com.mongodb.MongoException;
+import com.mongodb.ReadConcern;
+import com.mongodb.TransactionOptions;
+import com.mongodb.WriteConcern;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Transactional order placement (orders.placement.transactional=true).
+ * Requires MongoDB running as a replica set; without this config orders use compensating rollbacks.
+ */
+@Configuration
+@ConditionalOnProperty(name = "orders.placement.transactional", havingValue = "true")
+public class MongoTransactionConfig {
+
+    @Bean
+    public MongoTransactionManager transactionManager(MongoDatabaseFactory databaseFactory,
+                                                      @Value("${orders.placement.commit-retries:3}") int commitRetries,
+                                                      @Value("${orders.placement.retry-backoff-ms:20}") long backoffMs,
+                                                      @Value("${orders.placement.retry-backoff-max-ms:500}") long backoffMaxMs) {
+        TransactionOptions options = TransactionOptions.builder()
+                .readConcern(ReadConcern.SNAPSHOT)
+                .writeConcern(WriteConcern.MAJORITY)
+                .build();
+        return new RetryingCommitTransactionManager(databaseFactory, options, commitRetries, backoffMs, backoffMaxMs);
+    }
+
+    @Bean
+    public TransactionTemplate orderTransactionTemplate(MongoTransactionManager transactionManager) {
+        return new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Retries commitTransaction while the server labels the outcome as unknown (commit is idempotent)
+     */
+    @Slf4j
+    static class RetryingCommitTransactionManager extends MongoTransactionManager {
+
+        private final int commitRetries;
+        private final long backoffMs;
+        private final long backoffMaxMs;
+
+        RetryingCommitTransactionManager(MongoDatabaseFactory databaseFactory, TransactionOptions options, int commitRetries,
+                                         long backoffMs, long backoffMaxMs) {
+            super(databaseFactory, options);
+            this.commitRetries = commitRetries;
+            this.backoffMs = backoffMs;
+            this.backoffMaxMs = backoffMaxMs;
+        }
+
+        @Override
+        protected void doCommit(MongoTransactionObject transactionObject) throws Exception {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    transactionObject.commitTransaction();
+                    return;
+                } catch (MongoException e) {
+                    if (attempt > commitRetries || !e.hasErrorLabel(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL)) {
+                        throw e;
+                    }
+                    log.warn("Commit result unknown, retrying commit (attempt {})", attempt);
+                    if (!RetryBackoff.pause(backoffMs, backoffMaxMs, attempt)) {
+                        throw e;
+                    }
+                }
+            }
+        }
+    }
+}
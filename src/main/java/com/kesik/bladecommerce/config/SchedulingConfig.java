@@ -0,0 +1,12 @@
+package com.kesik.bladecommerce.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled background jobs (catalog snapshot refresh etc.)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -72,11 +72,17 @@ public class SecurityConfig {
 
                         // Product browsing (read-only) - customers can browse
                         .requestMatchers(HttpMethod.GET, "/api/knives/**").permitAll()
+                        // Batch product lookup (read-only, POST only for long id lists)
+                        .requestMatchers(HttpMethod.POST, "/api/knives/batch").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/categories/**").permitAll()
 
                         // Stock checking - customers need to check availability
                         .requestMatchers(HttpMethod.GET, "/api/stock/**").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/stock/check-batch").permitAll()
+                        .requestMatchers(HttpMethod.POST, "/api/stock/back-in-stock").permitAll()
+                        // Checkout stock reservations (hold / early release)
+                        .requestMatchers(HttpMethod.POST, "/api/stock/reservations").permitAll()
+                        .requestMatchers(HttpMethod.DELETE, "/api/stock/reservations/*").permitAll()
 
                         // Order creation - customers can place orders
                         .requestMatchers(HttpMethod.POST, "/api/orders").permitAll()
@@ -111,10 +117,12 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/api/orders").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.GET, "/api/orders/search").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.GET, "/api/orders/statistics").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.GET, "/api/orders/export").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.GET, "/api/orders/status/{status}").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.PUT, "/api/orders/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.DELETE, "/api/orders/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.POST, "/api/orders/migrate-order-numbers").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.POST, "/api/orders/statistics/rollups/rebuild").hasRole("ADMIN")
 
                         // Single order by ID - admin only (customers don't have accounts)
                         .requestMatchers(HttpMethod.GET, "/api/orders/{id}").hasRole("ADMIN")
@@ -2,6 +2,7 @@ package com.kesik.bladecommerce.controller;
 
 import com.kesik.bladecommerce.service.CategoryService;
 import com.kesik.bladecommerce.service.KnifeService;
+import com.kesik.bladecommerce.service.ProductAnalyticsService;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -13,10 +14,13 @@ import java.util.Map;
 public class AdminStatsController {
     private final CategoryService categoryService;
     private final KnifeService knifeService;
+    private final ProductAnalyticsService productAnalyticsService;
 
-    public AdminStatsController(CategoryService categoryService, KnifeService knifeService) {
+    public AdminStatsController(CategoryService categoryService, KnifeService knifeService,
+                                ProductAnalyticsService productAnalyticsService) {
         this.categoryService = categoryService;
         this.knifeService = knifeService;
+        this.productAnalyticsService = productAnalyticsService;
     }
 
     @GetMapping("/category-product-counts")
@@ -31,4 +35,16 @@ public class AdminStatsController {
             .toList();
     }
 
+    // Fold new orders into the product rankings now instead of waiting for the scheduled run
+    @PostMapping("/product-rankings/refresh")
+    public Map<String, Object> refreshProductRankings() {
+        return Map.of("processedOrders", productAnalyticsService.refresh());
+    }
+
+    // Recompute the product rankings from every order
+    @PostMapping("/product-rankings/rebuild")
+    public Map<String, Object> rebuildProductRankings() {
+        return Map.of("processedOrders", productAnalyticsService.rebuild());
+    }
+
 }
\ No newline at end of file
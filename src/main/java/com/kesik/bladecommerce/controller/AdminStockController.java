@@ -0,0 +1,79 @@
+package com.kesik.bladecommerce.controller;
+
+import com.kesik.bladecommerce.dto.stock.StockLedgerResponse;
+import com.kesik.bladecommerce.dto.stock.StockStripingStatus;
+import com.kesik.bladecommerce.entity.StockDriftReport;
+import com.kesik.bladecommerce.service.StockLedgerService;
+import com.kesik.bladecommerce.service.StockReconciliationService;
+import com.kesik.bladecommerce.service.StockShardService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/stock")
+public class AdminStockController {
+    private final StockShardService stockShardService;
+    private final StockLedgerService stockLedgerService;
+    private final StockReconciliationService stockReconciliationService;
+
+    public AdminStockController(StockShardService stockShardService, StockLedgerService stockLedgerService,
+                                StockReconciliationService stockReconciliationService) {
+        this.stockShardService = stockShardService;
+        this.stockLedgerService = stockLedgerService;
+        this.stockReconciliationService = stockReconciliationService;
+    }
+
+    @GetMapping("/striping/{knifeId}")
+    public StockStripingStatus getStriping(@PathVariable String knifeId) {
+        return stockShardService.getStatus(knifeId);
+    }
+
+    // Split a hot knife's stock across several shard documents before a limited drop
+    @PostMapping("/striping/{knifeId}")
+    public StockStripingStatus enableStriping(@PathVariable String knifeId,
+                                              @RequestParam(defaultValue = "8") int stripes) {
+        log.info("Enabling striped stock for knife {} with {} stripes", knifeId, stripes);
+        return stockShardService.enableStriping(knifeId, stripes);
+    }
+
+    // Fold the shards back into the knife document once demand is back to normal
+    @DeleteMapping("/striping/{knifeId}")
+    public StockStripingStatus disableStriping(@PathVariable String knifeId) {
+        log.info("Disabling striped stock for knife {}", knifeId);
+        return stockShardService.disableStriping(knifeId);
+    }
+
+    // Stock level rebuilt from the ledger (snapshot plus tail) with the latest movements, for audits
+    @GetMapping("/ledger/{knifeId}")
+    public StockLedgerResponse getLedger(@PathVariable String knifeId,
+                                         @RequestParam(defaultValue = "50") int limit) {
+        return stockLedgerService.getLedger(knifeId, limit);
+    }
+
+    // Run ledger compaction now instead of waiting for the scheduled run
+    @PostMapping("/ledger/compact")
+    public Map<String, Object> compactLedger() {
+        stockLedgerService.flush();
+        int compacted = stockLedgerService.compact();
+        log.info("Stock ledger compaction compacted {} knives", compacted);
+        return Map.of("success", true, "compactedCount", compacted);
+    }
+
+    // Latest drift report of the scheduled reconciliation (404 before the first run)
+    @GetMapping("/reconciliation")
+    public ResponseEntity<StockDriftReport> getLatestReconciliation() {
+        StockDriftReport report = stockReconciliationService.getLatestReport();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.notFound().build();
+    }
+
+    // Reconcile now; autoCorrect returns units that left stock without an order
+    @PostMapping("/reconciliation")
+    public StockDriftReport reconcile(@RequestParam(defaultValue = "false") boolean autoCorrect) {
+        log.info("Running stock reconciliation (autoCorrect={})", autoCorrect);
+        return stockReconciliationService.reconcile(autoCorrect);
+    }
+}
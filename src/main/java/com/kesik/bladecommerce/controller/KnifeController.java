@@ -2,9 +2,18 @@ package com.kesik.bladecommerce.controller;
 
 import com.kesik.bladecommerce.dto.PaginatedResponse;
 import com.kesik.bladecommerce.dto.knife.AddKnifeRequestDto;
+import com.kesik.bladecommerce.dto.knife.BestSeller;
+import com.kesik.bladecommerce.dto.knife.BoughtTogether;
+import com.kesik.bladecommerce.dto.knife.KnifeBatchResponse;
 import com.kesik.bladecommerce.dto.knife.KnifeDto;
+import com.kesik.bladecommerce.dto.knife.KnifeSearchResponse;
+import com.kesik.bladecommerce.dto.knife.KnifeSortField;
+import com.kesik.bladecommerce.dto.knife.KnifeSuggestion;
+import com.kesik.bladecommerce.dto.knife.KnifeSummary;
 import com.kesik.bladecommerce.dto.knife.UpdateKnifeRequestDto;
 import com.kesik.bladecommerce.service.KnifeService;
+import com.kesik.bladecommerce.service.KnifeSuggestService;
+import com.kesik.bladecommerce.service.ProductAnalyticsService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -12,42 +21,140 @@ import org.springframework.web.bind.annotation.*;
 import jakarta.validation.Valid;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/knives")
 public class KnifeController {
 
     private final KnifeService knifeService;
+    private final KnifeSuggestService knifeSuggestService;
+    private final ProductAnalyticsService productAnalyticsService;
 
-    public KnifeController(KnifeService knifeService) {
+    public KnifeController(KnifeService knifeService, KnifeSuggestService knifeSuggestService,
+                           ProductAnalyticsService productAnalyticsService) {
         this.knifeService = knifeService;
+        this.knifeSuggestService = knifeSuggestService;
+        this.productAnalyticsService = productAnalyticsService;
     }
 
     // Get all knives or search with filters - with 1-based pagination
+    // Passing a cursor parameter (empty for the first page) switches to keyset pagination
+    // view=summary returns lightweight KnifeSummary cards instead of full KnifeDto documents
+    // sortBy=price|effectivePrice|discount (|relevance for text search), onSaleOnly=true keeps discounted knives only
     @GetMapping
-    public PaginatedResponse<KnifeDto> getKnives(@RequestParam(required = false) String searchTerm,
+    public PaginatedResponse<?> getKnives(@RequestParam(required = false) String searchTerm,
                                                 @RequestParam(required = false) Integer categoryId,
                                                 @RequestParam(required = false) Double minPrice,
                                                 @RequestParam(required = false) Double maxPrice,
                                                 @RequestParam(required = false) String knifeType,
                                                 @RequestParam(required = false) String bladeMaterial,
+                                                @RequestParam(defaultValue = "false") boolean onSaleOnly,
                                                 @RequestParam(defaultValue = "asc") String sortDirection,
                                                 @RequestParam(defaultValue = "0") int page,
-                                                @RequestParam(defaultValue = "20") int size) {
+                                                @RequestParam(defaultValue = "20") int size,
+                                                @RequestParam(required = false) String cursor,
+                                                @RequestParam(defaultValue = "regex") String searchMode,
+                                                @RequestParam(defaultValue = "price") String sortBy,
+                                                @RequestParam(defaultValue = "full") String view) {
+        boolean summaryView = "summary".equalsIgnoreCase(view);
+
+        // searchMode=text runs an index-backed $text search; sortBy=relevance ranks it by text score
+        if ("text".equalsIgnoreCase(searchMode) && searchTerm != null && !searchTerm.isBlank()) {
+            if (cursor != null) {
+                throw new IllegalArgumentException("Cursor pagination is not supported with text search");
+            }
+            Page<KnifeDto> knivePage = knifeService.searchKnivesByText(
+                searchTerm, categoryId, minPrice, maxPrice, knifeType, bladeMaterial, onSaleOnly,
+                sortBy, sortDirection, PageRequest.of(page, size)
+            );
+            return summaryView ? PaginatedResponse.fromPage(knivePage.map(KnifeSummary::from))
+                               : PaginatedResponse.fromPage(knivePage);
+        }
+
+        if (cursor != null) {
+            if (KnifeSortField.from(sortBy) != KnifeSortField.PRICE) {
+                throw new IllegalArgumentException("Cursor pagination only supports sortBy=price");
+            }
+            PaginatedResponse<KnifeDto> knives = knifeService.searchKnivesByCursor(
+                searchTerm, categoryId, minPrice, maxPrice,
+                knifeType, bladeMaterial, onSaleOnly, sortDirection, cursor, size
+            );
+            return summaryView ? knives.map(KnifeSummary::from) : knives;
+        }
 
         // Page is already 0-based from frontend conversion
         Pageable pageable = PageRequest.of(page, size);
 
+        if (summaryView) {
+            return PaginatedResponse.fromPage(knifeService.searchKnifeSummaries(
+                searchTerm, categoryId, minPrice, maxPrice,
+                knifeType, bladeMaterial, onSaleOnly, sortBy, sortDirection, pageable
+            ));
+        }
+
         // Get paginated results from service
         Page<KnifeDto> knivePage = knifeService.searchKnivesPageable(
             searchTerm, categoryId, minPrice, maxPrice,
-            knifeType, bladeMaterial, sortDirection, pageable
+            knifeType, bladeMaterial, onSaleOnly, sortBy, sortDirection, pageable
         );
 
         // Return 1-based pagination response (auto-converts 0-based Spring Boot page to 1-based)
         return PaginatedResponse.fromPage(knivePage);
     }
 
+    // Filtered page plus sidebar facet counts in one round trip - same parameters as getKnives
+    @GetMapping("/facets")
+    public KnifeSearchResponse getKnivesWithFacets(@RequestParam(required = false) String searchTerm,
+                                                   @RequestParam(required = false) Integer categoryId,
+                                                   @RequestParam(required = false) Double minPrice,
+                                                   @RequestParam(required = false) Double maxPrice,
+                                                   @RequestParam(required = false) String knifeType,
+                                                   @RequestParam(required = false) String bladeMaterial,
+                                                   @RequestParam(defaultValue = "false") boolean onSaleOnly,
+                                                   @RequestParam(defaultValue = "price") String sortBy,
+                                                   @RequestParam(defaultValue = "asc") String sortDirection,
+                                                   @RequestParam(defaultValue = "0") int page,
+                                                   @RequestParam(defaultValue = "20") int size) {
+        Pageable pageable = PageRequest.of(page, size);
+        return knifeService.searchKnivesWithFacets(
+            searchTerm, categoryId, minPrice, maxPrice,
+            knifeType, bladeMaterial, onSaleOnly, sortBy, sortDirection, pageable
+        );
+    }
+
+    // Type-ahead suggestions from the in-memory suggester (no database call)
+    @GetMapping("/suggest")
+    public List<KnifeSuggestion> suggest(@RequestParam String q,
+                                         @RequestParam(defaultValue = "8") int limit) {
+        return knifeSuggestService.suggest(q, limit);
+    }
+
+    // Most sold knives by units, from the precomputed product rankings
+    @GetMapping("/best-sellers")
+    public List<BestSeller> getBestSellers(@RequestParam(defaultValue = "10") int limit) {
+        return productAnalyticsService.getBestSellers(limit);
+    }
+
+    // "Frequently bought together" for a product page, from the precomputed product rankings
+    @GetMapping("/{id}/bought-together")
+    public List<BoughtTogether> getBoughtTogether(@PathVariable String id,
+                                                  @RequestParam(defaultValue = "4") int limit) {
+        return productAnalyticsService.getBoughtTogether(id, limit);
+    }
+
+    // Resolve several knives in one request: /batch?ids=a,b,c - preserves order and lists missing ids
+    @GetMapping("/batch")
+    public KnifeBatchResponse getKnivesBatch(@RequestParam List<String> ids) {
+        return knifeService.getKnivesByIds(ids);
+    }
+
+    // Same as GET /batch for id lists too long for a query string (public, see SecurityConfig)
+    @PostMapping("/batch")
+    public KnifeBatchResponse getKnivesBatchPost(@RequestBody List<String> ids) {
+        return knifeService.getKnivesByIds(ids);
+    }
+
     // Get single knife by ID
     @GetMapping("/{id}")
     public KnifeDto getKnifeById(@PathVariable String id) {
@@ -60,6 +167,24 @@ public class KnifeController {
         return knifeService.getKnifeByName(name);
     }
 
+    // Get knife by URL slug (product pages)
+    @GetMapping("/slug/{slug}")
+    public KnifeDto getKnifeBySlug(@PathVariable String slug) {
+        return knifeService.getKnifeBySlug(slug);
+    }
+
+    // Backfill slugs for knives created before slugs were stored
+    @PostMapping("/migrate-slugs")
+    public Map<String, Object> migrateSlugs() {
+        return knifeService.migrateExistingSlugs();
+    }
+
+    // Backfill effectivePrice/discountPercent for knives created before they were stored
+    @PostMapping("/migrate-pricing")
+    public Map<String, Object> migratePricing() {
+        return knifeService.migrateDerivedPricing();
+    }
+
     // Create new knife
     @PostMapping
     public KnifeDto createKnife(@Valid @RequestBody AddKnifeRequestDto knifeDto) {
@@ -5,16 +5,23 @@ import com.kesik.bladecommerce.dto.iyzico.OrderRequestDto;
 import com.kesik.bladecommerce.dto.knife.KnifeDto;
 import com.kesik.bladecommerce.dto.order.AddOrderDto;
 import com.kesik.bladecommerce.dto.order.OrderDto;
+import com.kesik.bladecommerce.dto.order.OrderExportFormat;
 import com.kesik.bladecommerce.dto.order.OrderKnifeDto;
 import com.kesik.bladecommerce.dto.order.OrderStatistics;
 import com.kesik.bladecommerce.dto.order.OrderStatusDto;
 import com.kesik.bladecommerce.service.KnifeService;
+import com.kesik.bladecommerce.service.OrderExportService;
 import com.kesik.bladecommerce.service.OrderService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import lombok.extern.slf4j.Slf4j;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -24,9 +31,11 @@ import java.util.Optional;
 @Slf4j
 public class OrderController {
     private final OrderService orderService;
+    private final OrderExportService orderExportService;
 
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, OrderExportService orderExportService) {
         this.orderService = orderService;
+        this.orderExportService = orderExportService;
     }
 
     @PostMapping
@@ -64,10 +73,26 @@ public class OrderController {
             Page<OrderDto> orderPage = orderService.getAllOrdersPaginated(pageable);
             return PaginatedResponse.fromPage(orderPage);
         }
-        // Backward compatible - return all orders
+        // Backward compatible - return all orders (loads every order at once; use /export for full dumps)
         return orderService.getAllOrders();
     }
 
+    // Stream orders as NDJSON or CSV straight from a database cursor, for any number of orders
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportOrders(@RequestParam(defaultValue = "ndjson") String format,
+                                                              @RequestParam(required = false) Integer orderStatus,
+                                                              @RequestParam(required = false) String startDate,
+                                                              @RequestParam(required = false) String endDate) {
+        OrderExportFormat exportFormat = OrderExportFormat.from(format);
+        log.info("Exporting orders as {} (status {}, {} to {})", exportFormat, orderStatus, startDate, endDate);
+        StreamingResponseBody body = out -> orderExportService.exportOrders(exportFormat, orderStatus, startDate, endDate, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.contentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"orders-" + LocalDate.now() + "." + exportFormat.extension() + "\"")
+                .body(body);
+    }
+
     // Get order by ID (admin only)
     @GetMapping("/{id}")
     public Optional<OrderDto> getOrderById(@PathVariable String id) {
@@ -89,7 +114,7 @@ public class OrderController {
         orderService.deleteOrder(id);
     }
 
-    // Get orders by status
+    // Get orders by status (all at once; /export?orderStatus= streams them)
     @GetMapping("/status/{orderStatus}")
     public List<OrderDto> getOrdersByStatus(@PathVariable int orderStatus) {
         return orderService.getOrdersByStatus(orderStatus);
@@ -108,7 +133,29 @@ public class OrderController {
                                                    @RequestParam(required = false) String shippingCity,
                                                    @RequestParam(required = false) String adminNote,
                                                    @RequestParam(defaultValue = "0") int page,
-                                                   @RequestParam(defaultValue = "20") int size) {
+                                                   @RequestParam(defaultValue = "20") int size,
+                                                   @RequestParam(required = false) String cursor,
+                                                   @RequestParam(defaultValue = "regex") String searchMode,
+                                                   @RequestParam(defaultValue = "date") String sortBy) {
+        // searchMode=text runs an index-backed $text search; sortBy=relevance ranks it by text score
+        if ("text".equalsIgnoreCase(searchMode) && searchTerm != null && !searchTerm.isBlank()) {
+            if (cursor != null) {
+                throw new IllegalArgumentException("Cursor pagination is not supported with text search");
+            }
+            Page<OrderDto> orderPage = orderService.searchOrdersByText(searchTerm, minPrice, maxPrice, startDate, endDate,
+                                                                      sortDirection, status, paymentId, conversationId,
+                                                                      shippingCity, adminNote, "relevance".equalsIgnoreCase(sortBy),
+                                                                      PageRequest.of(page, size));
+            return PaginatedResponse.fromPage(orderPage);
+        }
+
+        // Passing a cursor parameter (empty for the first page) switches to keyset pagination
+        if (cursor != null) {
+            return orderService.searchOrdersByCursor(searchTerm, minPrice, maxPrice, startDate, endDate,
+                                                     sortDirection, status, paymentId, conversationId,
+                                                     shippingCity, adminNote, cursor, size);
+        }
+
         // Page is already 0-based from frontend conversion
         Pageable pageable = PageRequest.of(page, size);
 
@@ -127,6 +174,13 @@ public class OrderController {
         return orderService.getOrderStatistics(startDate, endDate);
     }
 
+    @PostMapping(path = "/statistics/rollups/rebuild")
+    public Map<String, Object> rebuildOrderRollups(@RequestParam(required = false) String startDate,
+                                                   @RequestParam(required = false) String endDate) {
+        log.info("Rebuilding order rollups from {} to {}", startDate, endDate);
+        return orderService.rebuildOrderRollups(startDate, endDate);
+    }
+
     @PostMapping(path = "/migrate-order-numbers")
     public Map<String, Object> migrateOrderNumbers() {
         log.info("Starting migration of existing orders to add order numbers");
@@ -5,6 +5,8 @@ import com.kesik.bladecommerce.dto.order.KnifeOrderDto;
 import com.kesik.bladecommerce.dto.order.OrderDto;
 import com.kesik.bladecommerce.dto.socialproof.RecentPurchaseDTO;
 import com.kesik.bladecommerce.repository.order.OrderRepository;
+import com.kesik.bladecommerce.service.ProductAnalyticsService;
+import com.kesik.bladecommerce.util.SlugUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
@@ -17,8 +19,11 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 /**
@@ -40,12 +45,14 @@ import java.util.stream.Collectors;
 public class SocialProofController {
 
     private final OrderRepository orderRepository;
+    private final ProductAnalyticsService productAnalyticsService;
 
     // TODO: Move these to database configuration table (admin-configurable)
     private static final int DEFAULT_LIMIT = 25;
 
-    public SocialProofController(OrderRepository orderRepository) {
+    public SocialProofController(OrderRepository orderRepository, ProductAnalyticsService productAnalyticsService) {
         this.orderRepository = orderRepository;
+        this.productAnalyticsService = productAnalyticsService;
     }
 
     /**
@@ -79,18 +86,17 @@ public class SocialProofController {
             ).getContent();
 
             // Convert to purchase DTOs
-            List<RecentPurchaseDTO> purchases = recentOrders.stream()
+            List<PurchaseCandidate> candidates = recentOrders.stream()
                     .flatMap(order -> convertOrderToPurchases(order).stream())
                     .limit(limit)
                     .collect(Collectors.toList());
 
-            // Randomize order to avoid chronological display
-            // TODO: Implement smart selection algorithm:
-            //  - Prefer popular items
+            // Randomize order to avoid chronological display, popular items tend to come first
+            // TODO: Extend the selection algorithm:
             //  - Diverse categories
             //  - Weight by order value
             //  - Context-aware (match user's browsing category)
-            Collections.shuffle(purchases);
+            List<RecentPurchaseDTO> purchases = shuffleByPopularity(candidates);
 
             log.info("Returning {} recent purchases for social proof", purchases.size());
 
@@ -109,12 +115,43 @@ public class SocialProofController {
         }
     }
 
+    /**
+     * Random order in which each purchase is drawn with a weight growing with its knife's units sold
+     * (weighted sampling without replacement: sort by -ln(u) / weight)
+     */
+    private List<RecentPurchaseDTO> shuffleByPopularity(List<PurchaseCandidate> candidates) {
+        Map<String, Long> unitsSold;
+        try {
+            unitsSold = productAnalyticsService.getUnitsSold(candidates.stream()
+                    .map(PurchaseCandidate::knifeId)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet()));
+        } catch (Exception e) {
+            log.warn("Product rankings unavailable, social proof falls back to a uniform shuffle: {}", e.getMessage());
+            unitsSold = Map.of();
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<String, Long> popularity = unitsSold;
+        return candidates.stream()
+                .map(candidate -> {
+                    double weight = 1 + Math.log1p(candidate.knifeId() != null ? popularity.getOrDefault(candidate.knifeId(), 0L) : 0);
+                    return Map.entry(-Math.log(1 - random.nextDouble()) / weight, candidate.purchase());
+                })
+                .sorted(Map.Entry.comparingByKey(Comparator.naturalOrder()))
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toList());
+    }
+
+    private record PurchaseCandidate(String knifeId, RecentPurchaseDTO purchase) {
+    }
+
     /**
      * Convert an order to anonymized purchase DTOs
      * One DTO per knife in the order
      */
-    private List<RecentPurchaseDTO> convertOrderToPurchases(OrderDto order) {
-        List<RecentPurchaseDTO> purchases = new ArrayList<>();
+    private List<PurchaseCandidate> convertOrderToPurchases(OrderDto order) {
+        List<PurchaseCandidate> purchases = new ArrayList<>();
 
         if (order.getKnives() == null || order.getKnives().isEmpty()) {
             return purchases;
@@ -132,14 +169,14 @@ public class SocialProofController {
         // Create DTO for each knife in order
         // TODO: Consider showing only the most expensive or first item instead of all items
         for (KnifeOrderDto knife : order.getKnives()) {
-            purchases.add(RecentPurchaseDTO.builder()
+            purchases.add(new PurchaseCandidate(knife.getId(), RecentPurchaseDTO.builder()
                     .customerName(anonymizedName)
                     .productName(knife.getName())
-                    .productSlug(generateSlug(knife.getName()))
+                    .productSlug(knife.getSlug() != null ? knife.getSlug() : generateSlug(knife.getName()))
                     .location(location)
                     .timeAgo(timeAgo)
                     .category(null) // TODO: Add category field to KnifeOrderDto or fetch from Knife entity
-                    .build());
+                    .build()));
         }
 
         return purchases;
@@ -224,22 +261,13 @@ public class SocialProofController {
 
     /**
      * Generate URL-friendly slug from product name
-     * TODO: Use actual product slug from knife database instead of generating
+     * Only used for orders placed before slugs were stored on knives
      */
     private String generateSlug(String productName) {
         if (productName == null || productName.isEmpty()) {
             return "";
         }
 
-        return productName
-                .toLowerCase()
-                .replaceAll("ğ", "g")
-                .replaceAll("ü", "u")
-                .replaceAll("ş", "s")
-                .replaceAll("ı", "i")
-                .replaceAll("ö", "o")
-                .replaceAll("ç", "c")
-                .replaceAll("[^a-z0-9]+", "-")
-                .replaceAll("^-|-$", "");
+        return SlugUtil.toSlug(productName);
     }
 }
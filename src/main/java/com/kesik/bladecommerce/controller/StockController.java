@@ -1,11 +1,26 @@
 package com.kesik.bladecommerce.controller;
 
 import com.kesik.bladecommerce.dto.knife.KnifeDto;
+import com.kesik.bladecommerce.dto.stock.BackInStockRequest;
+import com.kesik.bladecommerce.dto.stock.BatchStockCheckResponse;
+import com.kesik.bladecommerce.dto.stock.StockCheckRequest;
+import com.kesik.bladecommerce.dto.stock.StockReservationResponse;
 import com.kesik.bladecommerce.repository.knife.KnifeRepository;
+import com.kesik.bladecommerce.service.BackInStockService;
+import com.kesik.bladecommerce.service.StockReservationService;
+import com.kesik.bladecommerce.service.StockService;
+import com.kesik.bladecommerce.service.StockShardService;
+import com.kesik.bladecommerce.service.StockStreamService;
+import com.kesik.bladecommerce.util.RequestRateLimiter;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,9 +31,30 @@ import java.util.Map;
 public class StockController {
 
     private final KnifeRepository knifeRepository;
-
-    public StockController(KnifeRepository knifeRepository) {
+    private final StockService stockService;
+    private final StockReservationService stockReservationService;
+    private final StockShardService stockShardService;
+    private final StockStreamService stockStreamService;
+    private final BackInStockService backInStockService;
+    private final RequestRateLimiter rateLimiter;
+
+    @Value("${stock.reservation.rate-limit-per-minute:10}")
+    private int reservationRateLimit;
+
+    @Value("${stock.back-in-stock.rate-limit-per-minute:5}")
+    private int backInStockRateLimit;
+
+    public StockController(KnifeRepository knifeRepository, StockService stockService,
+                           StockReservationService stockReservationService, StockShardService stockShardService,
+                           StockStreamService stockStreamService, BackInStockService backInStockService,
+                           RequestRateLimiter rateLimiter) {
         this.knifeRepository = knifeRepository;
+        this.stockService = stockService;
+        this.stockReservationService = stockReservationService;
+        this.stockShardService = stockShardService;
+        this.stockStreamService = stockStreamService;
+        this.backInStockService = backInStockService;
+        this.rateLimiter = rateLimiter;
     }
 
     /**
@@ -30,7 +66,7 @@ public class StockController {
             @PathVariable String knifeId,
             @RequestParam(defaultValue = "1") int quantity
     ) {
-        log.info("Checking stock for knife: {} with quantity: {}", knifeId, quantity);
+        log.debug("Checking stock for knife: {} with quantity: {}", knifeId, quantity);
 
         KnifeDto knife = knifeRepository.findById(knifeId).orElse(null);
 
@@ -43,7 +79,9 @@ public class StockController {
             return ResponseEntity.ok(response);
         }
 
-        int currentStock = knife.getStockQuantity();
+        int currentStock = knife.isStockStriped()
+                ? stockShardService.getTotals(List.of(knifeId)).getOrDefault(knifeId, 0)
+                : knife.getStockQuantity();
         boolean available = currentStock >= quantity;
 
         response.put("available", available);
@@ -59,89 +97,93 @@ public class StockController {
             }
         }
 
-        log.info("Stock check result for {}: available={}, stock={}, requested={}",
+        log.debug("Stock check result for {}: available={}, stock={}, requested={}",
                 knife.getName(), available, currentStock, quantity);
 
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Live stock levels for product pages (Server-Sent Events, "stock" events), instead of polling /check
+     * Public endpoint - e.g. /api/stock/stream?ids=a,b,c
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStock(@RequestParam List<String> ids) {
+        return stockStreamService.subscribe(ids);
+    }
+
+    /**
+     * Ask to be mailed when an out-of-stock product is back
+     * Public endpoint - a confirmation mail is sent first; one mail per confirmed subscription, on the next restock
+     */
+    @PostMapping("/back-in-stock")
+    public ResponseEntity<Void> subscribeBackInStock(@RequestBody BackInStockRequest request,
+                                                     HttpServletRequest httpRequest) {
+        rateLimiter.check("back-in-stock", RequestRateLimiter.clientKey(httpRequest), backInStockRateLimit,
+                Duration.ofMinutes(1));
+        backInStockService.subscribe(request.getKnifeId(), request.getEmail());
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Confirmation link from the back-in-stock confirmation mail
+     * Public endpoint - the token is an unguessable UUID
+     */
+    @GetMapping("/back-in-stock/confirm")
+    public ResponseEntity<String> confirmBackInStock(@RequestParam String token) {
+        backInStockService.confirm(token);
+        return ResponseEntity.ok("Aboneliğiniz onaylandı. Ürün stoğa girdiğinde size e-posta göndereceğiz.");
+    }
+
+    /**
+     * Unsubscribe link from back-in-stock mails
+     * Public endpoint - the token is an unguessable UUID
+     */
+    @GetMapping("/back-in-stock/unsubscribe")
+    public ResponseEntity<String> unsubscribeBackInStock(@RequestParam String token) {
+        backInStockService.unsubscribe(token);
+        return ResponseEntity.ok("Aboneliğiniz kaldırıldı.");
+    }
+
     /**
      * Batch check stock for multiple products
      * Public endpoint - used before checkout
      */
     @PostMapping("/check-batch")
-    public ResponseEntity<Map<String, Object>> checkBatchStock(
+    public ResponseEntity<BatchStockCheckResponse> checkBatchStock(
             @RequestBody List<StockCheckRequest> items
     ) {
         log.info("Batch checking stock for {} items", items.size());
 
-        Map<String, Object> response = new HashMap<>();
-        boolean allAvailable = true;
-        List<Map<String, Object>> results = new java.util.ArrayList<>();
-
-        for (StockCheckRequest item : items) {
-            KnifeDto knife = knifeRepository.findById(item.getKnifeId()).orElse(null);
+        BatchStockCheckResponse response = stockService.checkBatchStock(items);
 
-            Map<String, Object> itemResult = new HashMap<>();
-            itemResult.put("knifeId", item.getKnifeId());
-            itemResult.put("requested", item.getQuantity());
-
-            if (knife == null) {
-                itemResult.put("available", false);
-                itemResult.put("reason", "Product not found");
-                itemResult.put("stock", 0);
-                allAvailable = false;
-            } else {
-                int currentStock = knife.getStockQuantity();
-                boolean available = currentStock >= item.getQuantity();
-
-                itemResult.put("available", available);
-                itemResult.put("stock", currentStock);
-                itemResult.put("productName", knife.getName());
-
-                if (!available) {
-                    allAvailable = false;
-                    if (currentStock == 0) {
-                        itemResult.put("reason", "Out of stock");
-                    } else {
-                        itemResult.put("reason", "Insufficient stock. Only " + currentStock + " available");
-                    }
-                }
-            }
-
-            results.add(itemResult);
-        }
-
-        response.put("allAvailable", allAvailable);
-        response.put("items", results);
-        response.put("totalItems", items.size());
-
-        log.info("Batch stock check complete: allAvailable={}", allAvailable);
+        log.info("Batch stock check complete: allAvailable={}", response.isAllAvailable());
 
         return ResponseEntity.ok(response);
     }
 
     /**
-     * Request DTO for batch stock check
+     * Hold stock for the duration of checkout / payment
+     * Public endpoint - the returned reservationId is sent with the order
      */
-    public static class StockCheckRequest {
-        private String knifeId;
-        private int quantity;
-
-        public String getKnifeId() {
-            return knifeId;
-        }
-
-        public void setKnifeId(String knifeId) {
-            this.knifeId = knifeId;
-        }
-
-        public int getQuantity() {
-            return quantity;
-        }
+    @PostMapping("/reservations")
+    public ResponseEntity<StockReservationResponse> reserveStock(
+            @RequestBody List<StockCheckRequest> items,
+            HttpServletRequest request
+    ) {
+        String clientKey = RequestRateLimiter.clientKey(request);
+        rateLimiter.check("reservations", clientKey, reservationRateLimit, Duration.ofMinutes(1));
+        log.info("Reserving stock for {} items", items.size());
+        return ResponseEntity.ok(stockReservationService.reserve(items, clientKey));
+    }
 
-        public void setQuantity(int quantity) {
-            this.quantity = quantity;
-        }
+    /**
+     * Release a reservation early (cart abandoned, payment cancelled)
+     * Public endpoint - the reservation id is an unguessable UUID
+     */
+    @DeleteMapping("/reservations/{reservationId}")
+    public ResponseEntity<Void> releaseReservation(@PathVariable String reservationId) {
+        stockReservationService.release(reservationId);
+        return ResponseEntity.noContent().build();
     }
 }
@@ -1,5 +1,6 @@
 package com.kesik.bladecommerce.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -7,25 +8,32 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.domain.Page;
 
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * Centralized pagination response that matches frontend PaginatedResponse interface
  * Supports both 1-based and 0-based pagination modes with automatic conversion
+ *
+ * In cursor mode page/totalElements/totalPages are omitted (no count query is run);
+ * clients follow nextCursor while hasNext is true instead.
  */
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class PaginatedResponse<T> {
     private List<T> content;
-    private int page;           // Page number (1-based for user-friendly pagination)
+    private Integer page;       // Page number (1-based for user-friendly pagination)
     private int size;           // Number of items per page
-    private long totalElements; // Total number of items across all pages
-    private int totalPages;     // Total number of pages
+    private Long totalElements; // Total number of items across all pages
+    private Integer totalPages; // Total number of pages
     private int numberOfElements; // Number of items in current page
     private boolean first;      // Whether this is the first page
     private boolean last;       // Whether this is the last page
     private boolean empty;      // Whether the content is empty
+    private String nextCursor;  // Cursor mode only: token for the next page (null on the last page)
+    private Boolean hasNext;    // Cursor mode only: whether another page exists
 
     /**
      * Create PaginatedResponse from Spring Boot Page with 1-based page numbering
@@ -62,4 +70,44 @@ public class PaginatedResponse<T> {
                 .empty(page.isEmpty())
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Create a cursor-mode PaginatedResponse from one keyset page
+     *
+     * @param content Items of the current page
+     * @param size Requested page size
+     * @param firstPage Whether the request carried no cursor
+     * @param nextCursor Token for the next page, or null if this is the last page
+     */
+    public static <T> PaginatedResponse<T> fromCursor(List<T> content, int size, boolean firstPage, String nextCursor) {
+        return PaginatedResponse.<T>builder()
+                .content(content)
+                .size(size)
+                .numberOfElements(content.size())
+                .first(firstPage)
+                .last(nextCursor == null)
+                .empty(content.isEmpty())
+                .nextCursor(nextCursor)
+                .hasNext(nextCursor != null)
+                .build();
+    }
+
+    /**
+     * Convert the content while keeping all pagination metadata
+     */
+    public <R> PaginatedResponse<R> map(Function<? super T, ? extends R> mapper) {
+        return PaginatedResponse.<R>builder()
+                .content(content.stream().<R>map(mapper).toList())
+                .page(page)
+                .size(size)
+                .totalElements(totalElements)
+                .totalPages(totalPages)
+                .numberOfElements(numberOfElements)
+                .first(first)
+                .last(last)
+                .empty(empty)
+                .nextCursor(nextCursor)
+                .hasNext(hasNext)
+                .build();
+    }
+}
@@ -22,4 +22,5 @@ public class OrderRequestDto {
     private String paymentId;
     private Double shippingCost; // Shipping cost (0 if free shipping)
     private Double subtotal; // Product total before shipping/tax
+    private String reservationId; // Optional stock reservation from POST /api/stock/reservations
 }
@@ -0,0 +1,10 @@
+package com.kesik.bladecommerce.dto.knife;
+
+/**
+ * One entry of /api/knives/best-sellers
+ *
+ * @param orders Orders containing the knife
+ * @param quantity Units sold
+ */
+public record BestSeller(String knifeId, String name, String slug, long orders, long quantity, double revenue) {
+}
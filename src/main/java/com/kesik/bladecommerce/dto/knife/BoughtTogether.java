@@ -0,0 +1,9 @@
+package com.kesik.bladecommerce.dto.knife;
+
+/**
+ * A knife frequently ordered together with another one (/api/knives/{id}/bought-together)
+ *
+ * @param orders Orders containing both knives
+ */
+public record BoughtTogether(String knifeId, String name, String slug, long orders) {
+}
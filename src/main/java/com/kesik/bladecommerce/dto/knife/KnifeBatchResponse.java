@@ -0,0 +1,18 @@
+package com.kesik.bladecommerce.dto.knife;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Knives resolved by /api/knives/batch in request order, plus the requested ids that do not exist
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KnifeBatchResponse {
+    private List<KnifeDto> knives;
+    private List<String> missingIds;
+}
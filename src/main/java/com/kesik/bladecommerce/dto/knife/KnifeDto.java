@@ -1,4 +1,5 @@
 package com.kesik.bladecommerce.dto.knife;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
@@ -12,13 +13,25 @@ public class KnifeDto {
     @Id
     private String id;
     private String name;
+    private String slug;
     private Integer categoryId;
     private String categoryName;
     private String description;
     private double price;
     private double discountPrice;
     private boolean percentageDiscount;
+    // Derived from price/discountPrice on every write (see KnifePricing) - indexed for sorting and filtering
+    private double effectivePrice;
+    private double discountPercent;
     private int stockQuantity;
+    // Stock lives in stock_shards (see StockShardService); stockQuantity is then a synced display value
+    private boolean stockStriped;
+    // Ids of in-flight order placements that took stock from this knife (see OrderPlacementIntentService)
+    @JsonIgnore
+    private List<String> stockHolds;
+    // Incremented by every write the catalog snapshot sees; the snapshot never replaces a knife with a lower one
+    @JsonIgnore
+    private long revision;
     private List<String> tags;
     private String imageUrl;
     private String knifeType;
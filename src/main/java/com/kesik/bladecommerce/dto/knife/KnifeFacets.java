@@ -0,0 +1,30 @@
+package com.kesik.bladecommerce.dto.knife;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Facet counts for the storefront sidebar, computed over the current filter set
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KnifeFacets {
+    private Map<String, Long> knifeTypes;       // knifeType -> count (most frequent first)
+    private Map<String, Long> bladeMaterials;   // bladeMaterial -> count (most frequent first)
+    private Map<Integer, Long> categories;      // categoryId -> count (most frequent first)
+    private List<PriceBucket> priceBuckets;     // Ascending price ranges
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PriceBucket {
+        private double min;     // Inclusive lower bound
+        private Double max;     // Exclusive upper bound (null for the open-ended last bucket)
+        private long count;
+    }
+}
@@ -0,0 +1,17 @@
+package com.kesik.bladecommerce.dto.knife;
+
+import com.kesik.bladecommerce.dto.PaginatedResponse;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Filtered result page plus facet counts, returned by /api/knives/facets in one round trip
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KnifeSearchResponse {
+    private PaginatedResponse<KnifeDto> results;
+    private KnifeFacets facets;
+}
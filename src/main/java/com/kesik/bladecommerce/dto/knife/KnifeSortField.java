@@ -0,0 +1,55 @@
+package com.kesik.bladecommerce.dto.knife;
+
+import java.util.Comparator;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Catalog sort keys accepted by /api/knives?sortBy=...
+ * Each key is a stored, indexed KnifeDto field; ties are broken by id.
+ */
+public enum KnifeSortField {
+    PRICE("price", KnifeDto::getPrice),                             // sortBy=price (list price)
+    EFFECTIVE_PRICE("effectivePrice", KnifeDto::getEffectivePrice), // sortBy=effectivePrice (what the customer pays)
+    DISCOUNT("discountPercent", KnifeDto::getDiscountPercent);      // sortBy=discount (biggest discount with desc)
+
+    private final String field;
+    private final Comparator<KnifeDto> comparator;
+
+    KnifeSortField(String field, ToDoubleFunction<KnifeDto> key) {
+        this.field = field;
+        this.comparator = Comparator.comparingDouble(key)
+                .thenComparing(KnifeDto::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+    }
+
+    /**
+     * MongoDB field name
+     */
+    public String field() {
+        return field;
+    }
+
+    /**
+     * Ascending in-memory order matching the MongoDB sort on (field, _id)
+     */
+    public Comparator<KnifeDto> comparator() {
+        return comparator;
+    }
+
+    /**
+     * @throws IllegalArgumentException for unknown sortBy values
+     */
+    public static KnifeSortField from(String sortBy) {
+        if (sortBy == null || sortBy.isBlank() || "price".equalsIgnoreCase(sortBy)
+                || "relevance".equalsIgnoreCase(sortBy)) {
+            // relevance only means something for text search; other modes keep the price order
+            return PRICE;
+        }
+        if ("effectivePrice".equalsIgnoreCase(sortBy)) {
+            return EFFECTIVE_PRICE;
+        }
+        if ("discount".equalsIgnoreCase(sortBy)) {
+            return DISCOUNT;
+        }
+        throw new IllegalArgumentException("Unsupported sortBy: " + sortBy);
+    }
+}
@@ -0,0 +1,18 @@
+package com.kesik.bladecommerce.dto.knife;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One type-ahead suggestion returned by /api/knives/suggest
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KnifeSuggestion {
+    private String text;     // Display text (original casing and Turkish characters)
+    private String type;     // NAME, TAG, KNIFE_TYPE or BLADE_MATERIAL
+    private String knifeId;  // Set for NAME suggestions only
+    private int count;       // Number of knives carrying this term
+}
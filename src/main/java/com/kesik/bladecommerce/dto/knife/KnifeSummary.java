@@ -0,0 +1,53 @@
+package com.kesik.bladecommerce.dto.knife;
+
+import com.kesik.bladecommerce.util.SlugUtil;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Lightweight projection of KnifeDto for catalog cards (/api/knives?view=summary).
+ * Leaves out description, tags, sizes and order-only fields.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class KnifeSummary {
+
+    /**
+     * KnifeDto fields needed to build a summary - used as the MongoDB field projection
+     */
+    public static final String[] PROJECTED_FIELDS = {
+            "name", "slug", "price", "discountPrice", "effectivePrice", "discountPercent", "imageUrl", "stockQuantity", "categoryId", "categoryName"
+    };
+
+    private String id;
+    private String name;
+    private String slug;
+    private double price;
+    private double discountPrice;
+    private double effectivePrice;
+    private double discountPercent;
+    private String imageUrl;
+    private boolean inStock;
+    private Integer categoryId;
+    private String categoryName;
+
+    public static KnifeSummary from(KnifeDto knife) {
+        return KnifeSummary.builder()
+                .id(knife.getId())
+                .name(knife.getName())
+                .slug(knife.getSlug() != null ? knife.getSlug() : SlugUtil.toSlug(knife.getName()))
+                .price(knife.getPrice())
+                .discountPrice(knife.getDiscountPrice())
+                .effectivePrice(knife.getEffectivePrice())
+                .discountPercent(knife.getDiscountPercent())
+                .imageUrl(knife.getImageUrl())
+                .inStock(knife.getStockQuantity() > 0)
+                .categoryId(knife.getCategoryId())
+                .categoryName(knife.getCategoryName())
+                .build();
+    }
+}
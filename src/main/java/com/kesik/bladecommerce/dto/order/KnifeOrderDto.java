@@ -8,11 +8,13 @@ public class KnifeOrderDto {
     @Id
     private String id;
     private String name;
+    private String slug;
     private Integer categoryId;
     private String description;
     private double price;
     private double discountPrice;
     private int stockQuantity;
+    private int quantity; // Units of this line (absent on orders placed before it was recorded)
     private String imageUrl;
     private String knifeType;
     private String selectedSize;
@@ -1,5 +1,6 @@
 package com.kesik.bladecommerce.dto.order;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.kesik.bladecommerce.dto.iyzico.BasketItemDto;
 import lombok.Getter;
 import lombok.Setter;
@@ -33,4 +34,8 @@ public class OrderDto {
     private String paymentId;
     private String selectedKnifeSize;
     private String adminNote;
+    private String placementIntentId; // OrderPlacementIntent that placed this order (crash recovery)
+    // Whether product_rankings count this order; set when the analytics job folds it, flipped on cancel/return
+    @JsonIgnore
+    private Boolean countedInRankings;
 }
\ No newline at end of file
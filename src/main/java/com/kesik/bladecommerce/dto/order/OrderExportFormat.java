@@ -0,0 +1,38 @@
+package com.kesik.bladecommerce.dto.order;
+
+/**
+ * Formats accepted by /api/orders/export?format=...
+ */
+public enum OrderExportFormat {
+    NDJSON("application/x-ndjson", "ndjson"), // One full order document per line
+    CSV("text/csv", "csv");                    // One row per order, summary columns only
+
+    private final String contentType;
+    private final String extension;
+
+    OrderExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    /**
+     * @throws IllegalArgumentException for unknown format values
+     */
+    public static OrderExportFormat from(String format) {
+        if (format == null || format.isBlank() || "ndjson".equalsIgnoreCase(format)) {
+            return NDJSON;
+        }
+        if ("csv".equalsIgnoreCase(format)) {
+            return CSV;
+        }
+        throw new IllegalArgumentException("Unsupported export format: " + format);
+    }
+}
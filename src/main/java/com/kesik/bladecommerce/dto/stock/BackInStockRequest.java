@@ -0,0 +1,13 @@
+package com.kesik.bladecommerce.dto.stock;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BackInStockRequest {
+    private String knifeId;
+    private String email;
+}
@@ -0,0 +1,19 @@
+package com.kesik.bladecommerce.dto.stock;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Result of /api/stock/check-batch, one item per requested cart line in request order
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchStockCheckResponse {
+    private boolean allAvailable;
+    private List<StockCheckResult> items;
+    private int totalItems;
+}
@@ -0,0 +1,16 @@
+package com.kesik.bladecommerce.dto.stock;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One cart line for /api/stock/check-batch
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockCheckRequest {
+    private String knifeId;
+    private int quantity;
+}
@@ -0,0 +1,24 @@
+package com.kesik.bladecommerce.dto.stock;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Availability of one cart line. productName is omitted for unknown products, reason when available.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StockCheckResult {
+    private String knifeId;
+    private int requested;
+    private boolean available;
+    private int stock;
+    private String productName;
+    private String reason;
+}
@@ -0,0 +1,12 @@
+package com.kesik.bladecommerce.dto.stock;
+
+import java.time.Instant;
+
+/**
+ * Where the stock ledger stands for one knife
+ *
+ * @param ledgerQuantity Level rebuilt from snapshot plus tail (opening level, admin edits and every movement)
+ * @param consumed Units taken by orders and reservations since ledgerStartedAt, net of rollbacks and returns
+ */
+public record StockLedgerPosition(String knifeId, Instant ledgerStartedAt, int ledgerQuantity, int consumed) {
+}
@@ -0,0 +1,23 @@
+package com.kesik.bladecommerce.dto.stock;
+
+import com.kesik.bladecommerce.entity.StockMovement;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Stock level of a knife rebuilt from its ledger (snapshot plus tail), with the latest movements
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockLedgerResponse {
+    private String knifeId;
+    private int snapshotQuantity;
+    private String compactedBefore;
+    private int tailDelta;
+    private int ledgerQuantity;
+    private List<StockMovement> recentMovements;
+}
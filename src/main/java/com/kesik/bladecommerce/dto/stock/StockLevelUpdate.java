@@ -0,0 +1,17 @@
+package com.kesik.bladecommerce.dto.stock;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Payload of a "stock" event on /api/stock/stream
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockLevelUpdate {
+    private String knifeId;
+    private int stock;
+    private boolean inStock;
+}
@@ -0,0 +1,22 @@
+package com.kesik.bladecommerce.dto.stock;
+
+import com.kesik.bladecommerce.entity.StockReservation;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Returned by POST /api/stock/reservations. The client sends reservationId with the order
+ * (OrderRequestDto.reservationId) before expiresAt.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationResponse {
+    private String reservationId;
+    private Instant expiresAt;
+    private List<StockReservation.Item> items;
+}
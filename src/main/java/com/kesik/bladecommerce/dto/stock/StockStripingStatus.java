@@ -0,0 +1,18 @@
+package com.kesik.bladecommerce.dto.stock;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Striped-stock state of one knife, returned by the /api/admin/stock/striping endpoints
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockStripingStatus {
+    private String knifeId;
+    private boolean striped;
+    private int stripes;
+    private int totalStock;
+}
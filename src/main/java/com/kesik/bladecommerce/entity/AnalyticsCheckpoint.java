@@ -0,0 +1,30 @@
+package com.kesik.bladecommerce.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * How far an incremental analytics job has read the orders collection
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "analytics_checkpoints")
+public class AnalyticsCheckpoint {
+
+    @Id
+    private String id; // Job name
+
+    private String lastOrderId; // Hex ObjectId of the last processed order; orders are read in _id order
+
+    private long processedOrders;
+
+    private Instant updatedAt;
+}
@@ -0,0 +1,43 @@
+package com.kesik.bladecommerce.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * A shopper waiting for an out-of-stock knife. One per (knifeId, email); notified once, on the next restock.
+ * Only confirmed subscriptions (double opt-in, confirmedAt set) are notified; unconfirmed ones carry a purgeAt
+ * and expire. notifiedAt and purgeAt are set when the mail went out; the TTL index on purgeAt then removes it.
+ * token is the secret in the confirmation and unsubscribe links.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "back_in_stock_subscriptions")
+public class BackInStockSubscription {
+
+    @Id
+    private String id;
+
+    private String knifeId;
+
+    private String email;
+
+    private String token;
+
+    private Instant createdAt;
+
+    private Instant confirmationSentAt;
+
+    private Instant confirmedAt;
+
+    private Instant notifiedAt;
+
+    private Instant purgeAt;
+}
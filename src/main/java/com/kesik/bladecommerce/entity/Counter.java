@@ -0,0 +1,24 @@
+package com.kesik.bladecommerce.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Named monotonic sequence; nodes reserve blocks of values with a single $inc (see OrderNumberService)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "counters")
+public class Counter {
+
+    @Id
+    private String id; // Sequence name, e.g. orderNumber
+
+    private long value; // Last value handed out to any node
+}
@@ -0,0 +1,56 @@
+package com.kesik.bladecommerce.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Order totals of one day, kept current with $inc as orders are placed, change status or are deleted
+ * (see OrderRollupService). Order statistics read these instead of scanning orders.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "order_daily_rollups")
+public class OrderDailyRollup {
+
+    @Id
+    private String id; // orderDate (YYYY-MM-DD)
+
+    private long orders;
+
+    private double revenue;
+
+    private Map<String, StatusTotals> statuses; // Keyed by order status code
+
+    private Map<String, ProductTotals> products; // Keyed by knife id
+
+    private long updates; // Live $inc updates applied; a rebuild only replaces the day if this is unchanged
+
+    private Instant rebuiltAt; // Last time the day was recomputed from orders, null if only ever incremented
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class StatusTotals {
+        private long orders;
+        private double revenue;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ProductTotals {
+        private String name;
+        private long orders; // Orders containing the knife (a knife in several sizes counts once per order)
+        private long quantity;
+        private double revenue;
+    }
+}
@@ -0,0 +1,51 @@
+package com.kesik.bladecommerce.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Write-ahead record of an order placement, written before any stock is touched.
+ *
+ * A PENDING intent names everything the placement may change: the reservation it confirms,
+ * the stock it decrements (each knife is tagged with the intent id in stockHolds) and the unused
+ * reserved units to give back once the order is saved. It ends COMPLETED when the order is saved
+ * or COMPENSATED when everything was returned. PENDING intents older than the stale threshold
+ * belong to a crashed placement and are finished by the recovery worker.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "order_placement_intents")
+public class OrderPlacementIntent {
+
+    @Id
+    private String id; // Random UUID - also the stockHolds tag and OrderDto.placementIntentId
+
+    private Status status;
+
+    private String reservationId;
+
+    // Knife id -> units decremented from stock by this placement
+    private Map<String, Integer> decrements;
+
+    // Knife id -> reserved units the final basket did not use, returned on completion
+    private Map<String, Integer> reservationReturns;
+
+    private Instant createdAt;
+    private Instant finishedAt;
+    private Instant purgeAt;
+
+    public enum Status {
+        PENDING,
+        COMPLETED,
+        COMPENSATED
+    }
+}
@@ -0,0 +1,36 @@
+package com.kesik.bladecommerce.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Sales totals of one knife over all orders processed by the product analytics job (see ProductAnalyticsService)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "product_rankings")
+public class ProductRanking {
+
+    @Id
+    private String id; // Knife id
+
+    private String name; // As of the most recent processed order
+    private String slug;
+
+    private long orders; // Orders containing the knife (a knife in several sizes counts once per order)
+    private long quantity;
+    private double revenue;
+
+    private Map<String, Long> boughtWith; // Other knife id -> orders containing both
+
+    private Instant updatedAt;
+}
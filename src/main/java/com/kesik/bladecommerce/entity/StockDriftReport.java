@@ -0,0 +1,58 @@
+package com.kesik.bladecommerce.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Result of one stock reconciliation run; only knives with drift are listed.
+ *
+ * Two independent checks per knife:
+ * - liveDrift = live stock - ledger level: stock written without going through KnifeService
+ * - orderDrift = ledger consumption - (ordered units + units held by reservations and in-flight placements):
+ *   positive means stock left the shelf without an order (e.g. a rollback that failed)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "stock_drift_reports")
+public class StockDriftReport {
+
+    @Id
+    private String id;
+
+    private Instant generatedAt;
+
+    private Instant cutoff; // Orders and movements after this instant were not compared (still settling)
+
+    private int knivesChecked;
+
+    private boolean autoCorrect;
+
+    private List<Item> items;
+
+    private Instant purgeAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private String knifeId;
+        private int liveQuantity;
+        private int ledgerQuantity;
+        private int liveDrift;
+        private int consumed;
+        private int ordered;
+        private int held;
+        private int orderDrift;
+        private boolean corrected;
+        private boolean rebaselined; // Ledger re-seeded from live stock (lost movements)
+    }
+}
@@ -0,0 +1,45 @@
+package com.kesik.bladecommerce.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * One entry of the append-only stock ledger. Entries are never updated or deleted.
+ *
+ * Every movement is a signed delta (admin edits record new level minus old level), so the ledger
+ * level of a knife is its StockSnapshot plus the sum of the movements after it, in any order.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "stock_movements")
+public class StockMovement {
+
+    @Id
+    private String id; // ObjectId assigned on insert - compaction watermarks compare against it
+
+    private String knifeId;
+
+    private int delta;
+
+    private Cause cause;
+
+    private String reference; // Order placement intent for ORDER/ROLLBACK movements, if known
+
+    private Instant occurredAt;
+
+    public enum Cause {
+        ORDER,        // Sold by an order
+        ROLLBACK,     // Returned because an order failed
+        RESERVATION,  // Held by a checkout reservation
+        RETURN,       // Reserved units given back (released, expired or unused by the order)
+        ADMIN_EDIT    // Stock set by an admin, or the initial stock of a new knife
+    }
+}
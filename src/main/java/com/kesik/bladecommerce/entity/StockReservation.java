@@ -0,0 +1,59 @@
+package com.kesik.bladecommerce.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Stock held for a shopper between checkout and order creation.
+ *
+ * A reservation is inserted PENDING before any stock is taken; each knife it decrements is tagged with its id
+ * in stockHolds until it turns ACTIVE, so a PENDING reservation left behind by a crash is released by the sweep
+ * through those tags. The reserved quantities are subtracted from knives.stockQuantity while ACTIVE.
+ * An ACTIVE reservation ends either CONFIRMED (an order consumed it) or RELEASED
+ * (cancelled or expired - the quantities were given back). purgeAt is only set in those
+ * terminal states; the TTL index on it removes finished reservations after the retention period.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "stock_reservations")
+public class StockReservation {
+
+    @Id
+    private String id; // Random UUID - doubles as the shopper's handle, so it must not be guessable
+
+    private List<Item> items;
+
+    private Status status;
+
+    private String confirmedBy; // Order placement intent that consumed the reservation, if any
+
+    private String clientKey; // Hashed client address, for the open-reservations-per-client limit
+
+    private Instant createdAt;
+    private Instant expiresAt;
+    private Instant purgeAt;
+
+    public enum Status {
+        PENDING,
+        ACTIVE,
+        CONFIRMED,
+        RELEASED
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private String knifeId;
+        private int quantity;
+    }
+}
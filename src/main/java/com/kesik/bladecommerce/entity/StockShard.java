@@ -0,0 +1,49 @@
+package com.kesik.bladecommerce.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.List;
+
+/**
+ * One stripe of a striped knife's stock.
+ *
+ * While a knife is striped (KnifeDto.stockStriped) its real stock is the sum of its shards and
+ * knives.stockQuantity is only a periodically synced display value. Purchases decrement a random
+ * shard, so concurrent buyers of the same knife update different documents.
+ *
+ * A decrement made under a hold (order placement intent, reservation) records the hold id and the units it
+ * took in holds, in the same update as the $inc - the shard equivalent of KnifeDto.stockHolds.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "stock_shards")
+public class StockShard {
+
+    @Id
+    private String id; // knifeId + ":" + shard
+
+    private String knifeId;
+    private int shard;
+    private int quantity;
+
+    private List<Hold> holds;
+
+    public static String idOf(String knifeId, int shard) {
+        return knifeId + ":" + shard;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Hold {
+        private String holdId;
+        private int quantity;
+    }
+}
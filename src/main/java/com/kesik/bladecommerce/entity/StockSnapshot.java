@@ -0,0 +1,35 @@
+package com.kesik.bladecommerce.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Compacted stock ledger of one knife: its level after every movement older than compactedBefore
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "stock_snapshots")
+public class StockSnapshot {
+
+    @Id
+    private String id; // Knife id
+
+    private int quantity;
+
+    // Units taken by non-admin movements (orders, reservations, net of rollbacks/returns) since ledgerStartedAt
+    private int consumed;
+
+    private Instant ledgerStartedAt; // When the ledger took over this knife - the opening quantity is its level then
+
+    private String compactedBefore; // Hex ObjectId - every StockMovement with a smaller id is folded into quantity
+
+    private Instant compactedAt;
+}
@@ -0,0 +1,23 @@
+package com.kesik.bladecommerce.event;
+
+import com.kesik.bladecommerce.entity.StockMovement;
+
+import java.time.Instant;
+
+/**
+ * Published by KnifeService after every successful stock change
+ *
+ * @param delta Signed change in available units
+ * @param reference Order placement intent the change belongs to, or null
+ * @param stockAfter Level right after the change, or null when the write does not report it
+ */
+public record StockChangedEvent(String knifeId, int delta, StockMovement.Cause cause, String reference,
+                                Integer stockAfter, Instant occurredAt) {
+
+    /**
+     * The change brought an out-of-stock knife back into stock
+     */
+    public boolean restocked() {
+        return stockAfter != null && stockAfter > 0 && stockAfter - delta <= 0;
+    }
+}
@@ -0,0 +1,17 @@
+package com.kesik.bladecommerce.exception;
+
+import lombok.Getter;
+
+/**
+ * Not enough stock for a knife. Still an IllegalStateException, so it maps to 409 CONFLICT.
+ */
+@Getter
+public class InsufficientStockException extends IllegalStateException {
+
+    private final String knifeId;
+
+    public InsufficientStockException(String knifeId, String message) {
+        super(message);
+        this.knifeId = knifeId;
+    }
+}
@@ -0,0 +1,11 @@
+package com.kesik.bladecommerce.exception;
+
+/**
+ * A client exceeded a per-client limit (request rate or open holds). Maps to 429 TOO_MANY_REQUESTS.
+ */
+public class TooManyRequestsException extends RuntimeException {
+
+    public TooManyRequestsException(String message) {
+        super(message);
+    }
+}
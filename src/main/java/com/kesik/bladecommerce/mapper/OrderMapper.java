@@ -5,42 +5,67 @@ import com.kesik.bladecommerce.dto.iyzico.OrderRequestDto;
 import com.kesik.bladecommerce.dto.knife.KnifeDto;
 import com.kesik.bladecommerce.dto.order.KnifeOrderDto;
 import com.kesik.bladecommerce.dto.order.OrderDto;
+import com.kesik.bladecommerce.entity.StockMovement;
+import com.kesik.bladecommerce.entity.StockReservation;
+import com.kesik.bladecommerce.exception.InsufficientStockException;
 import com.kesik.bladecommerce.service.KnifeService;
+import com.kesik.bladecommerce.service.OrderPlacementIntentService;
+import com.kesik.bladecommerce.service.StockReservationService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component
 public class OrderMapper {
     private final KnifeService knifeService;
+    private final StockReservationService stockReservationService;
+    private final OrderPlacementIntentService placementIntentService;
 
     @Autowired
-    public OrderMapper(KnifeService knifeService) {
+    public OrderMapper(KnifeService knifeService, StockReservationService stockReservationService,
+                       OrderPlacementIntentService placementIntentService) {
         this.knifeService = knifeService;
+        this.stockReservationService = stockReservationService;
+        this.placementIntentService = placementIntentService;
     }
 
     /**
      * Maps an OrderRequestDto to an OrderDto with atomic stock management.
-     * Uses findAndModify for atomic stock decrement to prevent overselling.
+     * Basket knives are prefetched in one lookup and validated in memory; stock is then decremented
+     * with a single ordered bulk write of conditional updates to prevent overselling.
      * Includes rollback mechanism if any part of the order fails.
+     * If the request carries an active stock reservation, reserved quantities are consumed
+     * instead of being decremented again; only quantities beyond the reservation hit stock.
+     * Outside a transaction the placement is recorded as an OrderPlacementIntent first; the returned
+     * order carries its id and the caller must complete (or compensate) it once the order is saved.
      *
      * @param orderRequest The order request from Iyzico
-     * @param dailyOrderCount The daily order count for order number generation
+     * @param orderNumber Order number allocated by OrderNumberService
      * @return The mapped OrderDto ready for persistence
      * @throws IllegalArgumentException for validation errors
      * @throws IllegalStateException for stock availability issues
      */
     @Transactional
-    public OrderDto mapOrderRequestToOrder(OrderRequestDto orderRequest, long dailyOrderCount) {
+    public OrderDto mapOrderRequestToOrder(OrderRequestDto orderRequest, String orderNumber) {
         // Track decremented stock for rollback
         List<StockChange> stockChanges = new ArrayList<>();
+        // Quantities still available from a confirmed reservation, per knife
+        Map<String, Integer> reserved = new HashMap<>();
+        String confirmedReservationId = null;
+        String placementIntentId = null;
 
         try {
             OrderDto orderDto = new OrderDto();
@@ -52,10 +77,7 @@ public class OrderMapper {
             String currentDate = LocalDate.now().toString();
             orderDto.setOrderDate(currentDate);
 
-            // Generate order number: ORD-XXXXXXXX
-            String orderNumber = generateOrderNumber(currentDate, dailyOrderCount);
             orderDto.setOrderNumber(orderNumber);
-            log.info("Generated order number: {}", orderNumber);
             orderDto.setShippingAddress(
                     orderRequest.getShippingAddress() != null ? orderRequest.getShippingAddress().getAddress() : null
             );
@@ -80,72 +102,179 @@ public class OrderMapper {
             orderDto.setHistory("Sipariş oluşturuldu.");
             List<KnifeOrderDto> orderKnifes = new ArrayList<>();
 
+            // Record the placement before touching the reservation or stock, so a crash can be recovered.
+            // Inside a transaction the abort already undoes everything
+            if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+                placementIntentId = placementIntentService.begin(orderRequest.getReservationId());
+                orderDto.setPlacementIntentId(placementIntentId);
+            }
+
+            // Consume the checkout reservation - its stock was already taken when it was made
+            Optional<StockReservation> reservation = stockReservationService.confirm(orderRequest.getReservationId(), placementIntentId);
+            if (reservation.isPresent()) {
+                confirmedReservationId = reservation.get().getId();
+                for (StockReservation.Item item : reservation.get().getItems()) {
+                    reserved.merge(item.getKnifeId(), item.getQuantity(), Integer::sum);
+                    // Held stock goes back to the pool if this order fails
+                    stockChanges.add(new StockChange(item.getKnifeId(), item.getQuantity()));
+                }
+            }
+
+            // Prefetch every basket knife in one query and validate in memory before touching stock
+            Map<String, KnifeDto> knivesById = new HashMap<>();
+            knifeService.findKnivesByIds(orderRequest.getBasketItems().stream()
+                            .map(BasketItemDto::getId)
+                            .filter(Objects::nonNull)
+                            .collect(Collectors.toSet()))
+                    .forEach(knifeDto -> knivesById.put(knifeDto.getId(), knifeDto));
+
+            // Quantity still to take from stock per knife (lines for the same knife share its stock)
+            Map<String, Integer> decrements = new LinkedHashMap<>();
             for (BasketItemDto knife : orderRequest.getBasketItems()) {
-                KnifeDto knifeDto = knifeService.getKnifeById(knife.getId());
+                KnifeDto knifeDto = knivesById.get(knife.getId());
                 if (knifeDto == null) {
                     log.info("Knife not found with id: {}", knife.getId());
-                    rollbackStockChanges(stockChanges);
                     throw new IllegalArgumentException("Knife not found with id: " + knife.getId());
                 }
+                if (knife.getQuantity() == null || knife.getQuantity() <= 0) {
+                    throw new IllegalArgumentException("Invalid quantity for knife: " + knifeDto.getName());
+                }
 
                 // Validate size selection
                 if (knifeDto.getKnifeSizes() != null) {
                     if (knife.getSelectedSize() != null && !knifeDto.getKnifeSizes().contains(knife.getSelectedSize())) {
                         log.info("Invalid knife size selected for knife: {}. Selected size: {}, Available sizes: {}",
                                 knifeDto.getName(), knife.getSelectedSize(), knifeDto.getKnifeSizes());
-                        rollbackStockChanges(stockChanges);
                         throw new IllegalArgumentException("Invalid knife size selected for knife: " + knifeDto.getName());
                     }
                 }
 
-                // Atomically decrement stock - this prevents overselling
-                try {
-                    KnifeDto updatedKnife = knifeService.decrementStockAtomic(knife.getId(), knife.getQuantity());
-                    stockChanges.add(new StockChange(knife.getId(), knife.getQuantity()));
-                    log.info("Atomically decremented stock for knife: {}. New stock: {}",
-                            knifeDto.getName(), updatedKnife.getStockQuantity());
-
-                    KnifeOrderDto knifeOrderDto = generateKnifeOrder(knifeDto, knife);
-                    knifeOrderDto.setStockQuantity(updatedKnife.getStockQuantity());
-                    orderKnifes.add(knifeOrderDto);
-
-                } catch (IllegalStateException e) {
-                    // Insufficient stock - rollback and throw
-                    log.warn("Insufficient stock for knife: {}. Requested: {}, Error: {}",
-                            knifeDto.getName(), knife.getQuantity(), e.getMessage());
-                    rollbackStockChanges(stockChanges);
-                    throw new IllegalArgumentException("Insufficient stock for knife: " + knifeDto.getName());
+                int fromReservation = Math.min(knife.getQuantity(), reserved.getOrDefault(knife.getId(), 0));
+                reserved.merge(knife.getId(), -fromReservation, Integer::sum);
+                int toDecrement = knife.getQuantity() - fromReservation;
+                if (toDecrement > 0) {
+                    decrements.merge(knife.getId(), toDecrement, Integer::sum);
+                } else {
+                    log.info("Stock for knife: {} covered by reservation {}", knifeDto.getName(), confirmedReservationId);
                 }
+
+                orderKnifes.add(generateKnifeOrder(knifeDto, knife));
+            }
+
+            // Reserved quantities the final basket did not use go back to the pool
+            Map<String, Integer> unusedReserved = new LinkedHashMap<>();
+            reserved.forEach((knifeId, quantity) -> {
+                if (quantity > 0) {
+                    unusedReserved.put(knifeId, quantity);
+                }
+            });
+            if (placementIntentId != null) {
+                placementIntentService.recordStock(placementIntentId, decrements, unusedReserved);
+            }
+
+            // Atomically decrement all remaining quantities in one ordered bulk write - this prevents overselling
+            try {
+                knifeService.decrementStockBulk(decrements, placementIntentId, StockMovement.Cause.ORDER);
+                decrements.forEach((knifeId, quantity) -> stockChanges.add(new StockChange(knifeId, quantity)));
+                log.info("Atomically decremented stock for {} knives", decrements.size());
+            } catch (InsufficientStockException e) {
+                // Insufficient stock - the bulk rolled back its own decrements
+                KnifeDto knifeDto = knivesById.get(e.getKnifeId());
+                String knifeName = knifeDto != null ? knifeDto.getName() : e.getKnifeId();
+                log.warn("Insufficient stock for knife: {}. Requested: {}, Error: {}",
+                        knifeName, decrements.get(e.getKnifeId()), e.getMessage());
+                throw new IllegalArgumentException("Insufficient stock for knife: " + knifeName);
+            }
+
+            // Stock left after this order (approximate: based on the prefetched level)
+            for (KnifeOrderDto knifeOrderDto : orderKnifes) {
+                KnifeDto knifeDto = knivesById.get(knifeOrderDto.getId());
+                knifeOrderDto.setStockQuantity(knifeDto.getStockQuantity() - decrements.getOrDefault(knifeOrderDto.getId(), 0));
+            }
+
+            // With an intent they are returned when the order is saved (a failed order returns the whole reservation)
+            if (placementIntentId == null) {
+                List<StockChange> unused = new ArrayList<>();
+                unusedReserved.forEach((knifeId, quantity) -> unused.add(new StockChange(knifeId, quantity)));
+                restoreStock(unused, StockMovement.Cause.RETURN);
             }
 
             orderDto.setKnives(orderKnifes);
             return orderDto;
 
         } catch (IllegalArgumentException e) {
-            // Known validation errors - rollback already done above
+            // Known validation errors - return the reserved stock (no-op without a reservation)
+            undoPlacement(stockChanges, confirmedReservationId, placementIntentId);
             throw e;
 
         } catch (Exception e) {
             // Unexpected error - rollback all stock changes
             log.error("Error mapping OrderRequest to Order: {}", e.getMessage(), e);
-            rollbackStockChanges(stockChanges);
+            undoPlacement(stockChanges, confirmedReservationId, placementIntentId);
             throw new RuntimeException("Error mapping OrderRequest to Order: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Give back everything a failed placement took. With an intent, compensation is idempotent and is
+     * retried by the recovery worker if it fails here.
+     */
+    private void undoPlacement(List<StockChange> stockChanges, String reservationId, String placementIntentId) {
+        if (placementIntentId == null) {
+            rollbackStockChanges(stockChanges);
+            revertReservation(reservationId);
+            return;
+        }
+        stockChanges.clear();
+        try {
+            placementIntentService.compensate(placementIntentId);
+        } catch (Exception e) {
+            log.error("Failed to compensate order placement {}, left to the recovery worker", placementIntentId, e);
+        }
+    }
+
+    /**
+     * Mark a reservation consumed by a failed order as released (its stock was rolled back with the order).
+     */
+    private void revertReservation(String reservationId) {
+        if (reservationId == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            // Inside a transaction the abort also undoes the confirmation
+            return;
+        }
+        try {
+            stockReservationService.revertConfirmation(reservationId);
+        } catch (Exception e) {
+            log.error("Failed to revert stock reservation: {}", reservationId, e);
+        }
+    }
+
     /**
      * Rollback stock changes in case of order creation failure.
-     * Restores stock for all products that were decremented.
+     * Restores stock for all products that were decremented and clears the list,
+     * so calling it again for the same failure does not restore twice.
      */
     private void rollbackStockChanges(List<StockChange> stockChanges) {
         if (stockChanges.isEmpty()) {
             return;
         }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // Transactional placement: aborting the transaction undoes every decrement
+            stockChanges.clear();
+            return;
+        }
 
         log.info("Rolling back {} stock changes", stockChanges.size());
+        restoreStock(stockChanges, StockMovement.Cause.ROLLBACK);
+        stockChanges.clear();
+    }
+
+    /**
+     * Put stock back for the given changes (best effort, failures are logged).
+     */
+    private void restoreStock(List<StockChange> stockChanges, StockMovement.Cause cause) {
         for (StockChange change : stockChanges) {
             try {
-                knifeService.incrementStockAtomic(change.productId, change.quantity);
+                knifeService.incrementStockAtomic(change.productId, change.quantity, cause);
                 log.info("Rolled back stock for product: {} (+{})", change.productId, change.quantity);
             } catch (Exception e) {
                 // Log but don't throw - best effort rollback
@@ -163,6 +292,7 @@ public class OrderMapper {
         KnifeOrderDto knifeOrderDto = new KnifeOrderDto();
         knifeOrderDto.setId(knifeDto.getId());
         knifeOrderDto.setName(knifeDto.getName());
+        knifeOrderDto.setSlug(knifeDto.getSlug());
         knifeOrderDto.setCategoryId(knifeDto.getCategoryId());
         knifeOrderDto.setDescription(knifeDto.getDescription());
         knifeOrderDto.setPrice(knifeDto.getPrice());
@@ -174,48 +304,8 @@ public class OrderMapper {
         knifeOrderDto.setHandleMaterial(knifeDto.getHandleMaterial());
         knifeOrderDto.setColor(knifeDto.getColor());
         knifeOrderDto.setSelectedSize(knife.getSelectedSize());
+        knifeOrderDto.setQuantity(knife.getQuantity());
         knifeOrderDto.setCustomerNote(knife.getNote());
         return knifeOrderDto;
     }
-
-    /**
-     * Generates a unique order number using hash-based approach
-     * Format: ORD-XXXXXXXX (e.g., ORD-A7B8C9D2)
-     * Uses hash of timestamp, date, and daily count for security
-     *
-     * @param dateString The order date in YYYY-MM-DD format
-     * @param dailyOrderCount The count of orders for the given date
-     * @return Generated order number
-     */
-    private String generateOrderNumber(String dateString, long dailyOrderCount) {
-        try {
-
-            // Create unique input for hashing
-            long timestamp = System.currentTimeMillis();
-            String input = timestamp + ":" + dateString + ":" + (dailyOrderCount + 1) + ":BLADE_COMMERCE_SALT_2025";
-
-            // Generate SHA-256 hash and take first 8 characters
-            java.security.MessageDigest md = java.security.MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = md.digest(input.getBytes(StandardCharsets.UTF_8));
-
-            // Convert to hex and take first 8 characters, make uppercase
-            StringBuilder hexString = new StringBuilder();
-            for (int i = 0; i < Math.min(4, hashBytes.length); i++) {
-                String hex = Integer.toHexString(0xff & hashBytes[i]);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-
-            String orderCode = hexString.toString().toUpperCase();
-            return "ORD-" + orderCode;
-
-        } catch (Exception e) {
-            log.error("Error generating hash-based order number for date {}: {}", dateString, e.getMessage());
-            // Fallback: random alphanumeric code
-            String randomCode = Long.toString(System.currentTimeMillis(), 36).substring(2, 10).toUpperCase();
-            return "ORD-" + randomCode;
-        }
-    }
 }
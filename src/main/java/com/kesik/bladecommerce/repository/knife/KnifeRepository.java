@@ -8,6 +8,7 @@ import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface KnifeRepository extends MongoRepository<KnifeDto, String> {
@@ -24,4 +25,10 @@ public interface KnifeRepository extends MongoRepository<KnifeDto, String> {
                                 String knifeType, String bladeMaterial, Pageable pageable);
     @Query("{ 'name': ?0 }")
     KnifeDto getKnifeByName(String name);
+
+    Optional<KnifeDto> findBySlug(String slug);
+
+    boolean existsBySlugAndIdNot(String slug, String id);
+
+    boolean existsBySlug(String slug);
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.kesik.bladecommerce.service;
+
+/**
+ * Back-in-stock subscriptions: shoppers leave an email for an out-of-stock knife and get one mail
+ * when it is restocked (a change that takes it from 0 to positive)
+ */
+public interface BackInStockService {
+
+    /**
+     * Subscribe an email to a knife's next restock. Nothing is sent on a restock until the address owner
+     * follows the confirmation link mailed here. Subscribing a waiting address again is a no-op.
+     *
+     * @throws IllegalArgumentException for an invalid email or an unknown knife
+     * @throws com.kesik.bladecommerce.exception.TooManyRequestsException if the address already has too many
+     *                                                                    unconfirmed subscriptions
+     */
+    void subscribe(String knifeId, String email);
+
+    /**
+     * Confirm a subscription from the link in the confirmation mail
+     *
+     * @throws IllegalArgumentException for an unknown or expired token
+     */
+    void confirm(String token);
+
+    /**
+     * Remove the subscription of an unsubscribe link. Unknown tokens are ignored.
+     */
+    void unsubscribe(String token);
+
+    /**
+     * Mail every waiting subscriber of the knife, page by page, one SMTP connection per page
+     *
+     * @return Number of subscribers notified
+     */
+    int notifySubscribers(String knifeId);
+}
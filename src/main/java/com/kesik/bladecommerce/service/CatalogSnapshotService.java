@@ -0,0 +1,410 @@
+package com.kesik.bladecommerce.service;
+
+import com.kesik.bladecommerce.dto.category.CategoryDto;
+import com.kesik.bladecommerce.dto.knife.KnifeDto;
+import com.kesik.bladecommerce.dto.knife.KnifeFacets;
+import com.kesik.bladecommerce.dto.knife.KnifeSortField;
+import com.kesik.bladecommerce.repository.category.CategoryRepository;
+import com.kesik.bladecommerce.repository.knife.KnifeRepository;
+import com.kesik.bladecommerce.util.CatalogVersion;
+import com.kesik.bladecommerce.util.PageCursor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable in-memory snapshot of the knife catalog.
+ *
+ * The knives collection is small and only changes through admin edits and stock updates,
+ * so storefront listings are answered in-process instead of running count + find against
+ * MongoDB on every request. Writers never mutate the current snapshot; they build a new one
+ * and publish it with a single volatile write (copy-on-write), so readers never block.
+ *
+ * Changes made by other instances are picked up by the periodic refresh.
+ */
+@Service
+@Slf4j
+public class CatalogSnapshotService {
+
+    private final KnifeRepository knifeRepository;
+    private final CategoryRepository categoryRepository;
+    private final CatalogVersion catalogVersion;
+
+    @Value("${catalog.snapshot.enabled:true}")
+    private boolean enabled;
+
+    private volatile Snapshot snapshot;
+    // Categories as of the last refresh, only to notice changes (category reads are not served from here)
+    private List<CategoryDto> categories;
+
+    public CatalogSnapshotService(KnifeRepository knifeRepository, CategoryRepository categoryRepository,
+                                  CatalogVersion catalogVersion) {
+        this.knifeRepository = knifeRepository;
+        this.categoryRepository = categoryRepository;
+        this.catalogVersion = catalogVersion;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Filter, sort and page the catalog in memory.
+     * Filter semantics mirror the MongoDB criteria built in KnifeServiceImpl.
+     */
+    public Page<KnifeDto> search(String searchTerm, Integer categoryId, Double minPrice, Double maxPrice,
+                                 String knifeType, String bladeMaterial, boolean onSaleOnly,
+                                 KnifeSortField sortField, String sortDirection, Pageable pageable) {
+        return scan(buildFilter(searchTerm, categoryId, minPrice, maxPrice, knifeType, bladeMaterial, onSaleOnly),
+                sortField, sortDirection, pageable, knife -> { });
+    }
+
+    /**
+     * Same as {@link #search} but also counts facets over every matching knife in the same pass.
+     *
+     * @param priceBoundaries Ascending lower bounds of the price buckets
+     */
+    public FacetedPage searchWithFacets(String searchTerm, Integer categoryId, Double minPrice, Double maxPrice,
+                                        String knifeType, String bladeMaterial, boolean onSaleOnly,
+                                        KnifeSortField sortField, String sortDirection, Pageable pageable,
+                                        double[] priceBoundaries) {
+        FacetCounter counter = new FacetCounter(priceBoundaries);
+        Page<KnifeDto> page = scan(buildFilter(searchTerm, categoryId, minPrice, maxPrice, knifeType, bladeMaterial, onSaleOnly),
+                sortField, sortDirection, pageable, counter::add);
+        return new FacetedPage(page, counter.toFacets());
+    }
+
+    public record FacetedPage(Page<KnifeDto> page, KnifeFacets facets) {}
+
+    /**
+     * Keyset page: up to {@code limit} matching knives strictly after the (price, id) cursor
+     * in the requested direction. Starts with a binary search instead of skipping from the top.
+     */
+    public List<KnifeDto> searchAfter(String searchTerm, Integer categoryId, Double minPrice, Double maxPrice,
+                                      String knifeType, String bladeMaterial, boolean onSaleOnly, String sortDirection,
+                                      PageCursor cursor, int limit) {
+        Predicate<KnifeDto> filter = buildFilter(searchTerm, categoryId, minPrice, maxPrice, knifeType, bladeMaterial, onSaleOnly);
+        List<KnifeDto> sorted = current().byPrice();
+        boolean ascending = "asc".equalsIgnoreCase(sortDirection);
+
+        int start;
+        if (cursor == null) {
+            start = ascending ? 0 : sorted.size() - 1;
+        } else {
+            double price = cursor.keyAsDouble();
+            int index = Collections.binarySearch(sorted, null, (knife, ignored) -> comparePriceKey(knife, price, cursor.id()));
+            int insertion = index >= 0 ? index : -index - 1;
+            start = ascending ? (index >= 0 ? index + 1 : insertion) : insertion - 1;
+        }
+
+        List<KnifeDto> content = new ArrayList<>(Math.min(limit, sorted.size()));
+        for (int i = start; i >= 0 && i < sorted.size() && content.size() < limit; i += ascending ? 1 : -1) {
+            KnifeDto knife = sorted.get(i);
+            if (filter.test(knife)) {
+                content.add(knife);
+            }
+        }
+        return content;
+    }
+
+    private static int comparePriceKey(KnifeDto knife, double price, String id) {
+        int byPrice = Double.compare(knife.getPrice(), price);
+        if (byPrice != 0) {
+            return byPrice;
+        }
+        return knife.getId() == null ? 1 : knife.getId().compareTo(id);
+    }
+
+    private Page<KnifeDto> scan(Predicate<KnifeDto> filter, KnifeSortField sortField, String sortDirection,
+                                Pageable pageable, Consumer<KnifeDto> onMatch) {
+        List<KnifeDto> sorted = current().sortedBy(sortField);
+        boolean ascending = "asc".equalsIgnoreCase(sortDirection);
+
+        int offset = (int) Math.min(pageable.getOffset(), Integer.MAX_VALUE);
+        int pageSize = pageable.getPageSize();
+        List<KnifeDto> content = new ArrayList<>(Math.min(pageSize, sorted.size()));
+        int total = 0;
+
+        for (int i = 0; i < sorted.size(); i++) {
+            KnifeDto knife = sorted.get(ascending ? i : sorted.size() - 1 - i);
+            if (!filter.test(knife)) {
+                continue;
+            }
+            onMatch.accept(knife);
+            if (total >= offset && content.size() < pageSize) {
+                content.add(knife);
+            }
+            total++;
+        }
+
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    public KnifeDto getKnife(String id) {
+        return id == null ? null : current().byId().get(id);
+    }
+
+    public KnifeDto getKnifeBySlug(String slug) {
+        return slug == null ? null : current().bySlug().get(slug);
+    }
+
+    public List<KnifeDto> getAllKnives() {
+        return current().byPrice();
+    }
+
+    public List<String> getKnifeTypes() {
+        return current().byPrice().stream()
+                .map(KnifeDto::getKnifeType)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * Publish a new snapshot containing the given (saved) knife.
+     * Publishes of concurrent writes can arrive out of order; a knife older (lower revision) than the one
+     * already in the snapshot is ignored.
+     */
+    public synchronized void upsert(KnifeDto knife) {
+        if (knife == null || knife.getId() == null || snapshot == null) {
+            return;
+        }
+        KnifeDto current = snapshot.byId().get(knife.getId());
+        if (current != null && knife.getRevision() < current.getRevision()) {
+            log.debug("Ignoring stale snapshot update for knife {} (revision {} < {})",
+                    knife.getId(), knife.getRevision(), current.getRevision());
+            return;
+        }
+        Map<String, KnifeDto> knives = new HashMap<>(snapshot.byId());
+        knives.put(knife.getId(), knife);
+        snapshot = Snapshot.of(knives.values());
+    }
+
+    /**
+     * Publish one new snapshot with stock adjusted for several knives (e.g. a whole basket),
+     * instead of one copy-on-write per knife. Published knives are never mutated - changed ones are copied.
+     *
+     * @param deltas Stock change per knife id (negative for sales)
+     */
+    public synchronized void applyStockDeltas(Map<String, Integer> deltas) {
+        if (snapshot == null || deltas.isEmpty()) {
+            return;
+        }
+        Map<String, KnifeDto> knives = new HashMap<>(snapshot.byId());
+        deltas.forEach((id, delta) -> {
+            KnifeDto current = knives.get(id);
+            if (current != null) {
+                KnifeDto copy = new KnifeDto();
+                BeanUtils.copyProperties(current, copy);
+                copy.setStockQuantity(current.getStockQuantity() + delta);
+                knives.put(id, copy);
+            }
+        });
+        snapshot = Snapshot.of(knives.values());
+    }
+
+    /**
+     * Publish a new snapshot without the given knife.
+     */
+    public synchronized void remove(String id) {
+        if (id == null || snapshot == null || !snapshot.byId().containsKey(id)) {
+            return;
+        }
+        Map<String, KnifeDto> knives = new HashMap<>(snapshot.byId());
+        knives.remove(id);
+        snapshot = Snapshot.of(knives.values());
+    }
+
+    /**
+     * Reload the whole catalog from MongoDB and swap it in atomically.
+     */
+    public synchronized void refresh() {
+        long start = System.currentTimeMillis();
+        Snapshot previous = snapshot;
+        List<KnifeDto> loaded = knifeRepository.findAll();
+        if (previous != null) {
+            // A knife published while findAll was reading may be newer than the copy it returned
+            loaded = loaded.stream()
+                    .map(knife -> {
+                        KnifeDto published = previous.byId().get(knife.getId());
+                        return published != null && published.getRevision() > knife.getRevision() ? published : knife;
+                    })
+                    .toList();
+        }
+        snapshot = Snapshot.of(loaded);
+        List<CategoryDto> previousCategories = categories;
+        categories = categoryRepository.findAll();
+        // This instance's snapshot was stale until now (a write elsewhere, or one made directly in the database),
+        // so responses built from it may carry the current tag - invalidate ETags if anything changed
+        if ((previous != null && !previous.byId().equals(snapshot.byId()))
+                || (previousCategories != null && !previousCategories.equals(categories))) {
+            catalogVersion.bump();
+        }
+        log.debug("Catalog snapshot rebuilt with {} knives in {} ms",
+                snapshot.byId().size(), System.currentTimeMillis() - start);
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.snapshot.refresh-interval-ms:60000}",
+            initialDelayString = "${catalog.snapshot.refresh-interval-ms:60000}")
+    public void scheduledRefresh() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            refresh();
+        } catch (Exception e) {
+            // Keep serving the previous snapshot
+            log.warn("Catalog snapshot refresh failed: {}", e.getMessage());
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    refresh();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private Predicate<KnifeDto> buildFilter(String searchTerm, Integer categoryId, Double minPrice, Double maxPrice,
+                                            String knifeType, String bladeMaterial, boolean onSaleOnly) {
+        Predicate<KnifeDto> filter = knife -> true;
+        if (searchTerm != null && !searchTerm.isEmpty()) {
+            Pattern pattern = compileSearchPattern(searchTerm);
+            filter = filter.and(knife -> knife.getName() != null && pattern.matcher(knife.getName()).find());
+        }
+        if (categoryId != null) {
+            filter = filter.and(knife -> categoryId.equals(knife.getCategoryId()));
+        }
+        if (minPrice != null) {
+            filter = filter.and(knife -> knife.getEffectivePrice() >= minPrice);
+        }
+        if (maxPrice != null) {
+            filter = filter.and(knife -> knife.getEffectivePrice() <= maxPrice);
+        }
+        if (knifeType != null && !knifeType.isEmpty()) {
+            filter = filter.and(knife -> knifeType.equals(knife.getKnifeType()));
+        }
+        if (bladeMaterial != null && !bladeMaterial.isEmpty()) {
+            filter = filter.and(knife -> bladeMaterial.equals(knife.getBladeMaterial()));
+        }
+        if (onSaleOnly) {
+            filter = filter.and(knife -> knife.getDiscountPercent() > 0);
+        }
+        return filter;
+    }
+
+    private Pattern compileSearchPattern(String searchTerm) {
+        // Search box input is matched literally: a user-supplied regex could backtrack for seconds on every knife
+        return Pattern.compile(Pattern.quote(searchTerm), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    /**
+     * Accumulates facet counts while the catalog is scanned.
+     */
+    private static class FacetCounter {
+        private final double[] boundaries;
+        private final long[] bucketCounts;
+        private final Map<String, Long> knifeTypes = new HashMap<>();
+        private final Map<String, Long> bladeMaterials = new HashMap<>();
+        private final Map<Integer, Long> categories = new HashMap<>();
+
+        FacetCounter(double[] boundaries) {
+            this.boundaries = boundaries;
+            this.bucketCounts = new long[boundaries.length];
+        }
+
+        void add(KnifeDto knife) {
+            if (knife.getKnifeType() != null) {
+                knifeTypes.merge(knife.getKnifeType(), 1L, Long::sum);
+            }
+            if (knife.getBladeMaterial() != null) {
+                bladeMaterials.merge(knife.getBladeMaterial(), 1L, Long::sum);
+            }
+            if (knife.getCategoryId() != null) {
+                categories.merge(knife.getCategoryId(), 1L, Long::sum);
+            }
+            for (int i = boundaries.length - 1; i >= 0; i--) {
+                if (knife.getEffectivePrice() >= boundaries[i]) {
+                    bucketCounts[i]++;
+                    break;
+                }
+            }
+        }
+
+        KnifeFacets toFacets() {
+            List<KnifeFacets.PriceBucket> buckets = new ArrayList<>(boundaries.length);
+            for (int i = 0; i < boundaries.length; i++) {
+                Double max = i + 1 < boundaries.length ? boundaries[i + 1] : null;
+                buckets.add(new KnifeFacets.PriceBucket(boundaries[i], max, bucketCounts[i]));
+            }
+            return new KnifeFacets(byCountDesc(knifeTypes), byCountDesc(bladeMaterials), byCountDesc(categories), buckets);
+        }
+
+        private static <K> Map<K, Long> byCountDesc(Map<K, Long> counts) {
+            Map<K, Long> sorted = new LinkedHashMap<>();
+            counts.entrySet().stream()
+                    .sorted(Map.Entry.<K, Long>comparingByValue().reversed())
+                    .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+            return sorted;
+        }
+    }
+
+    /**
+     * One published version of the catalog. Never modified after construction.
+     */
+    private record Snapshot(Map<KnifeSortField, List<KnifeDto>> orderings, Map<String, KnifeDto> byId,
+                            Map<String, KnifeDto> bySlug) {
+
+        static Snapshot of(Collection<KnifeDto> knives) {
+            // One pre-sorted list per sort key, so any sort is a straight walk
+            Map<KnifeSortField, List<KnifeDto>> orderings = new EnumMap<>(KnifeSortField.class);
+            for (KnifeSortField field : KnifeSortField.values()) {
+                List<KnifeDto> sorted = new ArrayList<>(knives);
+                sorted.sort(field.comparator());
+                orderings.put(field, Collections.unmodifiableList(sorted));
+            }
+            Map<String, KnifeDto> byId = new HashMap<>(knives.size() * 2);
+            Map<String, KnifeDto> bySlug = new HashMap<>(knives.size() * 2);
+            for (KnifeDto knife : knives) {
+                byId.put(knife.getId(), knife);
+                if (knife.getSlug() != null) {
+                    bySlug.put(knife.getSlug(), knife);
+                }
+            }
+            return new Snapshot(Collections.unmodifiableMap(orderings), Collections.unmodifiableMap(byId),
+                    Collections.unmodifiableMap(bySlug));
+        }
+
+        List<KnifeDto> sortedBy(KnifeSortField field) {
+            return orderings.get(field);
+        }
+
+        List<KnifeDto> byPrice() {
+            return orderings.get(KnifeSortField.PRICE);
+        }
+    }
+}
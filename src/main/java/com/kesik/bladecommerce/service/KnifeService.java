@@ -1,12 +1,19 @@
 package com.kesik.bladecommerce.service;
 
+import com.kesik.bladecommerce.dto.PaginatedResponse;
 import com.kesik.bladecommerce.dto.knife.AddKnifeRequestDto;
+import com.kesik.bladecommerce.dto.knife.KnifeBatchResponse;
 import com.kesik.bladecommerce.dto.knife.KnifeDto;
+import com.kesik.bladecommerce.dto.knife.KnifeSearchResponse;
+import com.kesik.bladecommerce.dto.knife.KnifeSummary;
 import com.kesik.bladecommerce.dto.knife.UpdateKnifeRequestDto;
+import com.kesik.bladecommerce.entity.StockMovement;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface KnifeService {
     List<KnifeDto> getAllKnives();
@@ -14,13 +21,81 @@ public interface KnifeService {
     List<KnifeDto> searchKnives(String searchTerm, Integer categoryId, Double minPrice, Double maxPrice,
                                 String knifeType, String bladeMaterial, String sortDirection, int page, int size);
 
+    /**
+     * Filtered, sorted page of knives.
+     *
+     * @param onSaleOnly Only knives with an actual discount (discountPercent &gt; 0)
+     * @param sortBy     price, effectivePrice or discount (see {@link com.kesik.bladecommerce.dto.knife.KnifeSortField})
+     * @throws IllegalArgumentException for an unknown sortBy
+     */
     Page<KnifeDto> searchKnivesPageable(String searchTerm, Integer categoryId, Double minPrice, Double maxPrice,
-                                       String knifeType, String bladeMaterial, String sortDirection, Pageable pageable);
+                                       String knifeType, String bladeMaterial, boolean onSaleOnly,
+                                       String sortBy, String sortDirection, Pageable pageable);
+
+    /**
+     * Same filters as searchKnivesPageable, returning the lightweight card projection.
+     */
+    Page<KnifeSummary> searchKnifeSummaries(String searchTerm, Integer categoryId, Double minPrice, Double maxPrice,
+                                            String knifeType, String bladeMaterial, boolean onSaleOnly,
+                                            String sortBy, String sortDirection, Pageable pageable);
+
+    /**
+     * Full-text search backed by the knives text index ($text), optionally ranked by textScore.
+     *
+     * @param sortBy relevance sorts by text score; otherwise the same keys as searchKnivesPageable
+     */
+    Page<KnifeDto> searchKnivesByText(String searchTerm, Integer categoryId, Double minPrice, Double maxPrice,
+                                      String knifeType, String bladeMaterial, boolean onSaleOnly,
+                                      String sortBy, String sortDirection, Pageable pageable);
+
+    /**
+     * Keyset (cursor) variant of searchKnivesPageable: pages through (price, _id) without skip or count.
+     *
+     * @param cursor Token from the previous page's nextCursor, or null/empty for the first page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    PaginatedResponse<KnifeDto> searchKnivesByCursor(String searchTerm, Integer categoryId, Double minPrice, Double maxPrice,
+                                                     String knifeType, String bladeMaterial, boolean onSaleOnly,
+                                                     String sortDirection, String cursor, int size);
+
+    /**
+     * Search knives and count facets (knifeType, bladeMaterial, categoryId, price bucket)
+     * for the same filter set in a single pass.
+     */
+    KnifeSearchResponse searchKnivesWithFacets(String searchTerm, Integer categoryId, Double minPrice, Double maxPrice,
+                                               String knifeType, String bladeMaterial, boolean onSaleOnly,
+                                               String sortBy, String sortDirection, Pageable pageable);
 
     KnifeDto getKnifeById(String id);
 
     KnifeDto getKnifeByName(String name);
 
+    KnifeDto getKnifeBySlug(String slug);
+
+    /**
+     * Resolve several knives at once (cart, wishlist, order detail).
+     * Duplicates are collapsed; order follows the first occurrence of each id.
+     *
+     * @throws IllegalArgumentException if no ids or too many ids are given
+     */
+    KnifeBatchResponse getKnivesByIds(List<String> ids);
+
+    /**
+     * Current documents for the given ids in one $in query (bypasses the catalog snapshot).
+     * Unknown ids are simply absent from the result.
+     */
+    List<KnifeDto> findKnivesByIds(Collection<String> ids);
+
+    /**
+     * Assign slugs to knives saved before slugs were persisted
+     */
+    Map<String, Object> migrateExistingSlugs();
+
+    /**
+     * Compute effectivePrice and discountPercent for knives saved before they were stored
+     */
+    Map<String, Object> migrateDerivedPricing();
+
     KnifeDto addKnife(AddKnifeRequestDto knifeDto);
 
     KnifeDto updateKnife(String id, UpdateKnifeRequestDto knifeDto);
@@ -33,19 +108,50 @@ public interface KnifeService {
      *
      * @param id Product ID
      * @param decrementBy Amount to decrement (must be positive)
+     * @param cause Why the stock changes, recorded in the stock ledger
      * @return Updated KnifeDto
      * @throws IllegalArgumentException if product not found
      * @throws IllegalStateException if insufficient stock
      */
-    KnifeDto decrementStockAtomic(String id, int decrementBy);
+    KnifeDto decrementStockAtomic(String id, int decrementBy, StockMovement.Cause cause);
+
+    /**
+     * Decrement stock for several knives in one ordered bulk write (all or nothing).
+     * Knives the bulk cannot decrement (striped, or stock changed meanwhile) fall back to decrementStockAtomic.
+     * With a holdId every decremented knife is tagged with it in stockHolds, so a crashed caller's
+     * decrements can later be found and returned exactly once (see releaseStockHold).
+     *
+     * @param quantities Amount to decrement per knife id (must be positive)
+     * @param holdId Hold tag to record on each decremented knife, or null for none
+     * @param cause Why the stock changes, recorded in the stock ledger
+     * @throws IllegalArgumentException if a product is not found
+     * @throws com.kesik.bladecommerce.exception.InsufficientStockException if a knife has insufficient stock;
+     *         decrements already applied are rolled back
+     */
+    void decrementStockBulk(Map<String, Integer> quantities, String holdId, StockMovement.Cause cause);
+
+    /**
+     * Return stock taken under a hold. Only knives still tagged with holdId get their quantity back
+     * and the tag is removed in the same update, so repeating the call never restores twice.
+     *
+     * @param holdId Hold tag passed to decrementStockBulk
+     * @param quantities Amount that was decremented per knife id
+     */
+    void releaseStockHold(String holdId, Map<String, Integer> quantities);
+
+    /**
+     * Keep the stock taken under a hold (the order went through) and drop the hold tag
+     */
+    void clearStockHold(String holdId, Collection<String> knifeIds);
 
     /**
      * Atomically restore stock quantity (rollback operation).
      *
      * @param id Product ID
      * @param incrementBy Amount to restore
+     * @param cause Why the stock changes, recorded in the stock ledger
      */
-    void incrementStockAtomic(String id, int incrementBy);
+    void incrementStockAtomic(String id, int incrementBy, StockMovement.Cause cause);
 
     void deleteKnife(String id);
 
@@ -0,0 +1,210 @@
+package com.kesik.bladecommerce.service;
+
+import com.kesik.bladecommerce.dto.knife.KnifeDto;
+import com.kesik.bladecommerce.dto.knife.KnifeSuggestion;
+import com.kesik.bladecommerce.util.SlugUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Type-ahead suggester for the storefront search box.
+ *
+ * Terms (knife names, tags, knifeType, bladeMaterial) are folded with {@link SlugUtil#fold} and
+ * indexed in an immutable prefix trie whose nodes cache their best suggestions, so a lookup is
+ * a walk down the typed prefix with no database call.
+ *
+ * The term index is kept in sync with the catalog snapshot incrementally: only knives whose
+ * snapshot entry changed are re-read, and the trie is rebuilt only when the set of terms
+ * actually changed (stock-only updates leave it untouched).
+ */
+@Service
+@Slf4j
+public class KnifeSuggestService {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private final CatalogSnapshotService catalogSnapshot;
+
+    // Term bookkeeping - guarded by this
+    private final Map<String, KnifeDto> indexedKnives = new HashMap<>();
+    private final Map<String, Set<Term>> termsByKnife = new HashMap<>();
+    private final Map<Term, Integer> termCounts = new HashMap<>();
+    private List<KnifeDto> indexedCatalog;
+
+    private volatile TrieNode root = new TrieNode();
+
+    public KnifeSuggestService(CatalogSnapshotService catalogSnapshot) {
+        this.catalogSnapshot = catalogSnapshot;
+    }
+
+    /**
+     * Suggestions whose folded text, or any word in it, starts with the folded query.
+     */
+    public List<KnifeSuggestion> suggest(String query, int limit) {
+        String prefix = SlugUtil.fold(query).trim();
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        syncWithCatalog();
+
+        TrieNode node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        if (node == null) {
+            return List.of();
+        }
+
+        int max = Math.min(Math.max(limit, 1), MAX_SUGGESTIONS);
+        List<KnifeSuggestion> result = new ArrayList<>(max);
+        for (int i = 0; i < node.top.size() && result.size() < max; i++) {
+            Entry entry = node.top.get(i);
+            result.add(new KnifeSuggestion(entry.term.text, entry.term.type, entry.term.knifeId, entry.count));
+        }
+        return result;
+    }
+
+    private void syncWithCatalog() {
+        List<KnifeDto> catalog = catalogSnapshot.getAllKnives();
+        if (catalog == indexedCatalog) {
+            return;
+        }
+        synchronized (this) {
+            if (catalog == indexedCatalog) {
+                return;
+            }
+            boolean termsChanged = false;
+            Set<String> seen = new HashSet<>();
+            for (KnifeDto knife : catalog) {
+                seen.add(knife.getId());
+                // Snapshots keep unchanged knives as the same instance - only re-read the ones that changed
+                if (indexedKnives.get(knife.getId()) != knife) {
+                    termsChanged |= reindex(knife.getId(), knife);
+                }
+            }
+            for (String id : new ArrayList<>(indexedKnives.keySet())) {
+                if (!seen.contains(id)) {
+                    termsChanged |= reindex(id, null);
+                }
+            }
+            if (termsChanged) {
+                long start = System.nanoTime();
+                root = buildTrie();
+                log.debug("Suggestion trie rebuilt with {} terms in {} µs", termCounts.size(), (System.nanoTime() - start) / 1000);
+            }
+            indexedCatalog = catalog;
+        }
+    }
+
+    private boolean reindex(String id, KnifeDto knife) {
+        Set<Term> oldTerms = termsByKnife.getOrDefault(id, Set.of());
+        Set<Term> newTerms = knife == null ? Set.of() : termsOf(knife);
+        if (knife == null) {
+            indexedKnives.remove(id);
+            termsByKnife.remove(id);
+        } else {
+            indexedKnives.put(id, knife);
+            termsByKnife.put(id, newTerms);
+        }
+        if (oldTerms.equals(newTerms)) {
+            return false;
+        }
+        for (Term term : oldTerms) {
+            termCounts.computeIfPresent(term, (t, count) -> count > 1 ? count - 1 : null);
+        }
+        for (Term term : newTerms) {
+            termCounts.merge(term, 1, Integer::sum);
+        }
+        return true;
+    }
+
+    private Set<Term> termsOf(KnifeDto knife) {
+        Set<Term> terms = new LinkedHashSet<>();
+        if (knife.getName() != null && !knife.getName().isBlank()) {
+            terms.add(new Term(knife.getName().trim(), "NAME", knife.getId()));
+        }
+        if (knife.getTags() != null) {
+            knife.getTags().stream()
+                    .filter(Objects::nonNull)
+                    .filter(tag -> !tag.isBlank())
+                    .forEach(tag -> terms.add(new Term(tag.trim(), "TAG", null)));
+        }
+        if (knife.getKnifeType() != null && !knife.getKnifeType().isBlank()) {
+            terms.add(new Term(knife.getKnifeType().trim(), "KNIFE_TYPE", null));
+        }
+        if (knife.getBladeMaterial() != null && !knife.getBladeMaterial().isBlank()) {
+            terms.add(new Term(knife.getBladeMaterial().trim(), "BLADE_MATERIAL", null));
+        }
+        return terms;
+    }
+
+    private TrieNode buildTrie() {
+        TrieNode newRoot = new TrieNode();
+        termCounts.forEach((term, count) -> {
+            Entry entry = new Entry(term, count);
+            String folded = SlugUtil.fold(term.text);
+            // Index the full text and every word start so "dam" finds "Şef Bıçağı Damascus"
+            for (int start = 0; start < folded.length(); start++) {
+                if (start == 0 || (!Character.isLetterOrDigit(folded.charAt(start - 1))
+                        && Character.isLetterOrDigit(folded.charAt(start)))) {
+                    insert(newRoot, folded, start, entry);
+                }
+            }
+        });
+        newRoot.finish();
+        return newRoot;
+    }
+
+    private void insert(TrieNode root, String key, int start, Entry entry) {
+        TrieNode node = root;
+        for (int i = start; i < key.length(); i++) {
+            node = node.children.computeIfAbsent(key.charAt(i), c -> new TrieNode());
+            node.add(entry);
+        }
+    }
+
+    /**
+     * Suggestion text plus its kind; names are per knife, other terms are shared across knives.
+     */
+    private record Term(String text, String type, String knifeId) {}
+
+    private record Entry(Term term, int count) {}
+
+    private static final Comparator<Entry> RANKING = Comparator
+            .comparing((Entry entry) -> !"NAME".equals(entry.term.type))   // Product names first
+            .thenComparing(Entry::count, Comparator.reverseOrder())
+            .thenComparing(entry -> entry.term.text.length())
+            .thenComparing(entry -> entry.term.text);
+
+    private static class TrieNode {
+        private final Map<Character, TrieNode> children = new HashMap<>();
+        private List<Entry> top = new ArrayList<>();
+        private Set<Entry> collected = new HashSet<>();
+
+        void add(Entry entry) {
+            if (collected.add(entry)) {
+                top.add(entry);
+            }
+        }
+
+        /**
+         * Keep only the best suggestions per node and drop build-time state.
+         */
+        void finish() {
+            top.sort(RANKING);
+            top = List.copyOf(top.subList(0, Math.min(top.size(), MAX_SUGGESTIONS)));
+            collected = null;
+            children.values().forEach(TrieNode::finish);
+        }
+    }
+}
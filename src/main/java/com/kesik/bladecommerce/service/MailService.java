@@ -1,9 +1,12 @@
 package com.kesik.bladecommerce.service;
 
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 public class MailService {
     private final JavaMailSender mailSender;
@@ -19,4 +22,30 @@ public class MailService {
         message.setText(text);
         mailSender.send(message);
     }
+
+    public void send(SimpleMailMessage message) {
+        mailSender.send(message);
+    }
+
+    /**
+     * Send several messages over one SMTP connection (JavaMailSender connects once per call).
+     * One rejected address does not fail the batch: the messages that could not be sent are returned.
+     *
+     * @return Messages that were not sent (empty when all went out)
+     */
+    public List<SimpleMailMessage> sendBatch(List<SimpleMailMessage> messages) {
+        if (messages.isEmpty()) {
+            return List.of();
+        }
+        try {
+            mailSender.send(messages.toArray(new SimpleMailMessage[0]));
+            return List.of();
+        } catch (MailSendException e) {
+            // Keys are the original messages; no per-message detail means nothing was sent (e.g. connect failure)
+            if (e.getFailedMessages().isEmpty()) {
+                return messages;
+            }
+            return messages.stream().filter(message -> e.getFailedMessages().containsKey(message)).toList();
+        }
+    }
 }
\ No newline at end of file
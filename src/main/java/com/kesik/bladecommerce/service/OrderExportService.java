@@ -0,0 +1,22 @@
+package com.kesik.bladecommerce.service;
+
+import com.kesik.bladecommerce.dto.order.OrderExportFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streams orders out of a MongoDB cursor; memory use does not grow with the number of orders
+ */
+public interface OrderExportService {
+
+    /**
+     * Write matching orders, oldest first. The stream is flushed but not closed.
+     *
+     * @param orderStatus Only orders with this status code, or null for all
+     * @param startDate First orderDate (YYYY-MM-DD), or null
+     * @param endDate Last orderDate (YYYY-MM-DD), or null
+     */
+    void exportOrders(OrderExportFormat format, Integer orderStatus, String startDate, String endDate,
+                      OutputStream out) throws IOException;
+}
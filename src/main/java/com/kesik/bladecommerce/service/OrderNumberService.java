@@ -0,0 +1,10 @@
+package com.kesik.bladecommerce.service;
+
+public interface OrderNumberService {
+
+    /**
+     * Next unique order number (ORD-XXXXXXXX). Served from a block of sequence values reserved
+     * in the counters collection, so most calls do not touch the database.
+     */
+    String nextOrderNumber();
+}
@@ -0,0 +1,46 @@
+package com.kesik.bladecommerce.service;
+
+import java.util.Map;
+
+/**
+ * Crash-safe bookkeeping for order placement (see OrderPlacementIntent).
+ * Every step is idempotent, so a live placement and the recovery worker may both finish the same intent.
+ */
+public interface OrderPlacementIntentService {
+
+    /**
+     * Record a new PENDING placement before the reservation or any stock is touched
+     *
+     * @param reservationId Checkout reservation the placement will confirm, or null
+     * @return The intent id, used as the stock hold tag
+     */
+    String begin(String reservationId);
+
+    /**
+     * Record the stock the placement is about to decrement and the reserved units it will give back.
+     * Must be called before the decrement itself.
+     */
+    void recordStock(String intentId, Map<String, Integer> decrements, Map<String, Integer> reservationReturns);
+
+    /**
+     * The order was saved: keep the decremented stock, drop the hold tags and return unused reserved units
+     */
+    void complete(String intentId);
+
+    /**
+     * The order will not be saved: return the decremented stock and the confirmed reservation
+     */
+    void compensate(String intentId);
+
+    /**
+     * Complete the intent if its order exists, otherwise compensate it
+     */
+    void resolve(String intentId);
+
+    /**
+     * Resolve PENDING intents older than the stale threshold (placements whose instance died)
+     *
+     * @return Number of intents resolved
+     */
+    int recoverStale();
+}
@@ -0,0 +1,47 @@
+package com.kesik.bladecommerce.service;
+
+import com.kesik.bladecommerce.dto.order.OrderDto;
+import com.kesik.bladecommerce.entity.OrderDailyRollup;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains order_daily_rollups: per-day order counts and revenue, per status and per knife
+ */
+public interface OrderRollupService {
+
+    /**
+     * Add a newly saved order to its day
+     */
+    void recordPlaced(OrderDto order);
+
+    /**
+     * Move an order's count and revenue from its previous status to its current one
+     *
+     * @param previousStatusCode Status code before the update, or null if the order had none
+     */
+    void recordStatusChange(OrderDto order, Integer previousStatusCode);
+
+    /**
+     * Remove a deleted order from its day
+     */
+    void recordDeleted(OrderDto order);
+
+    /**
+     * Recompute the rollups of a date range from the orders collection, one day replaced at a time.
+     * Today is never rebuilt (it is still taking live updates); the range ends yesterday at the latest.
+     * A day is only replaced if no live update reached it while it was recomputed, otherwise it is recomputed
+     * again; days that keep changing are left as they are and reported in skippedDays.
+     *
+     * @param startDate First day (YYYY-MM-DD), or null for the earliest order
+     * @param endDate Last day (YYYY-MM-DD), or null for yesterday
+     * @return Days and orders processed
+     */
+    Map<String, Object> rebuild(String startDate, String endDate);
+
+    /**
+     * Rollups of the days in a range (either bound may be null), ordered by day. Days without orders are absent.
+     */
+    List<OrderDailyRollup> getRollups(String startDate, String endDate);
+}
@@ -1,5 +1,6 @@
 package com.kesik.bladecommerce.service;
 
+import com.kesik.bladecommerce.dto.PaginatedResponse;
 import com.kesik.bladecommerce.dto.iyzico.OrderRequestDto;
 import com.kesik.bladecommerce.dto.order.AddOrderDto;
 import com.kesik.bladecommerce.dto.order.OrderDto;
@@ -37,16 +38,30 @@ public interface OrderService {
                                 int sortDirection, String status, String paymentId, String conversationId,
                                 String shippingCity, String adminNote, Pageable pageable);
 
-    OrderDto updateOrderStatus(String id, int orderStatus);
-
-    List<OrderStatusDto> getAllOrderStatus();
+    /**
+     * Full-text variant of searchOrders backed by the orders text index
+     * (userName, userSurname, email, phoneNumber), optionally ranked by textScore.
+     *
+     * @param sortByRelevance Sort by text score instead of orderDate
+     */
+    Page<OrderDto> searchOrdersByText(String searchTerm, String minPrice, String maxPrice, String startDate, String endDate,
+                                      int sortDirection, String status, String paymentId, String conversationId,
+                                      String shippingCity, String adminNote, boolean sortByRelevance, Pageable pageable);
 
     /**
-     * Get count of orders for a specific date
-     * @param date Date in YYYY-MM-DD format
-     * @return Number of orders for that date
+     * Keyset (cursor) variant of searchOrders: pages through (orderDate, _id) without skip or count.
+     *
+     * @param cursor Token from the previous page's nextCursor, or null/empty for the first page
+     * @throws IllegalArgumentException if the cursor is malformed
      */
-    long getOrderCountForDate(String date);
+    PaginatedResponse<OrderDto> searchOrdersByCursor(String searchTerm, String minPrice, String maxPrice, String startDate,
+                                                     String endDate, int sortDirection, String status, String paymentId,
+                                                     String conversationId, String shippingCity, String adminNote,
+                                                     String cursor, int size);
+
+    OrderDto updateOrderStatus(String id, int orderStatus);
+
+    List<OrderStatusDto> getAllOrderStatus();
 
     /**
      * Get order statistics for a date range
@@ -56,6 +71,14 @@ public interface OrderService {
      */
     OrderStatistics getOrderStatistics(String startDate, String endDate);
 
+    /**
+     * Recompute the daily order rollups behind getOrderStatistics from the orders collection
+     * @param startDate First day in YYYY-MM-DD format, or null for all history
+     * @param endDate Last day in YYYY-MM-DD format, or null for all history
+     * @return Days and orders processed
+     */
+    Map<String, Object> rebuildOrderRollups(String startDate, String endDate);
+
     /**
      * Migrate existing orders to add order numbers
      * @return Migration results with statistics
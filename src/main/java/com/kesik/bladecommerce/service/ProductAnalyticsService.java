@@ -0,0 +1,50 @@
+package com.kesik.bladecommerce.service;
+
+import com.kesik.bladecommerce.dto.knife.BestSeller;
+import com.kesik.bladecommerce.dto.knife.BoughtTogether;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Best sellers and co-purchases, kept in product_rankings by a background job that reads new orders
+ * incrementally. Lookups never touch the orders collection.
+ */
+public interface ProductAnalyticsService {
+
+    /**
+     * Fold orders placed since the last run into the rankings
+     *
+     * @return Orders processed by this call
+     */
+    long refresh();
+
+    /**
+     * Take an order's status change into the rankings: an order moving to cancelled or returned after it was
+     * folded is subtracted again, and added back if it leaves those statuses. No-op for orders not folded yet.
+     */
+    void recordStatusChange(String orderId);
+
+    /**
+     * Drop the rankings and recompute them from every order
+     *
+     * @return Orders processed
+     */
+    long rebuild();
+
+    /**
+     * Knives with the most units sold
+     */
+    List<BestSeller> getBestSellers(int limit);
+
+    /**
+     * Knives most often ordered together with the given one; empty for a knife that was never ordered
+     */
+    List<BoughtTogether> getBoughtTogether(String knifeId, int limit);
+
+    /**
+     * Units sold per knife id; knives that were never ordered are absent
+     */
+    Map<String, Long> getUnitsSold(Collection<String> knifeIds);
+}
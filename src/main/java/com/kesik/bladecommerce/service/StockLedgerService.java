@@ -0,0 +1,58 @@
+package com.kesik.bladecommerce.service;
+
+import com.kesik.bladecommerce.dto.stock.StockLedgerPosition;
+import com.kesik.bladecommerce.dto.stock.StockLedgerResponse;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Append-only stock ledger (stock_movements) fed by StockChangedEvent, compacted into stock_snapshots.
+ * Movements are buffered in memory and written in batches, so the decrement path never waits on the ledger.
+ *
+ * The buffer is the loss window: movements not yet flushed when the process is killed, or dropped while the
+ * buffer is full during a MongoDB outage, never reach the ledger. Dropped movements are known and the affected
+ * knives re-seeded once the buffer drains; lost ones show up as a steady liveDrift, which reconciliation
+ * re-seeds once two runs agree on it.
+ */
+public interface StockLedgerService {
+
+    /**
+     * Write buffered movements to stock_movements
+     *
+     * @return Number of movements written
+     */
+    int flush();
+
+    /**
+     * Fold movements older than the compaction grace period into per-knife snapshots.
+     * Knives without a snapshot get one seeded from their current stock. Buffered movements are flushed first.
+     *
+     * @return Number of knives whose snapshot was created or advanced
+     */
+    int compact();
+
+    /**
+     * Drop the knives' snapshots and seed new ones from their current stock, so the ledger agrees with live stock
+     * again after movements were lost. Their ledger start moves to the new seed.
+     *
+     * @return Number of knives re-seeded
+     */
+    int rebaseline(Collection<String> knifeIds);
+
+    /**
+     * Stock level of a knife rebuilt from snapshot plus tail, with its latest movements
+     *
+     * @param limit Maximum number of recent movements to return
+     */
+    StockLedgerResponse getLedger(String knifeId, int limit);
+
+    /**
+     * Ledger positions of every knife the ledger has taken over (knives with a snapshot)
+     *
+     * @param consumedBefore Movements at or after this instant are left out of the consumed totals
+     * @return Position per knife id
+     */
+    Map<String, StockLedgerPosition> getPositions(Instant consumedBefore);
+}
@@ -0,0 +1,23 @@
+package com.kesik.bladecommerce.service;
+
+import com.kesik.bladecommerce.entity.StockDriftReport;
+
+/**
+ * Compares live stock, the stock ledger and the orders collection, and reports drift between them
+ */
+public interface StockReconciliationService {
+
+    /**
+     * Run a reconciliation and store its report
+     *
+     * @param autoCorrect Return stock that left the shelf without an order (orderDrift > 0, liveDrift == 0) when
+     *                    the previous run, at least one grace period earlier, reported the same drift
+     * @return The stored report
+     */
+    StockDriftReport reconcile(boolean autoCorrect);
+
+    /**
+     * @return The most recent report, or null if none was stored yet
+     */
+    StockDriftReport getLatestReport();
+}
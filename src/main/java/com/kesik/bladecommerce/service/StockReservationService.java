@@ -0,0 +1,60 @@
+package com.kesik.bladecommerce.service;
+
+import com.kesik.bladecommerce.dto.stock.StockCheckRequest;
+import com.kesik.bladecommerce.dto.stock.StockReservationResponse;
+import com.kesik.bladecommerce.entity.StockReservation;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface StockReservationService {
+
+    /**
+     * Atomically take the requested quantities out of available stock and hold them until expiry.
+     * Lines for the same knife are merged. Either every line is reserved or none is.
+     *
+     * @param clientKey Caller identity (see RequestRateLimiter.clientKey); limits how many reservations one client holds
+     * @throws IllegalArgumentException for an empty request, too many lines, a quantity above the per-line cap,
+     *         non-positive quantities or unknown knives
+     * @throws IllegalStateException if any knife does not have enough stock
+     * @throws com.kesik.bladecommerce.exception.TooManyRequestsException if the client already holds the maximum
+     *         number of active reservations
+     */
+    StockReservationResponse reserve(List<StockCheckRequest> items, String clientKey);
+
+    /**
+     * Give an ACTIVE reservation's stock back. No-op for unknown or already finished reservations.
+     */
+    void release(String reservationId);
+
+    /**
+     * Consume an ACTIVE reservation for an order (ACTIVE -> CONFIRMED).
+     * An ACTIVE reservation past expiresAt that the sweeper has not released yet is still honoured.
+     *
+     * @param confirmedBy Order placement intent consuming the reservation, or null
+     * @return The confirmed reservation, or empty if it does not exist or is no longer ACTIVE
+     */
+    Optional<StockReservation> confirm(String reservationId, String confirmedBy);
+
+    /**
+     * Mark a CONFIRMED reservation RELEASED after the order that consumed it failed.
+     * Does not touch stock - the caller has already returned the quantities.
+     */
+    void revertConfirmation(String reservationId);
+
+    /**
+     * Move a reservation confirmed by the given placement back to ACTIVE because its order never got saved.
+     * The stock is still held, so the reservation can be released (or expire) like any other.
+     *
+     * @return true if the reservation was reopened
+     */
+    boolean reopen(String reservationId, String confirmedBy);
+
+    /**
+     * Release every ACTIVE reservation past its expiresAt, and every PENDING reservation older than the
+     * pending-stale threshold (its reserve call died) through its stock hold tags
+     *
+     * @return Number of reservations released
+     */
+    int releaseExpired();
+}
@@ -0,0 +1,23 @@
+package com.kesik.bladecommerce.service;
+
+import com.kesik.bladecommerce.dto.stock.BatchStockCheckResponse;
+import com.kesik.bladecommerce.dto.stock.StockCheckRequest;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface StockService {
+
+    /**
+     * Check availability for every cart line with a single query (_id, name and stockQuantity only).
+     * Each line is checked on its own, in request order. Striped knives are checked against their shard sums.
+     */
+    BatchStockCheckResponse checkBatchStock(List<StockCheckRequest> items);
+
+    /**
+     * Live stock per knife with a single projected query (shard sums for striped knives).
+     * Unknown knives are left out.
+     */
+    Map<String, Integer> getStockLevels(Collection<String> knifeIds);
+}
@@ -0,0 +1,72 @@
+package com.kesik.bladecommerce.service;
+
+import com.kesik.bladecommerce.dto.stock.StockStripingStatus;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Striped stock for hot products: a knife's stock split across several stock_shards documents.
+ */
+public interface StockShardService {
+
+    /**
+     * Move a knife's stock into {@code stripes} shards. No-op if it is already striped.
+     *
+     * @throws IllegalArgumentException if the knife does not exist or stripes is out of range
+     */
+    StockStripingStatus enableStriping(String knifeId, int stripes);
+
+    /**
+     * Fold the shards back into knives.stockQuantity. No-op if the knife is not striped.
+     *
+     * @throws IllegalArgumentException if the knife does not exist
+     */
+    StockStripingStatus disableStriping(String knifeId);
+
+    StockStripingStatus getStatus(String knifeId);
+
+    /**
+     * Take {@code quantity} units from the knife's shards: a random shard first, then the others,
+     * and finally gathering across shards when no single shard holds enough.
+     *
+     * @param holdId Hold tag recorded on each shard in the same update as its decrement, or null for none
+     * @return Stock left across all shards, or -1 if the knife has no shards (striping was disabled meanwhile)
+     * @throws IllegalStateException if the shards together do not hold enough stock
+     */
+    int decrement(String knifeId, int quantity, String holdId);
+
+    /**
+     * Add stock to a random shard.
+     *
+     * @return false if the knife has no shards (striping was disabled meanwhile)
+     */
+    boolean increment(String knifeId, int quantity);
+
+    /**
+     * Return the units the knife's shards took under holdId and drop the tags; idempotent
+     *
+     * @return Units returned (0 if no shard carries the tag)
+     */
+    int releaseHold(String knifeId, String holdId);
+
+    /**
+     * Keep the units taken under holdId and drop the tags from the knives' shards
+     */
+    void clearHold(String holdId, Collection<String> knifeIds);
+
+    /**
+     * Overwrite a striped knife's stock (admin edits), spread evenly across its shards
+     */
+    void setTotal(String knifeId, int quantity);
+
+    /**
+     * Sum of shard quantities per knife; knives without shards are absent from the result
+     */
+    Map<String, Integer> getTotals(Collection<String> knifeIds);
+
+    /**
+     * Write each striped knife's shard sum back to knives.stockQuantity for listings
+     */
+    void syncDisplayTotals();
+}
@@ -0,0 +1,20 @@
+package com.kesik.bladecommerce.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+/**
+ * Pushes live stock levels to open product pages over Server-Sent Events.
+ * All streams share one in-process change feed (StockChangedEvent); changed levels are read
+ * with one query per push interval, however many pages are listening.
+ */
+public interface StockStreamService {
+
+    /**
+     * Open a stream for the given knives. The current levels are sent right away, then every change.
+     *
+     * @throws IllegalArgumentException if no ids or too many ids are given
+     */
+    SseEmitter subscribe(List<String> knifeIds);
+}
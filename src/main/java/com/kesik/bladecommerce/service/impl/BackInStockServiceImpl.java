@@ -0,0 +1,239 @@
+package com.kesik.bladecommerce.service.impl;
+
+import com.kesik.bladecommerce.dto.knife.KnifeDto;
+import com.kesik.bladecommerce.entity.BackInStockSubscription;
+import com.kesik.bladecommerce.event.StockChangedEvent;
+import com.kesik.bladecommerce.exception.TooManyRequestsException;
+import com.kesik.bladecommerce.service.BackInStockService;
+import com.kesik.bladecommerce.service.KnifeService;
+import com.kesik.bladecommerce.service.MailService;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class BackInStockServiceImpl implements BackInStockService {
+
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[^@\\s]+@[^@\\s]+\\.[^@\\s]+$");
+
+    private final MongoTemplate mongoTemplate;
+    private final KnifeService knifeService;
+    private final MailService mailService;
+
+    // Knives with a fan-out running on this instance - a second restock meanwhile must not mail everyone twice
+    private final Set<String> notifying = ConcurrentHashMap.newKeySet();
+
+    @Value("${stock.back-in-stock.page-size:200}")
+    private int pageSize;
+
+    @Value("${stock.back-in-stock.retention-days:30}")
+    private long retentionDays;
+
+    @Value("${stock.back-in-stock.confirmation-hours:24}")
+    private long confirmationHours;
+
+    @Value("${stock.back-in-stock.confirmation-resend-minutes:15}")
+    private long confirmationResendMinutes;
+
+    @Value("${stock.back-in-stock.max-pending-per-email:3}")
+    private int maxPendingPerEmail;
+
+    @Value("${stock.back-in-stock.link-base-url:http://localhost:8080}")
+    private String linkBaseUrl;
+
+    public BackInStockServiceImpl(MongoTemplate mongoTemplate, KnifeService knifeService, MailService mailService) {
+        this.mongoTemplate = mongoTemplate;
+        this.knifeService = knifeService;
+        this.mailService = mailService;
+    }
+
+    @Override
+    public void subscribe(String knifeId, String email) {
+        String normalizedEmail = email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+        if (!EMAIL_PATTERN.matcher(normalizedEmail).matches()) {
+            throw new IllegalArgumentException("A valid email address is required");
+        }
+        KnifeDto knife = knifeId == null ? null : knifeService.getKnifeById(knifeId);
+        if (knife == null) {
+            throw new IllegalArgumentException("Product not found: " + knifeId);
+        }
+
+        Query subscriptionQuery = new Query(Criteria.where("knifeId").is(knifeId).and("email").is(normalizedEmail));
+        BackInStockSubscription existing = mongoTemplate.findOne(subscriptionQuery, BackInStockSubscription.class);
+        Instant now = Instant.now();
+        if (existing != null && existing.getConfirmedAt() != null && existing.getNotifiedAt() == null) {
+            return;
+        }
+        if (existing != null && existing.getConfirmedAt() == null && existing.getConfirmationSentAt() != null
+                && existing.getConfirmationSentAt().isAfter(now.minus(Duration.ofMinutes(confirmationResendMinutes)))) {
+            return;
+        }
+        // Bounds the confirmation mails a third party can make anyone receive
+        boolean pending = existing != null && existing.getConfirmedAt() == null;
+        if (!pending && mongoTemplate.count(new Query(Criteria.where("email").is(normalizedEmail).and("confirmedAt").is(null)),
+                BackInStockSubscription.class) >= maxPendingPerEmail) {
+            throw new TooManyRequestsException("Too many unconfirmed subscriptions for this address");
+        }
+
+        // Subscribing again after a notification re-arms it, but only once the owner confirms again
+        String token = existing != null && existing.getToken() != null ? existing.getToken() : UUID.randomUUID().toString();
+        mongoTemplate.upsert(subscriptionQuery,
+                new Update().setOnInsert("createdAt", now)
+                        .set("token", token)
+                        .set("confirmationSentAt", now)
+                        .set("purgeAt", now.plus(Duration.ofHours(confirmationHours)))
+                        .unset("confirmedAt")
+                        .unset("notifiedAt"),
+                BackInStockSubscription.class);
+        mailService.send(buildConfirmationMessage(normalizedEmail, token, knife));
+        log.debug("Back-in-stock subscription for knife {} awaiting confirmation", knifeId);
+    }
+
+    @Override
+    public void confirm(String token) {
+        if (token == null || token.isBlank()) {
+            throw new IllegalArgumentException("Unknown or expired confirmation link");
+        }
+        Query byToken = new Query(Criteria.where("token").is(token));
+        long matched = mongoTemplate.updateFirst(new Query(Criteria.where("token").is(token).and("confirmedAt").is(null)),
+                new Update().set("confirmedAt", Instant.now()).unset("purgeAt"),
+                BackInStockSubscription.class).getMatchedCount();
+        // A second click on the same link is fine
+        if (matched == 0 && !mongoTemplate.exists(byToken, BackInStockSubscription.class)) {
+            throw new IllegalArgumentException("Unknown or expired confirmation link");
+        }
+    }
+
+    @Override
+    public void unsubscribe(String token) {
+        if (token == null || token.isBlank()) {
+            return;
+        }
+        mongoTemplate.remove(new Query(Criteria.where("token").is(token)), BackInStockSubscription.class);
+    }
+
+    /**
+     * Runs on the notification executor, so the restocking request (admin edit, rollback) returns immediately
+     */
+    @Async("notificationExecutor")
+    @TransactionalEventListener(fallbackExecution = true, condition = "#event.restocked()")
+    public void onRestocked(StockChangedEvent event) {
+        try {
+            notifySubscribers(event.knifeId());
+        } catch (Exception e) {
+            log.error("Back-in-stock notification for knife {} failed: {}", event.knifeId(), e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int notifySubscribers(String knifeId) {
+        if (!notifying.add(knifeId)) {
+            return 0;
+        }
+        try {
+            KnifeDto knife = knifeService.getKnifeById(knifeId);
+            if (knife == null) {
+                return 0;
+            }
+
+            int notified = 0;
+            String lastId = null;
+            while (true) {
+                // Keyset pages over the waiting, confirmed subscribers; only email and token are decoded
+                Criteria criteria = Criteria.where("knifeId").is(knifeId).and("notifiedAt").is(null)
+                        .and("confirmedAt").ne(null);
+                if (lastId != null) {
+                    criteria = criteria.and("_id").gt(new ObjectId(lastId));
+                }
+                Query pageQuery = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "_id")).limit(pageSize);
+                pageQuery.fields().include("email").include("token");
+                List<BackInStockSubscription> page = mongoTemplate.find(pageQuery, BackInStockSubscription.class);
+                if (page.isEmpty()) {
+                    break;
+                }
+
+                List<SimpleMailMessage> failed = mailService.sendBatch(page.stream()
+                        .map(subscription -> buildMessage(subscription.getEmail(), subscription.getToken(), knife))
+                        .toList());
+                Set<String> failedEmails = failed.stream()
+                        .map(message -> message.getTo()[0])
+                        .collect(Collectors.toSet());
+                List<String> sentIds = page.stream()
+                        .filter(subscription -> !failedEmails.contains(subscription.getEmail()))
+                        .map(BackInStockSubscription::getId)
+                        .toList();
+                if (!failed.isEmpty()) {
+                    // Left waiting: they are retried on the next restock
+                    log.warn("Back-in-stock mail for knife {} failed for {} of {} subscribers",
+                            knifeId, failed.size(), page.size());
+                }
+
+                // Marked after sending: a crash mid-page re-sends that page on the next restock rather than skipping it
+                if (!sentIds.isEmpty()) {
+                    Instant now = Instant.now();
+                    mongoTemplate.updateMulti(
+                            new Query(Criteria.where("_id").in(sentIds)),
+                            new Update().set("notifiedAt", now).set("purgeAt", now.plus(Duration.ofDays(retentionDays))),
+                            BackInStockSubscription.class);
+                }
+
+                notified += sentIds.size();
+                lastId = page.get(page.size() - 1).getId();
+                if (page.size() < pageSize) {
+                    break;
+                }
+            }
+            if (notified > 0) {
+                log.info("Sent back-in-stock mail for {} to {} subscribers", knife.getName(), notified);
+            }
+            return notified;
+        } finally {
+            notifying.remove(knifeId);
+        }
+    }
+
+    private SimpleMailMessage buildMessage(String to, String token, KnifeDto knife) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(to);
+        message.setSubject("Beklediğiniz ürün tekrar stokta");
+        message.setText("Merhaba,\n\nTakip ettiğiniz \"" + knife.getName() + "\" tekrar stokta. "
+                + "Stoklar sınırlı olabilir, kaçırmayın!"
+                + "\n\nBu bildirimleri almak istemiyorsanız: " + link("unsubscribe", token));
+        return message;
+    }
+
+    private SimpleMailMessage buildConfirmationMessage(String to, String token, KnifeDto knife) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(to);
+        message.setSubject("Stok bildirimi aboneliğinizi onaylayın");
+        message.setText("Merhaba,\n\n\"" + knife.getName() + "\" tekrar stoğa girdiğinde size haber vermemizi "
+                + "istediniz. Onaylamak için: " + link("confirm", token)
+                + "\n\nBu isteği siz yapmadıysanız bu e-postayı dikkate almayın ya da aboneliği kaldırın: "
+                + link("unsubscribe", token));
+        return message;
+    }
+
+    private String link(String action, String token) {
+        return linkBaseUrl + "/api/stock/back-in-stock/" + action + "?token=" + token;
+    }
+}
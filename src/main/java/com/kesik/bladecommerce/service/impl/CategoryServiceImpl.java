@@ -3,6 +3,7 @@ package com.kesik.bladecommerce.service.impl;
 import com.kesik.bladecommerce.dto.category.CategoryDto;
 import com.kesik.bladecommerce.repository.category.CategoryRepository;
 import com.kesik.bladecommerce.service.CategoryService;
+import com.kesik.bladecommerce.util.CatalogVersion;
 import org.springframework.stereotype.Service;
 
 import java.util.Comparator;
@@ -12,9 +13,11 @@ import java.util.stream.Collectors;
 @Service
 public class CategoryServiceImpl implements CategoryService {
     private final CategoryRepository categoryRepository;
+    private final CatalogVersion catalogVersion;
 
-    public CategoryServiceImpl(CategoryRepository categoryRepository) {
+    public CategoryServiceImpl(CategoryRepository categoryRepository, CatalogVersion catalogVersion) {
         this.categoryRepository = categoryRepository;
+        this.catalogVersion = catalogVersion;
     }
 
     @Override
@@ -68,7 +71,9 @@ public class CategoryServiceImpl implements CategoryService {
             categoryDto.setDisplayOrder(maxOrder + 1);
         }
 
-        return categoryRepository.save(categoryDto);
+        CategoryDto savedCategory = categoryRepository.save(categoryDto);
+        catalogVersion.bump();
+        return savedCategory;
     }
 
     @Override
@@ -91,7 +96,9 @@ public class CategoryServiceImpl implements CategoryService {
                 existingCategory.setIsActive(categoryDto.getIsActive());
             }
 
-            return categoryRepository.save(existingCategory);
+            CategoryDto savedCategory = categoryRepository.save(existingCategory);
+            catalogVersion.bump();
+            return savedCategory;
         }
         return null;
     }
@@ -99,6 +106,7 @@ public class CategoryServiceImpl implements CategoryService {
     @Override
     public void deleteCategory(Integer categoryId) {
         categoryRepository.deleteByCategoryId(categoryId);
+        catalogVersion.bump();
     }
 
     @Override
@@ -108,7 +116,9 @@ public class CategoryServiceImpl implements CategoryService {
             // Toggle the isActive field
             Boolean currentStatus = category.getIsActive();
             category.setIsActive(currentStatus == null || !currentStatus);
-            return categoryRepository.save(category);
+            CategoryDto savedCategory = categoryRepository.save(category);
+            catalogVersion.bump();
+            return savedCategory;
         }
         return null;
     }
@@ -124,6 +134,7 @@ public class CategoryServiceImpl implements CategoryService {
                 categoryRepository.save(category);
             }
         }
+        catalogVersion.bump();
         // Return the updated sorted list
         return getAllCategories();
     }
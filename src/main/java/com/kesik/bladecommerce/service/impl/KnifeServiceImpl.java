@@ -1,27 +1,65 @@
 package com.kesik.bladecommerce.service.impl;
 
+import com.kesik.bladecommerce.dto.PaginatedResponse;
 import com.kesik.bladecommerce.dto.knife.AddKnifeRequestDto;
+import com.kesik.bladecommerce.dto.knife.KnifeBatchResponse;
 import com.kesik.bladecommerce.dto.knife.KnifeDto;
+import com.kesik.bladecommerce.dto.knife.KnifeFacets;
+import com.kesik.bladecommerce.dto.knife.KnifeSearchResponse;
+import com.kesik.bladecommerce.dto.knife.KnifeSortField;
+import com.kesik.bladecommerce.dto.knife.KnifeSummary;
 import com.kesik.bladecommerce.dto.knife.UpdateKnifeRequestDto;
+import com.kesik.bladecommerce.entity.StockMovement;
+import com.kesik.bladecommerce.event.StockChangedEvent;
+import com.kesik.bladecommerce.exception.InsufficientStockException;
 import com.kesik.bladecommerce.repository.knife.KnifeRepository;
+import com.kesik.bladecommerce.service.CatalogSnapshotService;
 import com.kesik.bladecommerce.service.CategoryService;
 import com.kesik.bladecommerce.service.CloudinaryService;
 import com.kesik.bladecommerce.service.KnifeService;
+import com.kesik.bladecommerce.service.StockShardService;
+import com.kesik.bladecommerce.util.CatalogVersion;
+import com.kesik.bladecommerce.util.KnifePricing;
+import com.kesik.bladecommerce.util.PageCursor;
+import com.kesik.bladecommerce.util.SlugUtil;
+import com.mongodb.bulk.BulkWriteResult;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.IOException;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -30,12 +68,30 @@ public class KnifeServiceImpl implements KnifeService {
     private final MongoTemplate mongoTemplate;
     private final CloudinaryService cloudinaryService;
     private final CategoryService categoryService;
+    private final CatalogSnapshotService catalogSnapshot;
+    private final CatalogVersion catalogVersion;
+    private final StockShardService stockShardService;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public KnifeServiceImpl(KnifeRepository knifeRepository, MongoTemplate mongoTemplate, CloudinaryService cloudinaryService, CategoryService categoryService) {
+    /**
+     * Upper bound for /api/knives/batch - keeps the $in list and the response size reasonable
+     */
+    private static final int MAX_BATCH_IDS = 100;
+
+    @Value("${catalog.facets.price-boundaries:0,500,1000,2500,5000,10000}")
+    private double[] priceBoundaries;
+
+    public KnifeServiceImpl(KnifeRepository knifeRepository, MongoTemplate mongoTemplate, CloudinaryService cloudinaryService,
+                            CategoryService categoryService, CatalogSnapshotService catalogSnapshot, CatalogVersion catalogVersion,
+                            StockShardService stockShardService, ApplicationEventPublisher eventPublisher) {
         this.knifeRepository = knifeRepository;
         this.mongoTemplate = mongoTemplate;
         this.cloudinaryService = cloudinaryService;
         this.categoryService = categoryService;
+        this.catalogSnapshot = catalogSnapshot;
+        this.catalogVersion = catalogVersion;
+        this.stockShardService = stockShardService;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -47,9 +103,9 @@ public class KnifeServiceImpl implements KnifeService {
     public List<KnifeDto> searchKnives(String searchTerm, Integer categoryId, Double minPrice, Double maxPrice,
                                        String knifeType, String bladeMaterial, String sortDirection, int page, int size) {
         try {
-            Pageable pageable = PageRequest.of(page - 1, size, getSort(sortDirection));
+            Pageable pageable = PageRequest.of(page - 1, size, getSort(KnifeSortField.PRICE, sortDirection));
             Query query = new Query().with(pageable);
-            List<Criteria> criteriaList = buildSearchCriteria(searchTerm, categoryId, minPrice, maxPrice, knifeType, bladeMaterial);
+            List<Criteria> criteriaList = buildSearchCriteria(searchTerm, categoryId, minPrice, maxPrice, knifeType, bladeMaterial, false);
 
             if (!criteriaList.isEmpty()) {
                 query.addCriteria(new Criteria().andOperator(criteriaList.toArray(new Criteria[0])));
@@ -63,51 +119,269 @@ public class KnifeServiceImpl implements KnifeService {
 
     @Override
     public Page<KnifeDto> searchKnivesPageable(String searchTerm, Integer categoryId, Double minPrice, Double maxPrice,
-                                              String knifeType, String bladeMaterial, String sortDirection, Pageable pageable) {
+                                              String knifeType, String bladeMaterial, boolean onSaleOnly,
+                                              String sortBy, String sortDirection, Pageable pageable) {
+        KnifeSortField sortField = KnifeSortField.from(sortBy);
+
+        // Storefront listings are served from the in-memory catalog snapshot
+        if (catalogSnapshot.isEnabled()) {
+            return catalogSnapshot.search(searchTerm, categoryId, minPrice, maxPrice,
+                    knifeType, bladeMaterial, onSaleOnly, sortField, sortDirection, pageable);
+        }
+
+        try {
+            return findKnivesPage(searchTerm, categoryId, minPrice, maxPrice, knifeType, bladeMaterial, onSaleOnly,
+                    sortField, sortDirection, pageable, null);
+        } catch (Exception e) {
+            throw new RuntimeException("Error searching knives with pagination: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Page<KnifeSummary> searchKnifeSummaries(String searchTerm, Integer categoryId, Double minPrice, Double maxPrice,
+                                                   String knifeType, String bladeMaterial, boolean onSaleOnly,
+                                                   String sortBy, String sortDirection, Pageable pageable) {
+        KnifeSortField sortField = KnifeSortField.from(sortBy);
+
+        if (catalogSnapshot.isEnabled()) {
+            return catalogSnapshot.search(searchTerm, categoryId, minPrice, maxPrice,
+                    knifeType, bladeMaterial, onSaleOnly, sortField, sortDirection, pageable).map(KnifeSummary::from);
+        }
+
         try {
-            Query query = new Query();
-            List<Criteria> criteriaList = buildSearchCriteria(searchTerm, categoryId, minPrice, maxPrice, knifeType, bladeMaterial);
+            // Only decode the fields a catalog card needs
+            return findKnivesPage(searchTerm, categoryId, minPrice, maxPrice, knifeType, bladeMaterial, onSaleOnly,
+                    sortField, sortDirection, pageable, KnifeSummary.PROJECTED_FIELDS).map(KnifeSummary::from);
+        } catch (Exception e) {
+            throw new RuntimeException("Error searching knife summaries: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Count + find against MongoDB, optionally restricted to the given fields.
+     */
+    private Page<KnifeDto> findKnivesPage(String searchTerm, Integer categoryId, Double minPrice, Double maxPrice,
+                                          String knifeType, String bladeMaterial, boolean onSaleOnly,
+                                          KnifeSortField sortField, String sortDirection, Pageable pageable,
+                                          String[] projectedFields) {
+        Query query = new Query();
+        List<Criteria> criteriaList = buildSearchCriteria(searchTerm, categoryId, minPrice, maxPrice, knifeType, bladeMaterial, onSaleOnly);
 
+        if (!criteriaList.isEmpty()) {
+            query.addCriteria(new Criteria().andOperator(criteriaList.toArray(new Criteria[0])));
+        }
+        if (projectedFields != null) {
+            query.fields().include(projectedFields);
+        }
+
+        // Add sorting
+        query.with(getSort(sortField, sortDirection));
+
+        // Get total count for pagination
+        long total = mongoTemplate.count(query, KnifeDto.class);
+
+        // Apply pagination
+        query.with(pageable);
+
+        // Execute query
+        List<KnifeDto> knives = mongoTemplate.find(query, KnifeDto.class);
+
+        return new PageImpl<>(knives, pageable, total);
+    }
+
+    @Override
+    public Page<KnifeDto> searchKnivesByText(String searchTerm, Integer categoryId, Double minPrice, Double maxPrice,
+                                             String knifeType, String bladeMaterial, boolean onSaleOnly,
+                                             String sortBy, String sortDirection, Pageable pageable) {
+        boolean sortByRelevance = "relevance".equalsIgnoreCase(sortBy);
+        KnifeSortField sortField = KnifeSortField.from(sortBy);
+        try {
+            // $text uses the name/description/knifeType text index instead of scanning with an unanchored regex
+            TextQuery query = TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(searchTerm));
+            List<Criteria> criteriaList = buildSearchCriteria(null, categoryId, minPrice, maxPrice, knifeType, bladeMaterial, onSaleOnly);
             if (!criteriaList.isEmpty()) {
                 query.addCriteria(new Criteria().andOperator(criteriaList.toArray(new Criteria[0])));
             }
 
-            // Add sorting
-            query.with(getSort(sortDirection));
-
-            // Get total count for pagination
             long total = mongoTemplate.count(query, KnifeDto.class);
 
-            // Apply pagination
+            if (sortByRelevance) {
+                query.sortByScore().with(Sort.by("_id"));
+            } else {
+                query.with(getSort(sortField, sortDirection));
+            }
             query.with(pageable);
 
-            // Execute query
-            List<KnifeDto> knives = mongoTemplate.find(query, KnifeDto.class);
+            return new PageImpl<>(mongoTemplate.find(query, KnifeDto.class), pageable, total);
+        } catch (Exception e) {
+            throw new RuntimeException("Error searching knives by text: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public PaginatedResponse<KnifeDto> searchKnivesByCursor(String searchTerm, Integer categoryId, Double minPrice, Double maxPrice,
+                                                            String knifeType, String bladeMaterial, boolean onSaleOnly,
+                                                            String sortDirection, String cursor, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        PageCursor after = PageCursor.decode(cursor);
+        boolean ascending = "asc".equalsIgnoreCase(sortDirection);
+        List<KnifeDto> knives;
+
+        // Fetch one extra item to learn whether another page exists - no count query
+        if (catalogSnapshot.isEnabled()) {
+            knives = catalogSnapshot.searchAfter(searchTerm, categoryId, minPrice, maxPrice,
+                    knifeType, bladeMaterial, onSaleOnly, sortDirection, after, size + 1);
+        } else {
+            try {
+                List<Criteria> criteriaList = buildSearchCriteria(searchTerm, categoryId, minPrice, maxPrice, knifeType, bladeMaterial, onSaleOnly);
+                if (after != null) {
+                    double price = after.keyAsDouble();
+                    Object id = toObjectId(after.id());
+                    criteriaList.add(ascending ?
+                            new Criteria().orOperator(Criteria.where("price").gt(price),
+                                    Criteria.where("price").is(price).and("_id").gt(id)) :
+                            new Criteria().orOperator(Criteria.where("price").lt(price),
+                                    Criteria.where("price").is(price).and("_id").lt(id)));
+                }
+
+                Query query = new Query();
+                if (!criteriaList.isEmpty()) {
+                    query.addCriteria(new Criteria().andOperator(criteriaList.toArray(new Criteria[0])));
+                }
+                Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+                query.with(Sort.by(direction, "price").and(Sort.by(direction, "_id"))).limit(size + 1);
+
+                knives = mongoTemplate.find(query, KnifeDto.class);
+            } catch (IllegalArgumentException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException("Error searching knives with cursor: " + e.getMessage(), e);
+            }
+        }
+
+        boolean hasNext = knives.size() > size;
+        List<KnifeDto> content = hasNext ? knives.subList(0, size) : knives;
+        String nextCursor = null;
+        if (hasNext) {
+            KnifeDto last = content.get(content.size() - 1);
+            nextCursor = new PageCursor(String.valueOf(last.getPrice()), last.getId()).encode();
+        }
+        return PaginatedResponse.fromCursor(content, size, after == null, nextCursor);
+    }
+
+    private Object toObjectId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    @Override
+    public KnifeSearchResponse searchKnivesWithFacets(String searchTerm, Integer categoryId, Double minPrice, Double maxPrice,
+                                                      String knifeType, String bladeMaterial, boolean onSaleOnly,
+                                                      String sortBy, String sortDirection, Pageable pageable) {
+        KnifeSortField sortField = KnifeSortField.from(sortBy);
+
+        if (catalogSnapshot.isEnabled()) {
+            CatalogSnapshotService.FacetedPage result = catalogSnapshot.searchWithFacets(searchTerm, categoryId, minPrice, maxPrice,
+                    knifeType, bladeMaterial, onSaleOnly, sortField, sortDirection, pageable, priceBoundaries);
+            return new KnifeSearchResponse(PaginatedResponse.fromPage(result.page()), result.facets());
+        }
+
+        try {
+            List<Criteria> criteriaList = buildSearchCriteria(searchTerm, categoryId, minPrice, maxPrice, knifeType, bladeMaterial, onSaleOnly);
+            Criteria criteria = criteriaList.isEmpty() ? new Criteria() :
+                    new Criteria().andOperator(criteriaList.toArray(new Criteria[0]));
+
+            // Page, total and every facet are computed by a single $facet aggregation
+            Double[] boundaries = Arrays.stream(priceBoundaries).boxed().toArray(Double[]::new);
+            Aggregation aggregation = Aggregation.newAggregation(
+                    Aggregation.match(criteria),
+                    Aggregation.facet(
+                                    Aggregation.sort(getSort(sortField, sortDirection)),
+                                    Aggregation.skip(pageable.getOffset()),
+                                    Aggregation.limit(pageable.getPageSize())).as("results")
+                            .and(Aggregation.count().as("count")).as("total")
+                            .and(Aggregation.sortByCount("knifeType")).as("knifeTypes")
+                            .and(Aggregation.sortByCount("bladeMaterial")).as("bladeMaterials")
+                            .and(Aggregation.sortByCount("categoryId")).as("categories")
+                            .and(Aggregation.bucket("effectivePrice")
+                                    .withBoundaries((Object[]) boundaries)
+                                    .withDefaultBucket(boundaries[boundaries.length - 1])
+                                    .andOutputCount().as("count")).as("priceBuckets")
+            );
+
+            Document facetResult = mongoTemplate.aggregate(aggregation, KnifeDto.class, Document.class).getUniqueMappedResult();
+            if (facetResult == null) {
+                facetResult = new Document();
+            }
+
+            List<KnifeDto> knives = facetResult.getList("results", Document.class, List.of()).stream()
+                    .map(doc -> mongoTemplate.getConverter().read(KnifeDto.class, doc))
+                    .toList();
+            List<Document> totalDocs = facetResult.getList("total", Document.class, List.of());
+            long total = totalDocs.isEmpty() ? 0 : ((Number) totalDocs.get(0).get("count")).longValue();
 
-            return new PageImpl<>(knives, pageable, total);
+            KnifeFacets facets = new KnifeFacets(
+                    toCountMap(facetResult.getList("knifeTypes", Document.class, List.of()), String.class),
+                    toCountMap(facetResult.getList("bladeMaterials", Document.class, List.of()), String.class),
+                    toCountMap(facetResult.getList("categories", Document.class, List.of()), Integer.class),
+                    toPriceBuckets(facetResult.getList("priceBuckets", Document.class, List.of()))
+            );
+
+            return new KnifeSearchResponse(PaginatedResponse.fromPage(new PageImpl<>(knives, pageable, total)), facets);
         } catch (Exception e) {
-            throw new RuntimeException("Error searching knives with pagination: " + e.getMessage(), e);
+            throw new RuntimeException("Error searching knives with facets: " + e.getMessage(), e);
+        }
+    }
+
+    private <K> Map<K, Long> toCountMap(List<Document> buckets, Class<K> keyType) {
+        Map<K, Long> counts = new LinkedHashMap<>();
+        for (Document bucket : buckets) {
+            Object key = bucket.get("_id");
+            if (keyType.isInstance(key)) {
+                counts.put(keyType.cast(key), ((Number) bucket.get("count")).longValue());
+            }
+        }
+        return counts;
+    }
+
+    private List<KnifeFacets.PriceBucket> toPriceBuckets(List<Document> buckets) {
+        Map<Double, Long> countsByLowerBound = new HashMap<>();
+        for (Document bucket : buckets) {
+            countsByLowerBound.put(((Number) bucket.get("_id")).doubleValue(), ((Number) bucket.get("count")).longValue());
+        }
+        // $bucket omits empty ranges - report every configured range so the sidebar layout stays stable
+        List<KnifeFacets.PriceBucket> result = new ArrayList<>(priceBoundaries.length);
+        for (int i = 0; i < priceBoundaries.length; i++) {
+            Double max = i + 1 < priceBoundaries.length ? priceBoundaries[i + 1] : null;
+            result.add(new KnifeFacets.PriceBucket(priceBoundaries[i], max,
+                    countsByLowerBound.getOrDefault(priceBoundaries[i], 0L)));
         }
+        return result;
     }
 
-    private Sort getSort(String sortDirection) {
-        return "asc".equalsIgnoreCase(sortDirection) ? Sort.by("price").ascending() : Sort.by("price").descending();
+    private Sort getSort(KnifeSortField sortField, String sortDirection) {
+        Sort.Direction direction = "asc".equalsIgnoreCase(sortDirection) ? Sort.Direction.ASC : Sort.Direction.DESC;
+        // _id tie-breaker keeps pages stable for equal keys (same order as the catalog snapshot)
+        return Sort.by(direction, sortField.field()).and(Sort.by(direction, "_id"));
     }
 
     private List<Criteria> buildSearchCriteria(String searchTerm, Integer categoryId, Double minPrice, Double maxPrice,
-                                               String knifeType, String bladeMaterial) {
+                                               String knifeType, String bladeMaterial, boolean onSaleOnly) {
         List<Criteria> criteriaList = new ArrayList<>();
         if (searchTerm != null && !searchTerm.isEmpty()) {
-            criteriaList.add(Criteria.where("name").regex(searchTerm, "i"));
+            // Literal match, as in the catalog snapshot - user input is never run as a regex
+            criteriaList.add(Criteria.where("name").regex(Pattern.quote(searchTerm), "i"));
         }
         if (categoryId != null) {
             criteriaList.add(Criteria.where("categoryId").is(categoryId));
         }
+        // Price ranges apply to what the shopper pays - the discounted price when there is one
         if (minPrice != null) {
-            criteriaList.add(Criteria.where("price").gte(minPrice));
+            criteriaList.add(Criteria.where("effectivePrice").gte(minPrice));
         }
         if (maxPrice != null) {
-            criteriaList.add(Criteria.where("price").lte(maxPrice));
+            criteriaList.add(Criteria.where("effectivePrice").lte(maxPrice));
         }
         if (knifeType != null && !knifeType.isEmpty()) {
             criteriaList.add(Criteria.where("knifeType").is(knifeType));
@@ -115,6 +389,9 @@ public class KnifeServiceImpl implements KnifeService {
         if (bladeMaterial != null && !bladeMaterial.isEmpty()) {
             criteriaList.add(Criteria.where("bladeMaterial").is(bladeMaterial));
         }
+        if (onSaleOnly) {
+            criteriaList.add(Criteria.where("discountPercent").gt(0));
+        }
         return criteriaList;
     }
 
@@ -128,18 +405,198 @@ public class KnifeServiceImpl implements KnifeService {
         return knifeRepository.getKnifeByName(name);
     }
 
+    @Override
+    public KnifeDto getKnifeBySlug(String slug) {
+        if (catalogSnapshot.isEnabled()) {
+            return catalogSnapshot.getKnifeBySlug(slug);
+        }
+        return knifeRepository.findBySlug(slug).orElse(null);
+    }
+
+    @Override
+    public KnifeBatchResponse getKnivesByIds(List<String> ids) {
+        List<String> requestedIds = ids == null ? List.of() : ids.stream()
+                .filter(Objects::nonNull)
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .distinct()
+                .toList();
+        if (requestedIds.isEmpty()) {
+            throw new IllegalArgumentException("At least one knife id is required");
+        }
+        if (requestedIds.size() > MAX_BATCH_IDS) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_IDS + " knife ids can be requested at once");
+        }
+
+        Map<String, KnifeDto> found = new HashMap<>();
+        if (catalogSnapshot.isEnabled()) {
+            for (String id : requestedIds) {
+                KnifeDto knife = catalogSnapshot.getKnife(id);
+                if (knife != null) {
+                    found.put(id, knife);
+                }
+            }
+        } else {
+            // Single $in query instead of one findById per product
+            knifeRepository.findAllById(requestedIds).forEach(knife -> found.put(knife.getId(), knife));
+        }
+
+        List<KnifeDto> knives = new ArrayList<>(found.size());
+        List<String> missingIds = new ArrayList<>();
+        for (String id : requestedIds) {
+            KnifeDto knife = found.get(id);
+            if (knife != null) {
+                knives.add(knife);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return new KnifeBatchResponse(knives, missingIds);
+    }
+
+    @Override
+    public List<KnifeDto> findKnivesByIds(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return mongoTemplate.find(new Query(Criteria.where("_id").in(ids)), KnifeDto.class);
+    }
+
+    @Override
+    public Map<String, Object> migrateExistingSlugs() {
+        Map<String, Object> result = new HashMap<>();
+        List<String> errors = new ArrayList<>();
+        int updatedCount = 0;
+
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("slug").exists(false),
+                Criteria.where("slug").is(null),
+                Criteria.where("slug").is("")
+        )).with(Sort.by(Sort.Direction.ASC, "_id"));
+        query.fields().include("name");
+
+        List<KnifeDto> knivesWithoutSlug = mongoTemplate.find(query, KnifeDto.class);
+        log.info("Found {} knives without slug", knivesWithoutSlug.size());
+
+        for (KnifeDto knife : knivesWithoutSlug) {
+            try {
+                String slug = generateUniqueSlug(knife.getName(), knife.getId());
+                // Only touch the slug so concurrent stock updates are not overwritten
+                mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(knife.getId())),
+                        new Update().set("slug", slug).inc("revision", 1), KnifeDto.class);
+                updatedCount++;
+            } catch (Exception e) {
+                String error = "Failed to assign slug to knife " + knife.getId() + ": " + e.getMessage();
+                errors.add(error);
+                log.error(error, e);
+            }
+        }
+
+        if (updatedCount > 0) {
+            if (catalogSnapshot.isEnabled()) {
+                catalogSnapshot.refresh();
+            }
+            catalogVersion.bump();
+        }
+
+        result.put("success", errors.isEmpty());
+        result.put("processedCount", knivesWithoutSlug.size());
+        result.put("updatedCount", updatedCount);
+        result.put("errors", errors);
+        log.info("Slug migration completed. Processed: {}, Updated: {}, Errors: {}",
+                knivesWithoutSlug.size(), updatedCount, errors.size());
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> migrateDerivedPricing() {
+        Map<String, Object> result = new HashMap<>();
+        List<String> errors = new ArrayList<>();
+        int updatedCount = 0;
+
+        // price is always > 0, so a zero/missing effectivePrice means it was never computed
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("effectivePrice").exists(false),
+                Criteria.where("effectivePrice").lte(0)
+        ));
+        query.fields().include("price", "discountPrice");
+
+        List<KnifeDto> knives = mongoTemplate.find(query, KnifeDto.class);
+        log.info("Found {} knives without derived pricing", knives.size());
+
+        for (KnifeDto knife : knives) {
+            try {
+                mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(knife.getId())),
+                        new Update()
+                                .set("effectivePrice", KnifePricing.effectivePrice(knife.getPrice(), knife.getDiscountPrice()))
+                                .set("discountPercent", KnifePricing.discountPercent(knife.getPrice(), knife.getDiscountPrice()))
+                                .inc("revision", 1),
+                        KnifeDto.class);
+                updatedCount++;
+            } catch (Exception e) {
+                String error = "Failed to compute pricing for knife " + knife.getId() + ": " + e.getMessage();
+                errors.add(error);
+                log.error(error, e);
+            }
+        }
+
+        if (updatedCount > 0) {
+            if (catalogSnapshot.isEnabled()) {
+                catalogSnapshot.refresh();
+            }
+            catalogVersion.bump();
+        }
+
+        result.put("success", errors.isEmpty());
+        result.put("processedCount", knives.size());
+        result.put("updatedCount", updatedCount);
+        result.put("errors", errors);
+        log.info("Pricing migration completed. Processed: {}, Updated: {}, Errors: {}",
+                knives.size(), updatedCount, errors.size());
+        return result;
+    }
+
+    /**
+     * Slug for the given name that no other knife uses: "sef-bicagi", then "sef-bicagi-2", ...
+     *
+     * @param knifeId Id of the knife being saved (null for new knives) - its own slug is not a conflict
+     */
+    private String generateUniqueSlug(String name, String knifeId) {
+        String base = SlugUtil.toSlug(name);
+        if (base.isEmpty()) {
+            base = "knife";
+        }
+        String candidate = base;
+        for (int suffix = 2; isSlugTaken(candidate, knifeId); suffix++) {
+            candidate = base + "-" + suffix;
+        }
+        return candidate;
+    }
+
+    private boolean isSlugTaken(String slug, String knifeId) {
+        return knifeId == null
+                ? knifeRepository.existsBySlug(slug)
+                : knifeRepository.existsBySlugAndIdNot(slug, knifeId);
+    }
+
     @Override
     public KnifeDto addKnife(AddKnifeRequestDto knifeDto) {
         // Validate and normalize pricing
-        validateAndNormalizePricing(knifeDto);
+        knifeDto.setDiscountPrice(validateAndNormalizePricing(knifeDto.getPrice(), knifeDto.getDiscountPrice()));
 
         KnifeDto newKnife = mapAddKnifeRequestToDto(knifeDto);
+        newKnife.setSlug(generateUniqueSlug(newKnife.getName(), null));
+        KnifePricing.apply(newKnife);
 
         // Handle image upload
         String imageUrl = handleImageUpload(knifeDto.getImageFile(), knifeDto.getImageBase64());
         newKnife.setImageUrl(imageUrl);
 
-        return knifeRepository.save(newKnife);
+        KnifeDto savedKnife = knifeRepository.save(newKnife);
+        onKnifeSaved(savedKnife);
+        publishStockChange(savedKnife.getId(), savedKnife.getStockQuantity(), StockMovement.Cause.ADMIN_EDIT, null,
+                savedKnife.getStockQuantity());
+        return savedKnife;
     }
 
 
@@ -180,12 +637,22 @@ public class KnifeServiceImpl implements KnifeService {
 
         // Validate and normalize pricing
         System.out.println("➡️ Fiyat validasyonu başlıyor");
-        validateAndNormalizePricing(knifeDto);
+        knifeDto.setDiscountPrice(validateAndNormalizePricing(knifeDto.getPrice(), knifeDto.getDiscountPrice()));
         System.out.println("✅ Fiyat validasyonu tamamlandı");
 
         // Update fields
         System.out.println("➡️ Knife alanları güncelleniyor");
+        String previousName = existingKnife.getName();
+        int previousStock = currentStockLevel(existingKnife);
         updateKnifeFields(existingKnife, knifeDto);
+        // Slug follows the name; unchanged names keep their URL
+        if (existingKnife.getSlug() == null || !Objects.equals(previousName, existingKnife.getName())) {
+            existingKnife.setSlug(generateUniqueSlug(existingKnife.getName(), id));
+        }
+        KnifePricing.apply(existingKnife);
+        if (existingKnife.isStockStriped()) {
+            stockShardService.setTotal(id, existingKnife.getStockQuantity());
+        }
         System.out.println("✅ Alanlar güncellendi");
 
         // Handle image upload
@@ -198,7 +665,20 @@ public class KnifeServiceImpl implements KnifeService {
             System.out.println("ℹ️ Image güncellenmedi");
         }
 
-        KnifeDto savedKnife = knifeRepository.save(existingKnife);
+        // Targeted $set of the edited fields: stockHolds and stockStriped belong to placements and striping,
+        // which change them concurrently - saving the whole loaded document would overwrite them
+        KnifeDto savedKnife = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(id)),
+                editableFieldsUpdate(existingKnife),
+                org.springframework.data.mongodb.core.FindAndModifyOptions.options().returnNew(true),
+                KnifeDto.class);
+        if (savedKnife == null) {
+            log.warn("Knife {} was deleted during update", id);
+            return null;
+        }
+        onKnifeSaved(savedKnife);
+        publishStockChange(id, savedKnife.getStockQuantity() - previousStock, StockMovement.Cause.ADMIN_EDIT, null,
+                savedKnife.getStockQuantity());
         System.out.println("✅ Knife başarıyla update edildi: " + savedKnife.getId());
         System.out.println("=== updateKnife END ===");
 
@@ -224,12 +704,61 @@ public class KnifeServiceImpl implements KnifeService {
                 categoryService.getCategoryById(dto.getCategoryId()).getCategoryName() : null);
     }
 
+    /**
+     * Fields an admin edit owns, as a $set
+     */
+    private Update editableFieldsUpdate(KnifeDto knife) {
+        return new Update()
+                .set("name", knife.getName())
+                .set("slug", knife.getSlug())
+                .set("description", knife.getDescription())
+                .set("price", knife.getPrice())
+                .set("discountPrice", knife.getDiscountPrice())
+                .set("percentageDiscount", knife.isPercentageDiscount())
+                .set("effectivePrice", knife.getEffectivePrice())
+                .set("discountPercent", knife.getDiscountPercent())
+                .set("categoryId", knife.getCategoryId())
+                .set("categoryName", knife.getCategoryName())
+                .set("tags", knife.getTags())
+                .set("stockQuantity", knife.getStockQuantity())
+                .set("imageUrl", knife.getImageUrl())
+                .set("knifeType", knife.getKnifeType())
+                .set("bladeMaterial", knife.getBladeMaterial())
+                .set("handleMaterial", knife.getHandleMaterial())
+                .set("bladeLength", knife.getBladeLength())
+                .set("color", knife.getColor())
+                .set("knifeSizes", knife.getKnifeSizes())
+                .inc("revision", 1);
+    }
+
     @Override
     public KnifeDto updateKnifeStockQuantity(String id, int quantity) {
         KnifeDto knife = knifeRepository.findById(id).orElse(null);
         if (knife == null) return null;
-        knife.setStockQuantity(quantity);
-        return knifeRepository.save(knife);
+        int previousStock = currentStockLevel(knife);
+        if (knife.isStockStriped()) {
+            stockShardService.setTotal(id, quantity);
+        }
+        // Only stockQuantity: stockHolds / stockStriped may have changed since the read
+        KnifeDto savedKnife = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(id)),
+                new Update().set("stockQuantity", quantity).inc("revision", 1),
+                org.springframework.data.mongodb.core.FindAndModifyOptions.options().returnNew(true),
+                KnifeDto.class);
+        if (savedKnife == null) return null;
+        onKnifeSaved(savedKnife);
+        publishStockChange(id, quantity - previousStock, StockMovement.Cause.ADMIN_EDIT, null, quantity);
+        return savedKnife;
+    }
+
+    /**
+     * Units actually available - the shard sum for striped knives, whose stockQuantity is only a synced display value
+     */
+    private int currentStockLevel(KnifeDto knife) {
+        if (!knife.isStockStriped()) {
+            return knife.getStockQuantity();
+        }
+        return stockShardService.getTotals(List.of(knife.getId())).getOrDefault(knife.getId(), 0);
     }
 
     /**
@@ -243,19 +772,42 @@ public class KnifeServiceImpl implements KnifeService {
      * @throws IllegalStateException if insufficient stock
      */
     @Override
-    public KnifeDto decrementStockAtomic(String id, int decrementBy) {
+    public KnifeDto decrementStockAtomic(String id, int decrementBy, StockMovement.Cause cause) {
+        return decrementStock(id, decrementBy, cause, null);
+    }
+
+    private KnifeDto decrementStock(String id, int decrementBy, StockMovement.Cause cause, String holdId) {
+        return decrementStock(id, decrementBy, cause, holdId, true);
+    }
+
+    /**
+     * @param shardsAllowed false once the shards were found gone, so a knife flagged striped is not routed back to them
+     */
+    private KnifeDto decrementStock(String id, int decrementBy, StockMovement.Cause cause, String holdId,
+                                    boolean shardsAllowed) {
         if (decrementBy <= 0) {
             throw new IllegalArgumentException("Decrement amount must be positive");
         }
 
+        // Striped (hot) knives are decremented on one of their stock shards instead of the knife document
+        KnifeDto cached = catalogSnapshot.isEnabled() ? catalogSnapshot.getKnife(id) : null;
+        if (shardsAllowed && cached != null && cached.isStockStriped()) {
+            return decrementStriped(id, decrementBy, cause, holdId);
+        }
+
         // Use atomic findAndModify to check and decrement in one operation
         // This ensures no race condition between check and update
         Query query = new Query(Criteria.where("_id").is(id)
-                .and("stockQuantity").gte(decrementBy));
+                .and("stockQuantity").gte(decrementBy)
+                .and("stockStriped").ne(true));
 
         org.springframework.data.mongodb.core.query.Update update =
                 new org.springframework.data.mongodb.core.query.Update()
-                        .inc("stockQuantity", -decrementBy);
+                        .inc("stockQuantity", -decrementBy)
+                        .inc("revision", 1);
+        if (holdId != null) {
+            update.addToSet("stockHolds", holdId);
+        }
 
         org.springframework.data.mongodb.core.FindAndModifyOptions options =
                 org.springframework.data.mongodb.core.FindAndModifyOptions.options()
@@ -268,13 +820,17 @@ public class KnifeServiceImpl implements KnifeService {
             KnifeDto existing = knifeRepository.findById(id).orElse(null);
             if (existing == null) {
                 throw new IllegalArgumentException("Product not found: " + id);
+            } else if (existing.isStockStriped() && shardsAllowed) {
+                return decrementStriped(id, decrementBy, cause, holdId);
             } else {
-                throw new IllegalStateException(
+                throw new InsufficientStockException(id,
                         String.format("Insufficient stock for %s. Requested: %d, Available: %d",
                                 existing.getName(), decrementBy, existing.getStockQuantity()));
             }
         }
 
+        onStockSaved(updatedKnife);
+        publishStockChange(id, -decrementBy, cause, holdId, updatedKnife.getStockQuantity());
         return updatedKnife;
     }
 
@@ -286,20 +842,209 @@ public class KnifeServiceImpl implements KnifeService {
      * @param incrementBy Amount to restore
      */
     @Override
-    public void incrementStockAtomic(String id, int incrementBy) {
+    public void incrementStockAtomic(String id, int incrementBy, StockMovement.Cause cause) {
+        incrementStock(id, incrementBy, cause, null);
+    }
+
+    private void incrementStock(String id, int incrementBy, StockMovement.Cause cause, String reference) {
         if (incrementBy <= 0) {
             return;
         }
 
         org.springframework.data.mongodb.core.query.Update update =
                 new org.springframework.data.mongodb.core.query.Update()
-                        .inc("stockQuantity", incrementBy);
+                        .inc("stockQuantity", incrementBy)
+                        .inc("revision", 1);
 
-        mongoTemplate.updateFirst(
-                new Query(Criteria.where("_id").is(id)),
+        KnifeDto updatedKnife = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(id).and("stockStriped").ne(true)),
                 update,
+                org.springframework.data.mongodb.core.FindAndModifyOptions.options().returnNew(true),
                 KnifeDto.class
         );
+        if (updatedKnife == null) {
+            // Striped knife: the units go back into one of its shards
+            if (stockShardService.increment(id, incrementBy)) {
+                publishStockChange(id, incrementBy, cause, reference, null);
+                return;
+            }
+            // No shards left - striping was switched off in the meantime
+            updatedKnife = mongoTemplate.findAndModify(
+                    new Query(Criteria.where("_id").is(id)),
+                    update,
+                    org.springframework.data.mongodb.core.FindAndModifyOptions.options().returnNew(true),
+                    KnifeDto.class
+            );
+        }
+        if (updatedKnife != null) {
+            onStockSaved(updatedKnife);
+            publishStockChange(id, incrementBy, cause, reference, updatedKnife.getStockQuantity());
+        }
+    }
+
+    @Override
+    public void decrementStockBulk(Map<String, Integer> quantities, String holdId, StockMovement.Cause cause) {
+        List<Map.Entry<String, Integer>> pending = new ArrayList<>(quantities.entrySet());
+        for (Map.Entry<String, Integer> entry : pending) {
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                throw new IllegalArgumentException("Decrement amount must be positive");
+            }
+        }
+
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // A write error aborts a Mongo transaction, so the upsert probe below cannot be used.
+            // Decrement item by item instead; the transaction undoes everything on failure
+            for (Map.Entry<String, Integer> entry : pending) {
+                decrementStock(entry.getKey(), entry.getValue(), cause, holdId);
+            }
+            return;
+        }
+
+        // Every line the bulk decrements is tagged, so a partial bulk can be told apart with one re-read.
+        // Without a caller hold the tag is private to this call and dropped again at the end
+        String tag = holdId != null ? holdId : "bulk-" + UUID.randomUUID();
+        List<String> ids = pending.stream().map(Map.Entry::getKey).toList();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, KnifeDto.class);
+        for (Map.Entry<String, Integer> entry : pending) {
+            bulk.updateOne(new Query(Criteria.where("_id").is(entry.getKey())
+                            .and("stockQuantity").gte(entry.getValue())
+                            .and("stockStriped").ne(true)),
+                    new Update().inc("stockQuantity", -entry.getValue()).inc("revision", 1).addToSet("stockHolds", tag));
+        }
+        BulkWriteResult result;
+        try {
+            result = bulk.execute();
+        } catch (RuntimeException e) {
+            // Lines before the failure may have gone through; only still-tagged knives get their stock back
+            releaseStockHold(tag, quantities);
+            throw e;
+        }
+
+        Set<String> decremented;
+        if (result.getMatchedCount() == pending.size()) {
+            decremented = new HashSet<>(ids);
+        } else {
+            Query tagged = new Query(Criteria.where("_id").in(ids).and("stockHolds").is(tag));
+            tagged.fields().include("_id");
+            decremented = mongoTemplate.find(tagged, KnifeDto.class).stream()
+                    .map(KnifeDto::getId)
+                    .collect(Collectors.toSet());
+        }
+
+        Map<String, Integer> appliedInBulk = new HashMap<>();
+        Map<String, Integer> appliedSingly = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : pending) {
+            if (decremented.contains(entry.getKey())) {
+                appliedInBulk.put(entry.getKey(), entry.getValue());
+                publishStockChange(entry.getKey(), -entry.getValue(), cause, holdId, null);
+            }
+        }
+        try {
+            // The filter did not match: striped knife, insufficient stock or a deleted knife.
+            // The single-item path routes striped knives to their shards and reports the exact reason
+            for (Map.Entry<String, Integer> entry : pending) {
+                if (!decremented.contains(entry.getKey())) {
+                    decrementStock(entry.getKey(), entry.getValue(), cause, holdId);
+                    appliedSingly.put(entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (RuntimeException e) {
+            releaseStockHold(tag, appliedInBulk);
+            if (holdId != null) {
+                releaseStockHold(holdId, appliedSingly);
+            } else {
+                appliedSingly.forEach((id, quantity) -> {
+                    try {
+                        incrementStockAtomic(id, quantity, StockMovement.Cause.ROLLBACK);
+                    } catch (Exception rollbackError) {
+                        log.error("Failed to rollback stock for product: {}. Manual correction may be needed.", id, rollbackError);
+                    }
+                });
+            }
+            throw e;
+        } finally {
+            if (holdId == null && !appliedInBulk.isEmpty()) {
+                clearStockHold(tag, appliedInBulk.keySet());
+            }
+        }
+
+        // One snapshot rebuild for the whole batch (single-item fallbacks already published themselves)
+        if (!appliedInBulk.isEmpty()) {
+            Map<String, Integer> deltas = new HashMap<>();
+            appliedInBulk.forEach((id, quantity) -> deltas.put(id, -quantity));
+            catalogSnapshot.applyStockDeltas(deltas);
+            catalogVersion.markDirty();
+        }
+    }
+
+    /**
+     * Decrement a striped knife's stock on its shards; a hold is tagged on each shard in the same update.
+     * The knife document is not written, so the catalog snapshot is left to the periodic shard sync.
+     */
+    private KnifeDto decrementStriped(String id, int decrementBy, StockMovement.Cause cause, String holdId) {
+        int remaining;
+        try {
+            remaining = stockShardService.decrement(id, decrementBy, holdId);
+        } catch (InsufficientStockException e) {
+            throw e;
+        } catch (IllegalStateException e) {
+            throw new InsufficientStockException(id, e.getMessage());
+        }
+        if (remaining < 0) {
+            // No shards: striping was disabled after the snapshot was built and the document holds the stock again
+            return decrementStock(id, decrementBy, cause, holdId, false);
+        }
+        publishStockChange(id, -decrementBy, cause, holdId, remaining);
+        KnifeDto knife = knifeRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Product not found: " + id));
+        knife.setStockQuantity(remaining);
+        return knife;
+    }
+
+    @Override
+    public void releaseStockHold(String holdId, Map<String, Integer> quantities) {
+        quantities.forEach((id, quantity) -> {
+            try {
+                // Returning the stock and dropping the tag in one update makes the release idempotent
+                KnifeDto restored = mongoTemplate.findAndModify(
+                        new Query(Criteria.where("_id").is(id).and("stockHolds").is(holdId).and("stockStriped").ne(true)),
+                        new Update().inc("stockQuantity", quantity).inc("revision", 1).pull("stockHolds", holdId),
+                        org.springframework.data.mongodb.core.FindAndModifyOptions.options().returnNew(true),
+                        KnifeDto.class);
+                if (restored != null) {
+                    onStockSaved(restored);
+                    publishStockChange(id, quantity, StockMovement.Cause.ROLLBACK, holdId,
+                            restored.getStockQuantity());
+                    return;
+                }
+                // Striped knife: the shards that took the units carry the tag
+                int released = stockShardService.releaseHold(id, holdId);
+                if (released > 0) {
+                    publishStockChange(id, released, StockMovement.Cause.ROLLBACK, holdId, null);
+                    return;
+                }
+                // Tag left on the document of a knife striped since: claim it, then put the units back on a shard
+                boolean claimed = mongoTemplate.updateFirst(
+                        new Query(Criteria.where("_id").is(id).and("stockHolds").is(holdId)),
+                        new Update().pull("stockHolds", holdId), KnifeDto.class).getModifiedCount() > 0;
+                if (claimed) {
+                    incrementStock(id, quantity, StockMovement.Cause.ROLLBACK, holdId);
+                }
+            } catch (Exception e) {
+                log.error("Failed to release stock hold {} for product: {} (+{}). Manual correction may be needed.",
+                        holdId, id, quantity, e);
+            }
+        });
+    }
+
+    @Override
+    public void clearStockHold(String holdId, Collection<String> knifeIds) {
+        if (knifeIds.isEmpty()) {
+            return;
+        }
+        mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(knifeIds).and("stockHolds").is(holdId)),
+                new Update().pull("stockHolds", holdId), KnifeDto.class);
+        stockShardService.clearHold(holdId, knifeIds);
     }
 
     @Override
@@ -314,17 +1059,72 @@ public class KnifeServiceImpl implements KnifeService {
         }
 
         knifeRepository.deleteById(id);
+        onKnifeDeleted(id);
         System.out.println("✅ Knife başarıyla silindi: " + id);
         System.out.println("=== deleteKnife END ===");
     }
 
 
+    /**
+     * Publish a catalog write: swap the snapshot entry and bump the catalog version (ETags).
+     * Inside a transaction the publish waits for the commit so readers never see rolled-back stock.
+     */
+    private void onKnifeSaved(KnifeDto knife) {
+        afterCommit(() -> {
+            catalogSnapshot.upsert(knife);
+            catalogVersion.bump();
+        });
+    }
+
+    /**
+     * Publish a stock-only write (sales, rollbacks, hold releases): like onKnifeSaved, but the catalog version
+     * is only marked dirty - bumping the shared counter on every sale would make it a write hotspot
+     */
+    private void onStockSaved(KnifeDto knife) {
+        afterCommit(() -> {
+            catalogSnapshot.upsert(knife);
+            catalogVersion.markDirty();
+        });
+    }
+
+    /**
+     * Record a stock change in the ledger (see StockLedgerService); inside a transaction it is recorded on commit
+     *
+     * @param stockAfter Level right after the change, or null where the write does not return it (bulk, shards)
+     */
+    private void publishStockChange(String id, int delta, StockMovement.Cause cause, String reference, Integer stockAfter) {
+        if (delta != 0) {
+            eventPublisher.publishEvent(new StockChangedEvent(id, delta, cause, reference, stockAfter, Instant.now()));
+        }
+    }
+
+    private void onKnifeDeleted(String id) {
+        afterCommit(() -> {
+            catalogSnapshot.remove(id);
+            catalogVersion.bump();
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
     @Override
     public List<String> getKnifeTypes() {
-        return knifeRepository.findAll().stream()
-                .map(KnifeDto::getKnifeType)
+        if (catalogSnapshot.isEnabled()) {
+            return catalogSnapshot.getKnifeTypes();
+        }
+        return mongoTemplate.findDistinct(new Query(), "knifeType", KnifeDto.class, String.class).stream()
                 .filter(Objects::nonNull)
-                .distinct()
                 .toList();
     }
 
@@ -383,19 +1183,10 @@ public class KnifeServiceImpl implements KnifeService {
      * - If discountPrice >= price: Set discountPrice = price (no discount)
      * - If discountPrice < 0: Throw validation error
      * - If price <= 0: Throw validation error
+     *
+     * @return The normalized discount price
      */
-    private void validateAndNormalizePricing(Object dto) {
-        double price;
-        double discountPrice;
-
-        // Extract price values using reflection to work with both AddKnifeRequestDto and UpdateKnifeRequestDto
-        try {
-            price = (Double) dto.getClass().getMethod("getPrice").invoke(dto);
-            discountPrice = (Double) dto.getClass().getMethod("getDiscountPrice").invoke(dto);
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Invalid DTO structure for price validation");
-        }
-
+    private double validateAndNormalizePricing(double price, double discountPrice) {
         // Validate price constraints
         if (price <= 0) {
             throw new IllegalArgumentException("Regular price must be greater than 0");
@@ -406,12 +1197,6 @@ public class KnifeServiceImpl implements KnifeService {
         }
 
         // Normalize: if discount price >= regular price, set them equal (no discount)
-        if (discountPrice >= price) {
-            try {
-                dto.getClass().getMethod("setDiscountPrice", double.class).invoke(dto, price);
-            } catch (Exception e) {
-                throw new IllegalArgumentException("Failed to normalize discount price");
-            }
-        }
+        return discountPrice >= price ? price : discountPrice;
     }
 }
\ No newline at end of file
@@ -0,0 +1,152 @@
+package com.kesik.bladecommerce.service.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.kesik.bladecommerce.dto.order.OrderDto;
+import com.kesik.bladecommerce.dto.order.OrderExportFormat;
+import com.kesik.bladecommerce.service.OrderExportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Service
+@Slf4j
+public class OrderExportServiceImpl implements OrderExportService {
+    private static final List<String> CSV_COLUMNS = List.of(
+            "id", "orderNumber", "orderDate", "orderStatusCode", "orderStatusText",
+            "userName", "userSurname", "email", "phoneNumber",
+            "totalAmount", "subtotal", "shippingCost", "itemCount",
+            "paymentId", "conversationId", "shippingAddress", "billingAddress");
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+
+    // Documents per cursor getMore - bounds how many orders are held in memory at once
+    @Value("${orders.export.batch-size:500}")
+    private int batchSize;
+
+    public OrderExportServiceImpl(MongoTemplate mongoTemplate, ObjectMapper objectMapper) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void exportOrders(OrderExportFormat format, Integer orderStatus, String startDate, String endDate,
+                             OutputStream out) throws IOException {
+        Query query = new Query(exportCriteria(orderStatus, startDate, endDate))
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .cursorBatchSize(batchSize);
+
+        long exported;
+        try (Stream<OrderDto> orders = mongoTemplate.stream(query, OrderDto.class)) {
+            exported = format == OrderExportFormat.CSV ? writeCsv(orders, out) : writeNdjson(orders, out);
+        }
+        log.info("Exported {} orders as {} (status {}, {} to {})", exported, format, orderStatus, startDate, endDate);
+    }
+
+    private long writeNdjson(Stream<OrderDto> orders, OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(OrderDto.class);
+        long count = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            // The response stream belongs to the caller
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            for (OrderDto order : (Iterable<OrderDto>) orders::iterator) {
+                writer.writeValue(generator, order);
+                generator.writeRaw('\n');
+                count++;
+            }
+            generator.flush();
+        }
+        return count;
+    }
+
+    private long writeCsv(Stream<OrderDto> orders, OutputStream out) throws IOException {
+        // Not closed: closing the writer would close the response stream
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(String.join(",", CSV_COLUMNS));
+        writer.write("\r\n");
+        long count = 0;
+        for (OrderDto order : (Iterable<OrderDto>) orders::iterator) {
+            writeCsvRow(writer, order);
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+
+    private static void writeCsvRow(Writer writer, OrderDto order) throws IOException {
+        Integer statusCode = order.getOrderStatus() != null ? order.getOrderStatus().getOrderStatusCode() : null;
+        String statusText = order.getOrderStatus() != null ? order.getOrderStatus().getOrderStatusText() : null;
+        Object[] values = {
+                order.getId(), order.getOrderNumber(), order.getOrderDate(), statusCode, statusText,
+                order.getUserName(), order.getUserSurname(), order.getEmail(), order.getPhoneNumber(),
+                order.getTotalAmount(), order.getSubtotal(), order.getShippingCost(), itemCount(order),
+                order.getPaymentId(), order.getConversationId(), order.getShippingAddress(), order.getBillingAddress()
+        };
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(csvField(values[i]));
+        }
+        writer.write("\r\n");
+    }
+
+    private static int itemCount(OrderDto order) {
+        if (order.getKnives() == null) {
+            return 0;
+        }
+        // Orders placed before line quantities were recorded hold one unit per line
+        return order.getKnives().stream()
+                .mapToInt(knife -> knife != null && knife.getQuantity() > 0 ? knife.getQuantity() : 1)
+                .sum();
+    }
+
+    /**
+     * RFC 4180 quoting. Customer-entered text starting with a formula character is prefixed with an apostrophe
+     * so spreadsheets do not evaluate it.
+     */
+    private static String csvField(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (value instanceof String && !text.isEmpty() && "=+-@\t\r".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+
+    private static Criteria exportCriteria(Integer orderStatus, String startDate, String endDate) {
+        List<Criteria> criteriaList = new ArrayList<>();
+        if (orderStatus != null) {
+            criteriaList.add(Criteria.where("orderStatus.orderStatusCode").is(orderStatus));
+        }
+        if (startDate != null) {
+            criteriaList.add(Criteria.where("orderDate").gte(startDate));
+        }
+        if (endDate != null) {
+            criteriaList.add(Criteria.where("orderDate").lte(endDate));
+        }
+        return criteriaList.isEmpty() ? new Criteria() :
+            new Criteria().andOperator(criteriaList.toArray(new Criteria[0]));
+    }
+}
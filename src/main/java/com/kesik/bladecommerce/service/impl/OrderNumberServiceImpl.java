@@ -0,0 +1,75 @@
+package com.kesik.bladecommerce.service.impl;
+
+import com.kesik.bladecommerce.entity.Counter;
+import com.kesik.bladecommerce.service.OrderNumberService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+@Service
+@Slf4j
+public class OrderNumberServiceImpl implements OrderNumberService {
+    private static final String SEQUENCE = "orderNumber";
+    // Order numbers are 8 hex digits, so the sequence wraps after 2^32 values
+    private static final long SEQUENCE_SPACE = 1L << 32;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${orders.number.block-size:100}")
+    private int blockSize;
+
+    // Local block [next, end) reserved from the counter; guarded by this
+    private long next;
+    private long end;
+
+    public OrderNumberServiceImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public synchronized String nextOrderNumber() {
+        if (next >= end) {
+            reserveBlock();
+        }
+        return format(next++);
+    }
+
+    /**
+     * Reserve the next blockSize values for this node with one atomic $inc. Values left in a block when
+     * the node stops are never handed out, so numbers have gaps but never repeat.
+     */
+    private void reserveBlock() {
+        int size = Math.max(1, blockSize);
+        Counter counter = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(SEQUENCE)),
+                new Update().inc("value", size),
+                FindAndModifyOptions.options().returnNew(true).upsert(true),
+                Counter.class);
+        if (counter == null) {
+            throw new IllegalStateException("Could not reserve order numbers");
+        }
+        end = counter.getValue();
+        next = end - size;
+        log.debug("Reserved order number block [{}, {})", next, end);
+    }
+
+    /**
+     * Sequence values go through a bijective 32-bit mix so consecutive orders do not reveal order volume;
+     * distinct values below 2^32 always give distinct numbers.
+     */
+    private static String format(long value) {
+        int x = (int) (value % SEQUENCE_SPACE);
+        x ^= x >>> 16;
+        x *= 0x85EBCA6B;
+        x ^= x >>> 13;
+        x *= 0xC2B2AE35;
+        x ^= x >>> 16;
+        x ^= 0x5BD1E995; // Keeps the first value away from ORD-00000000
+        return String.format("ORD-%08X", x);
+    }
+}
@@ -0,0 +1,188 @@
+package com.kesik.bladecommerce.service.impl;
+
+import com.kesik.bladecommerce.dto.order.OrderDto;
+import com.kesik.bladecommerce.entity.OrderPlacementIntent;
+import com.kesik.bladecommerce.entity.StockMovement;
+import com.kesik.bladecommerce.service.KnifeService;
+import com.kesik.bladecommerce.service.OrderPlacementIntentService;
+import com.kesik.bladecommerce.service.StockReservationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+@Service
+@Slf4j
+public class OrderPlacementIntentServiceImpl implements OrderPlacementIntentService {
+
+    /**
+     * Upper bound of intents resolved per recovery run, so one run cannot monopolise the scheduler thread
+     */
+    private static final int MAX_RECOVERIES_PER_RUN = 200;
+
+    private final MongoTemplate mongoTemplate;
+    private final KnifeService knifeService;
+    private final StockReservationService stockReservationService;
+
+    // Must comfortably exceed the slowest live placement, or the worker could compensate an order still being saved
+    @Value("${orders.placement.intent.stale-after-seconds:300}")
+    private long staleAfterSeconds;
+
+    @Value("${orders.placement.intent.retention-hours:24}")
+    private long retentionHours;
+
+    public OrderPlacementIntentServiceImpl(MongoTemplate mongoTemplate, KnifeService knifeService,
+                                           StockReservationService stockReservationService) {
+        this.mongoTemplate = mongoTemplate;
+        this.knifeService = knifeService;
+        this.stockReservationService = stockReservationService;
+    }
+
+    @Override
+    public String begin(String reservationId) {
+        OrderPlacementIntent intent = mongoTemplate.insert(OrderPlacementIntent.builder()
+                .id(UUID.randomUUID().toString())
+                .status(OrderPlacementIntent.Status.PENDING)
+                .reservationId(reservationId == null || reservationId.isBlank() ? null : reservationId)
+                .createdAt(Instant.now())
+                .build());
+        return intent.getId();
+    }
+
+    @Override
+    public void recordStock(String intentId, Map<String, Integer> decrements, Map<String, Integer> reservationReturns) {
+        mongoTemplate.updateFirst(pending(intentId),
+                new Update().set("decrements", decrements).set("reservationReturns", reservationReturns),
+                OrderPlacementIntent.class);
+    }
+
+    @Override
+    public void complete(String intentId) {
+        OrderPlacementIntent intent = mongoTemplate.findOne(pending(intentId), OrderPlacementIntent.class);
+        if (intent == null) {
+            return;
+        }
+        if (intent.getDecrements() != null) {
+            knifeService.clearStockHold(intentId, intent.getDecrements().keySet());
+        }
+        // The status flip decides who returns the unused reserved units, so they go back at most once
+        if (finish(intentId, OrderPlacementIntent.Status.COMPLETED) == null) {
+            return;
+        }
+        if (intent.getReservationReturns() != null) {
+            intent.getReservationReturns().forEach((knifeId, quantity) -> {
+                try {
+                    knifeService.incrementStockAtomic(knifeId, quantity, StockMovement.Cause.RETURN);
+                } catch (Exception e) {
+                    log.error("Failed to return unused reserved stock for product: {} (+{}). Manual correction may be needed.",
+                            knifeId, quantity, e);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void compensate(String intentId) {
+        OrderPlacementIntent intent = mongoTemplate.findOne(pending(intentId), OrderPlacementIntent.class);
+        if (intent == null) {
+            return;
+        }
+        if (intent.getDecrements() != null) {
+            knifeService.releaseStockHold(intentId, intent.getDecrements());
+        }
+        // A reservation confirmed by this placement holds stock again once reopened; release gives it back
+        if (stockReservationService.reopen(intent.getReservationId(), intentId)) {
+            stockReservationService.release(intent.getReservationId());
+        }
+        if (finish(intentId, OrderPlacementIntent.Status.COMPENSATED) != null) {
+            log.info("Compensated order placement {}", intentId);
+        }
+    }
+
+    @Override
+    public void resolve(String intentId) {
+        boolean placed = mongoTemplate.exists(new Query(Criteria.where("placementIntentId").is(intentId)), OrderDto.class);
+        if (placed) {
+            complete(intentId);
+        } else {
+            compensate(intentId);
+        }
+    }
+
+    @Override
+    public int recoverStale() {
+        Query staleQuery = new Query(Criteria.where("status").is(OrderPlacementIntent.Status.PENDING)
+                .and("createdAt").lt(Instant.now().minusSeconds(staleAfterSeconds)))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"))
+                .limit(MAX_RECOVERIES_PER_RUN);
+        List<OrderPlacementIntent> stale = mongoTemplate.find(staleQuery, OrderPlacementIntent.class);
+        if (stale.isEmpty()) {
+            return 0;
+        }
+
+        // One lookup tells which of the stale placements got as far as saving their order
+        List<String> intentIds = stale.stream().map(OrderPlacementIntent::getId).toList();
+        Query placedQuery = new Query(Criteria.where("placementIntentId").in(intentIds));
+        placedQuery.fields().include("placementIntentId");
+        Set<String> placed = new HashSet<>();
+        mongoTemplate.find(placedQuery, OrderDto.class).forEach(order -> placed.add(order.getPlacementIntentId()));
+
+        int resolved = 0;
+        for (String intentId : intentIds) {
+            try {
+                if (placed.contains(intentId)) {
+                    complete(intentId);
+                } else {
+                    compensate(intentId);
+                }
+                resolved++;
+            } catch (Exception e) {
+                log.error("Failed to recover order placement {}: {}", intentId, e.getMessage(), e);
+            }
+        }
+        log.info("Recovered {} stale order placements ({} completed)", resolved, placed.size());
+        return resolved;
+    }
+
+    @Scheduled(fixedDelayString = "${orders.placement.intent.recovery-interval-ms:60000}")
+    public void scheduledRecoverStale() {
+        try {
+            recoverStale();
+        } catch (Exception e) {
+            log.warn("Recovering stale order placements failed: {}", e.getMessage());
+        }
+    }
+
+    private Query pending(String intentId) {
+        return new Query(Criteria.where("_id").is(intentId).and("status").is(OrderPlacementIntent.Status.PENDING));
+    }
+
+    /**
+     * Atomically move a PENDING intent to a terminal status and start its retention period
+     *
+     * @return The intent as it was before the update, or null if it was no longer PENDING
+     */
+    private OrderPlacementIntent finish(String intentId, OrderPlacementIntent.Status status) {
+        Instant now = Instant.now();
+        Update update = new Update()
+                .set("status", status)
+                .set("finishedAt", now)
+                .set("purgeAt", now.plus(Duration.ofHours(retentionHours)));
+        return mongoTemplate.findAndModify(pending(intentId), update,
+                FindAndModifyOptions.options().returnNew(false), OrderPlacementIntent.class);
+    }
+}
@@ -0,0 +1,261 @@
+package com.kesik.bladecommerce.service.impl;
+
+import com.kesik.bladecommerce.dto.order.KnifeOrderDto;
+import com.kesik.bladecommerce.dto.order.OrderDto;
+import com.kesik.bladecommerce.entity.OrderDailyRollup;
+import com.kesik.bladecommerce.service.OrderRollupService;
+import com.kesik.bladecommerce.util.KnifePricing;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+@Service
+@Slf4j
+public class OrderRollupServiceImpl implements OrderRollupService {
+    /**
+     * Recomputations of one day before a rebuild gives up on it because live updates keep changing it
+     */
+    private static final int MAX_DAY_ATTEMPTS = 5;
+
+    private final MongoTemplate mongoTemplate;
+
+    public OrderRollupServiceImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void recordPlaced(OrderDto order) {
+        applyOrder(order, 1);
+    }
+
+    @Override
+    public void recordDeleted(OrderDto order) {
+        applyOrder(order, -1);
+    }
+
+    @Override
+    public void recordStatusChange(OrderDto order, Integer previousStatusCode) {
+        Integer statusCode = statusCode(order);
+        if (order.getOrderDate() == null || Objects.equals(previousStatusCode, statusCode)) {
+            return;
+        }
+        double amount = amount(order);
+        Update update = new Update();
+        if (previousStatusCode != null) {
+            update.inc("statuses." + previousStatusCode + ".orders", -1)
+                    .inc("statuses." + previousStatusCode + ".revenue", -amount);
+        }
+        if (statusCode != null) {
+            update.inc("statuses." + statusCode + ".orders", 1)
+                    .inc("statuses." + statusCode + ".revenue", amount);
+        }
+        update.inc("updates", 1);
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(order.getOrderDate())), update, OrderDailyRollup.class);
+    }
+
+    /**
+     * One $inc on the order's day: sign 1 adds the order, -1 takes it out again
+     */
+    private void applyOrder(OrderDto order, int sign) {
+        if (order.getOrderDate() == null) {
+            return;
+        }
+        double amount = amount(order);
+        Update update = new Update()
+                .inc("orders", sign)
+                .inc("revenue", sign * amount)
+                .inc("updates", 1);
+        Integer statusCode = statusCode(order);
+        if (statusCode != null) {
+            update.inc("statuses." + statusCode + ".orders", sign)
+                    .inc("statuses." + statusCode + ".revenue", sign * amount);
+        }
+        for (Map.Entry<String, OrderDailyRollup.ProductTotals> line : productLines(order).entrySet()) {
+            String path = "products." + line.getKey();
+            update.inc(path + ".orders", sign)
+                    .inc(path + ".quantity", sign * line.getValue().getQuantity())
+                    .inc(path + ".revenue", sign * line.getValue().getRevenue());
+            if (sign > 0 && line.getValue().getName() != null) {
+                update.set(path + ".name", line.getValue().getName());
+            }
+        }
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(order.getOrderDate())), update, OrderDailyRollup.class);
+    }
+
+    @Override
+    public Map<String, Object> rebuild(String startDate, String endDate) {
+        // Today is still taking live $inc updates; rebuilding it would mostly retry
+        String lastFullDay = LocalDate.now().minusDays(1).toString();
+        String rebuildEnd = endDate == null || endDate.compareTo(lastFullDay) > 0 ? lastFullDay : endDate;
+
+        List<String> dayIds = mongoTemplate.findDistinct(new Query(rangeOn("orderDate", startDate, rebuildEnd)),
+                "orderDate", OrderDto.class, String.class);
+        long days = 0;
+        long orders = 0;
+        List<String> skipped = new ArrayList<>();
+        // Stored with millisecond precision; the stale-day cleanup below compares against it
+        Instant rebuiltAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        for (String dayId : dayIds.stream().filter(Objects::nonNull).sorted().toList()) {
+            long dayOrders = rebuildDay(dayId, rebuiltAt);
+            if (dayOrders < 0) {
+                skipped.add(dayId);
+                continue;
+            }
+            days++;
+            orders += dayOrders;
+        }
+        // Days left without orders (deleted since) are dropped last, so no day is ever missing while the rebuild runs
+        mongoTemplate.remove(new Query(new Criteria().andOperator(rangeOn("_id", startDate, rebuildEnd),
+                Criteria.where("rebuiltAt").ne(rebuiltAt), Criteria.where("_id").nin(skipped))), OrderDailyRollup.class);
+        if (skipped.isEmpty()) {
+            log.info("Rebuilt order rollups from {} to {}: {} days, {} orders", startDate, rebuildEnd, days, orders);
+        } else {
+            log.warn("Rebuilt order rollups from {} to {}: {} days, {} orders; kept busy days {}",
+                    startDate, rebuildEnd, days, orders, skipped);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("startDate", startDate);
+        result.put("endDate", rebuildEnd);
+        result.put("days", days);
+        result.put("orders", orders);
+        result.put("skippedDays", skipped);
+        return result;
+    }
+
+    /**
+     * Recompute one day and replace it only if no live $inc reached it since it was read (its updates counter
+     * is unchanged); otherwise recompute again, so an increment landing mid-rebuild is never overwritten
+     *
+     * @return Orders in the day, or -1 if the day kept changing and was left as it is
+     */
+    private long rebuildDay(String dayId, Instant rebuiltAt) {
+        Query query = new Query(Criteria.where("orderDate").is(dayId));
+        query.fields().include("orderDate", "totalAmount", "orderStatus", "knives._id", "knives.name",
+                "knives.price", "knives.discountPrice", "knives.quantity");
+
+        for (int attempt = 1; attempt <= MAX_DAY_ATTEMPTS; attempt++) {
+            OrderDailyRollup existing = mongoTemplate.findById(dayId, OrderDailyRollup.class);
+            long updates = existing != null ? existing.getUpdates() : 0;
+            OrderDailyRollup day = OrderDailyRollup.builder()
+                    .id(dayId)
+                    .statuses(new HashMap<>())
+                    .products(new HashMap<>())
+                    .updates(updates)
+                    .rebuiltAt(rebuiltAt)
+                    .build();
+            long orders = 0;
+            try (Stream<OrderDto> stream = mongoTemplate.stream(query, OrderDto.class)) {
+                for (OrderDto order : (Iterable<OrderDto>) stream::iterator) {
+                    addOrder(day, order);
+                    orders++;
+                }
+            }
+
+            if (existing == null) {
+                try {
+                    mongoTemplate.insert(day);
+                    return orders;
+                } catch (DuplicateKeyException e) {
+                    continue; // A live update created the day meanwhile
+                }
+            }
+            // Rollups written before the counter existed have no updates field
+            Criteria unchanged = updates == 0
+                    ? Criteria.where("updates").in(0L, null)
+                    : Criteria.where("updates").is(updates);
+            if (mongoTemplate.findAndReplace(new Query(Criteria.where("_id").is(dayId)).addCriteria(unchanged), day) != null) {
+                return orders;
+            }
+        }
+        return -1;
+    }
+
+    private void addOrder(OrderDailyRollup day, OrderDto order) {
+        double amount = amount(order);
+        day.setOrders(day.getOrders() + 1);
+        day.setRevenue(day.getRevenue() + amount);
+        Integer statusCode = statusCode(order);
+        if (statusCode != null) {
+            OrderDailyRollup.StatusTotals status = day.getStatuses()
+                    .computeIfAbsent(String.valueOf(statusCode), code -> new OrderDailyRollup.StatusTotals());
+            status.setOrders(status.getOrders() + 1);
+            status.setRevenue(status.getRevenue() + amount);
+        }
+        productLines(order).forEach((knifeId, line) -> day.getProducts().merge(knifeId, line, (total, added) -> {
+            total.setOrders(total.getOrders() + added.getOrders());
+            total.setQuantity(total.getQuantity() + added.getQuantity());
+            total.setRevenue(total.getRevenue() + added.getRevenue());
+            return total;
+        }));
+    }
+
+    @Override
+    public List<OrderDailyRollup> getRollups(String startDate, String endDate) {
+        Query query = new Query(rangeOn("_id", startDate, endDate)).with(Sort.by(Sort.Direction.ASC, "_id"));
+        return mongoTemplate.find(query, OrderDailyRollup.class);
+    }
+
+    /**
+     * Per-knife totals of one order; lines of the same knife (different sizes) are merged
+     */
+    private static Map<String, OrderDailyRollup.ProductTotals> productLines(OrderDto order) {
+        Map<String, OrderDailyRollup.ProductTotals> lines = new HashMap<>();
+        if (order.getKnives() == null) {
+            return lines;
+        }
+        for (KnifeOrderDto knife : order.getKnives()) {
+            if (knife == null || knife.getId() == null) {
+                continue;
+            }
+            // Orders placed before line quantities were recorded hold one unit per line
+            int quantity = knife.getQuantity() > 0 ? knife.getQuantity() : 1;
+            double revenue = KnifePricing.effectivePrice(knife.getPrice(), knife.getDiscountPrice()) * quantity;
+            lines.merge(knife.getId(), new OrderDailyRollup.ProductTotals(knife.getName(), 1, quantity, revenue),
+                    (total, added) -> {
+                        total.setQuantity(total.getQuantity() + added.getQuantity());
+                        total.setRevenue(total.getRevenue() + added.getRevenue());
+                        return total;
+                    });
+        }
+        return lines;
+    }
+
+    private static Integer statusCode(OrderDto order) {
+        return order.getOrderStatus() != null ? order.getOrderStatus().getOrderStatusCode() : null;
+    }
+
+    private static double amount(OrderDto order) {
+        return order.getTotalAmount() != null ? order.getTotalAmount() : 0;
+    }
+
+    private static Criteria rangeOn(String field, String startDate, String endDate) {
+        if (startDate == null && endDate == null) {
+            return new Criteria();
+        }
+        Criteria criteria = Criteria.where(field);
+        if (startDate != null) {
+            criteria = criteria.gte(startDate);
+        }
+        if (endDate != null) {
+            criteria = criteria.lte(endDate);
+        }
+        return criteria;
+    }
+}
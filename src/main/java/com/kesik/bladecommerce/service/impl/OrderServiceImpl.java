@@ -1,24 +1,50 @@
 package com.kesik.bladecommerce.service.impl;
 
+import com.kesik.bladecommerce.dto.PaginatedResponse;
 import com.kesik.bladecommerce.dto.iyzico.OrderRequestDto;
 import com.kesik.bladecommerce.dto.order.OrderDto;
 import com.kesik.bladecommerce.dto.order.OrderStatistics;
 import com.kesik.bladecommerce.dto.order.OrderStatusDto;
+import com.kesik.bladecommerce.entity.OrderDailyRollup;
 import com.kesik.bladecommerce.mapper.OrderMapper;
 import com.kesik.bladecommerce.repository.order.OrderRepository;
 import com.kesik.bladecommerce.service.MailService;
+import com.kesik.bladecommerce.service.OrderNumberService;
+import com.kesik.bladecommerce.service.OrderPlacementIntentService;
+import com.kesik.bladecommerce.service.OrderRollupService;
 import com.kesik.bladecommerce.service.OrderService;
+import com.kesik.bladecommerce.service.ProductAnalyticsService;
 import com.kesik.bladecommerce.util.OrderStatusHolder;
+import com.kesik.bladecommerce.util.RetryBackoff;
+import com.kesik.bladecommerce.util.PageCursor;
+import com.mongodb.MongoException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.FacetOperation;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
@@ -33,36 +59,225 @@ public class OrderServiceImpl implements OrderService {
     private final OrderStatusHolder orderStatusHolder;
     private final MailService mailService;
     private final OrderMapper orderMapper;
-
-    public OrderServiceImpl(OrderRepository orderRepository, MongoTemplate mongoTemplate, OrderStatusHolder orderStatusHolder, MailService mailService, OrderMapper orderMapper) {
+    private final OrderPlacementIntentService placementIntentService;
+    private final OrderNumberService orderNumberService;
+    private final OrderRollupService orderRollupService;
+    private final ProductAnalyticsService productAnalyticsService;
+    // Present only when orders.placement.transactional=true (see MongoTransactionConfig)
+    private final ObjectProvider<TransactionTemplate> orderTransactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private static final int TOP_PRODUCTS_LIMIT = 10;
+    private static final int ORDER_NUMBER_ATTEMPTS = 3;
+    private static final Document ORDER_AMOUNT = new Document("$ifNull", List.of("$totalAmount", 0));
+
+    // Read statistics from order_daily_rollups; enable once a rollup rebuild has backfilled history
+    @Value("${orders.statistics.use-rollups:false}")
+    private boolean useRollups;
+
+    @Value("${orders.placement.transaction-retries:3}")
+    private int transactionRetries;
+
+    @Value("${orders.placement.retry-backoff-ms:20}")
+    private long retryBackoffMs;
+
+    @Value("${orders.placement.retry-backoff-max-ms:500}")
+    private long retryBackoffMaxMs;
+
+    public OrderServiceImpl(OrderRepository orderRepository, MongoTemplate mongoTemplate, OrderStatusHolder orderStatusHolder, MailService mailService, OrderMapper orderMapper,
+                            OrderPlacementIntentService placementIntentService, OrderNumberService orderNumberService,
+                            OrderRollupService orderRollupService, ProductAnalyticsService productAnalyticsService,
+                            ObjectProvider<TransactionTemplate> orderTransactionTemplate, MeterRegistry meterRegistry) {
         this.orderRepository = orderRepository;
         this.mongoTemplate = mongoTemplate;
         this.orderStatusHolder = orderStatusHolder;
         this.mailService = mailService;
         this.orderMapper = orderMapper;
+        this.placementIntentService = placementIntentService;
+        this.orderNumberService = orderNumberService;
+        this.orderRollupService = orderRollupService;
+        this.productAnalyticsService = productAnalyticsService;
+        this.orderTransactionTemplate = orderTransactionTemplate;
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
     public OrderDto addOrder(OrderRequestDto orderDto) {
-        String currentDate = java.time.LocalDate.now().toString();
-        long dailyOrderCount = getOrderCountForDate(currentDate);
-        OrderDto order = orderMapper.mapOrderRequestToOrder(orderDto, dailyOrderCount);
+        TransactionTemplate transactionTemplate = orderTransactionTemplate.getIfAvailable();
+        // orders.placement{mode, outcome} compares transactional and compensating placement latency
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
+        try {
+            // Allocated outside the transaction: a rolled-back counter update could hand the same block out twice
+            String orderNumber = orderNumberService.nextOrderNumber();
+            OrderDto saved = transactionTemplate != null
+                    ? placeOrderInTransaction(transactionTemplate, orderDto, orderNumber)
+                    : placeOrder(orderDto, orderNumber);
+            outcome = "success";
+            // After commit: the day's rollup is a hot document that would make concurrent placements conflict
+            updateRollup(() -> orderRollupService.recordPlaced(saved), saved);
+            return saved;
+        } finally {
+            sample.stop(meterRegistry.timer("orders.placement",
+                    "mode", transactionTemplate != null ? "transactional" : "compensating",
+                    "outcome", outcome));
+        }
+    }
+
+    /**
+     * Runs the whole placement in one transaction, retrying it from scratch on TransientTransactionError
+     * (write conflicts with a concurrent order, primary step-down). Stock changes and the order commit together.
+     */
+    private OrderDto placeOrderInTransaction(TransactionTemplate transactionTemplate, OrderRequestDto orderDto, String orderNumber) {
+        String number = orderNumber;
+        for (int attempt = 1; ; attempt++) {
+            String attemptNumber = number;
+            try {
+                return transactionTemplate.execute(status -> placeOrder(orderDto, attemptNumber));
+            } catch (RuntimeException e) {
+                if (attempt <= transactionRetries && isOrderNumberCollision(e)) {
+                    // A duplicate key aborts the transaction, so the whole placement is retried with a new number
+                    log.warn("Order number {} already taken, retrying placement with a new number", attemptNumber);
+                    number = orderNumberService.nextOrderNumber();
+                    continue;
+                }
+                if (attempt > transactionRetries || !hasErrorLabel(e, MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                    throw e;
+                }
+                log.warn("Transient transaction error while placing order, retrying (attempt {})", attempt);
+                // Write conflicts come from concurrent orders on the same knives - retrying at once collides again
+                if (!RetryBackoff.pause(retryBackoffMs, retryBackoffMaxMs, attempt)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * The unique orderNumber index rejected the insert - legacy hashed numbers share the ORD-XXXXXXXX space
+     */
+    private static boolean isOrderNumberCollision(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof DuplicateKeyException && t.getMessage() != null && t.getMessage().contains("orderNumber")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasErrorLabel(Throwable error, String label) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof MongoException mongoException && mongoException.hasErrorLabel(label)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private OrderDto placeOrder(OrderRequestDto orderDto, String orderNumber) {
+        OrderDto order = orderMapper.mapOrderRequestToOrder(orderDto, orderNumber);
         order.setOrderStatus(orderStatusHolder.getOrderStatusByCode(1));
-        return orderRepository.save(order);
+        String placementIntentId = order.getPlacementIntentId();
+        OrderDto saved;
+        try {
+            saved = saveWithUniqueOrderNumber(order);
+        } catch (RuntimeException e) {
+            // The write may still have landed - resolve checks for the order before giving stock back
+            if (placementIntentId != null) {
+                finishPlacement(placementIntentId, true);
+            }
+            throw e;
+        }
+        if (placementIntentId != null) {
+            finishPlacement(placementIntentId, false);
+        }
+        return saved;
+    }
+
+    /**
+     * Insert the order, taking the next allocated number if its number is already used.
+     * Inside a transaction the duplicate key aborts the transaction, so placeOrderInTransaction retries instead.
+     */
+    private OrderDto saveWithUniqueOrderNumber(OrderDto order) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return orderRepository.save(order);
+            } catch (RuntimeException e) {
+                if (attempt >= ORDER_NUMBER_ATTEMPTS || !isOrderNumberCollision(e)
+                        || TransactionSynchronizationManager.isActualTransactionActive()) {
+                    throw e;
+                }
+                String taken = order.getOrderNumber();
+                order.setOrderNumber(orderNumberService.nextOrderNumber());
+                log.warn("Order number {} already taken, saving order as {}", taken, order.getOrderNumber());
+            }
+        }
+    }
+
+    /**
+     * Close the placement intent of an order; on failure the recovery worker finishes it later
+     */
+    private void finishPlacement(String placementIntentId, boolean saveFailed) {
+        try {
+            if (saveFailed) {
+                placementIntentService.resolve(placementIntentId);
+            } else {
+                placementIntentService.complete(placementIntentId);
+            }
+        } catch (Exception e) {
+            log.warn("Finishing order placement {} failed, left to the recovery worker: {}", placementIntentId, e.getMessage());
+        }
+    }
+
+    /**
+     * Rollups trail the orders collection; a failed update is repaired by the next rollup rebuild
+     */
+    private void updateRollup(Runnable update, OrderDto order) {
+        try {
+            update.run();
+        } catch (Exception e) {
+            log.warn("Order rollup update failed for order {}, rebuild rollups for {}: {}",
+                    order.getId(), order.getOrderDate(), e.getMessage());
+        }
+    }
+
+    /**
+     * Take an order cancelled or returned after the analytics job counted it back out of the product rankings
+     * (or count it again when it leaves those statuses); a failed update is repaired by a rankings rebuild
+     */
+    private void updateRankings(OrderDto order, Integer previousStatusCode) {
+        if (Objects.equals(previousStatusCode, order.getOrderStatus().getOrderStatusCode())) {
+            return;
+        }
+        try {
+            productAnalyticsService.recordStatusChange(order.getId());
+        } catch (Exception e) {
+            log.warn("Product ranking update failed for order {}, rebuild the rankings: {}", order.getId(), e.getMessage());
+        }
     }
 
     @Override
     public OrderDto updateOrder(String id, int orderStatus, String history, String adminNote) {
         try {
-            OrderDto existingOrder = orderRepository.findById(id).orElse(null);
             OrderStatusDto orderStatusDto = orderStatusHolder.getOrderStatusByCode(orderStatus);
+            Update update = new Update().set("orderStatus", orderStatusDto).set("history", history);
+            if (adminNote != null && !adminNote.isEmpty()) {
+                update.set("adminNote", adminNote);
+            }
+            // The document as it was before this update: its status is the one the rollups must move away from
+            OrderDto existingOrder = mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(id)), update,
+                    FindAndModifyOptions.options().returnNew(false), OrderDto.class);
             if (existingOrder != null) {
+                Integer previousStatusCode = existingOrder.getOrderStatus() != null
+                        ? existingOrder.getOrderStatus().getOrderStatusCode() : null;
                 if (adminNote != null && !adminNote.isEmpty()) {
                     existingOrder.setAdminNote(adminNote);
                 }
                 existingOrder.setOrderStatus(orderStatusDto);
                 existingOrder.setHistory(history);
-                OrderDto updatedOrder = orderRepository.save(existingOrder);
+                OrderDto updatedOrder = existingOrder;
+                updateRollup(() -> orderRollupService.recordStatusChange(updatedOrder, previousStatusCode), updatedOrder);
+                updateRankings(updatedOrder, previousStatusCode);
 
                 if (updatedOrder.getEmail() != null && !updatedOrder.getEmail().isEmpty()) {
                     try {
@@ -86,7 +301,11 @@ public class OrderServiceImpl implements OrderService {
 
     @Override
     public void deleteOrder(String id) {
+        OrderDto existingOrder = orderRepository.findById(id).orElse(null);
         orderRepository.deleteById(id);
+        if (existingOrder != null) {
+            updateRollup(() -> orderRollupService.recordDeleted(existingOrder), existingOrder);
+        }
     }
 
     @Override
@@ -118,6 +337,91 @@ public class OrderServiceImpl implements OrderService {
     public Page<OrderDto> searchOrders(String searchTerm, String minPrice, String maxPrice, String startDate, String endDate,
                                        int sortDirection, String status, String paymentId, String conversationId,
                                        String shippingCity, String adminNote, Pageable pageable) {
+        Criteria criteria = buildOrderSearchCriteria(searchTerm, minPrice, maxPrice, startDate, endDate,
+                status, paymentId, conversationId, shippingCity, adminNote, null);
+        Sort sort = sortDirection == 1 ?
+            Sort.by("orderDate").ascending().and(Sort.by("_id").ascending()) :
+            Sort.by("orderDate").descending().and(Sort.by("_id").descending());
+        Query query = new Query(criteria).with(pageable).with(sort);
+
+        List<OrderDto> orders = mongoTemplate.find(query, OrderDto.class);
+        long count = mongoTemplate.count(query.skip(-1).limit(-1), OrderDto.class);
+
+        return PageableExecutionUtils.getPage(orders, pageable, () -> count);
+    }
+
+    @Override
+    public Page<OrderDto> searchOrdersByText(String searchTerm, String minPrice, String maxPrice, String startDate, String endDate,
+                                             int sortDirection, String status, String paymentId, String conversationId,
+                                             String shippingCity, String adminNote, boolean sortByRelevance, Pageable pageable) {
+        // Every term must match (quoted phrases are ANDed by $text), ranked by the text index score
+        TextCriteria textCriteria = TextCriteria.forDefaultLanguage();
+        for (String term : searchTerm.trim().split("\\s+")) {
+            textCriteria.matchingPhrase(term);
+        }
+        TextQuery query = TextQuery.queryText(textCriteria);
+        query.addCriteria(buildOrderSearchCriteria(null, minPrice, maxPrice, startDate, endDate,
+                status, paymentId, conversationId, shippingCity, adminNote, null));
+
+        long count = mongoTemplate.count(query, OrderDto.class);
+
+        if (sortByRelevance) {
+            query.sortByScore().with(Sort.by("_id").descending());
+        } else {
+            query.with(sortDirection == 1 ?
+                Sort.by("orderDate").ascending().and(Sort.by("_id").ascending()) :
+                Sort.by("orderDate").descending().and(Sort.by("_id").descending()));
+        }
+        query.with(pageable);
+
+        List<OrderDto> orders = mongoTemplate.find(query, OrderDto.class);
+        return PageableExecutionUtils.getPage(orders, pageable, () -> count);
+    }
+
+    @Override
+    public PaginatedResponse<OrderDto> searchOrdersByCursor(String searchTerm, String minPrice, String maxPrice, String startDate,
+                                                            String endDate, int sortDirection, String status, String paymentId,
+                                                            String conversationId, String shippingCity, String adminNote,
+                                                            String cursor, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        PageCursor after = PageCursor.decode(cursor);
+        boolean ascending = sortDirection == 1;
+
+        // Seek past the last (orderDate, _id) of the previous page using the orderDate index
+        Criteria keysetCriteria = null;
+        if (after != null) {
+            Object id = ObjectId.isValid(after.id()) ? new ObjectId(after.id()) : after.id();
+            keysetCriteria = ascending ?
+                new Criteria().orOperator(Criteria.where("orderDate").gt(after.key()),
+                    Criteria.where("orderDate").is(after.key()).and("_id").gt(id)) :
+                new Criteria().orOperator(Criteria.where("orderDate").lt(after.key()),
+                    Criteria.where("orderDate").is(after.key()).and("_id").lt(id));
+        }
+
+        Criteria criteria = buildOrderSearchCriteria(searchTerm, minPrice, maxPrice, startDate, endDate,
+                status, paymentId, conversationId, shippingCity, adminNote, keysetCriteria);
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Query query = new Query(criteria)
+            .with(Sort.by(direction, "orderDate").and(Sort.by(direction, "_id")))
+            .limit(size + 1);
+
+        // One extra row tells us whether there is a next page - no count query
+        List<OrderDto> orders = mongoTemplate.find(query, OrderDto.class);
+        boolean hasNext = orders.size() > size;
+        List<OrderDto> content = hasNext ? orders.subList(0, size) : orders;
+        String nextCursor = null;
+        if (hasNext) {
+            OrderDto last = content.get(content.size() - 1);
+            nextCursor = new PageCursor(last.getOrderDate(), last.getId()).encode();
+        }
+        return PaginatedResponse.fromCursor(content, size, after == null, nextCursor);
+    }
+
+    private Criteria buildOrderSearchCriteria(String searchTerm, String minPrice, String maxPrice, String startDate, String endDate,
+                                              String status, String paymentId, String conversationId,
+                                              String shippingCity, String adminNote, Criteria extraCriteria) {
         List<Criteria> criteriaList = new ArrayList<>();
 
         if (searchTerm != null && !searchTerm.isBlank()) {
@@ -198,31 +502,32 @@ public class OrderServiceImpl implements OrderService {
             criteriaList.add(Criteria.where("adminNote").regex(adminNote.trim(), "i"));
         }
 
-        Criteria criteria;
-        if (criteriaList.isEmpty()) {
-            criteria = new Criteria();
-        } else {
-            criteria = new Criteria().andOperator(criteriaList.toArray(new Criteria[0]));
+        if (extraCriteria != null) {
+            criteriaList.add(extraCriteria);
         }
-        Sort sort = sortDirection == 1 ?
-            Sort.by("orderDate").ascending().and(Sort.by("_id").ascending()) :
-            Sort.by("orderDate").descending().and(Sort.by("_id").descending());
-        Query query = new Query(criteria).with(pageable).with(sort);
 
-        List<OrderDto> orders = mongoTemplate.find(query, OrderDto.class);
-        long count = mongoTemplate.count(query.skip(-1).limit(-1), OrderDto.class);
-
-        return PageableExecutionUtils.getPage(orders, pageable, () -> count);
+        if (criteriaList.isEmpty()) {
+            return new Criteria();
+        }
+        return new Criteria().andOperator(criteriaList.toArray(new Criteria[0]));
     }
 
     @Override
     public OrderDto updateOrderStatus(String id, int orderStatusCode) {
         OrderStatusDto orderStatus = new OrderStatusDto(0, "");
         orderStatus.setOrderStatusCode(orderStatusCode);
-        OrderDto existingOrder = orderRepository.findById(id).orElse(null);
+        // Previous status read atomically with the write, so concurrent status changes each move the rollups once
+        OrderDto existingOrder = mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(id)),
+                new Update().set("orderStatus", orderStatus), FindAndModifyOptions.options().returnNew(false),
+                OrderDto.class);
         if (existingOrder != null) {
+            Integer previousStatusCode = existingOrder.getOrderStatus() != null
+                    ? existingOrder.getOrderStatus().getOrderStatusCode() : null;
             existingOrder.setOrderStatus(orderStatus);
-            return orderRepository.save(existingOrder);
+            OrderDto updatedOrder = existingOrder;
+            updateRollup(() -> orderRollupService.recordStatusChange(updatedOrder, previousStatusCode), updatedOrder);
+            updateRankings(updatedOrder, previousStatusCode);
+            return updatedOrder;
         }
         return null;
     }
@@ -232,18 +537,6 @@ public class OrderServiceImpl implements OrderService {
         return orderStatusHolder.getAllOrderStatusAsDtoList();
     }
 
-    @Override
-    public long getOrderCountForDate(String date) {
-        try {
-            Criteria criteria = Criteria.where("orderDate").is(date);
-            Query query = new Query(criteria);
-            return mongoTemplate.count(query, OrderDto.class);
-        } catch (Exception e) {
-            log.error("Error counting orders for date {}: {}", date, e.getMessage());
-            return 0;
-        }
-    }
-
     @Override
     public OrderStatistics getOrderStatistics(String startDate, String endDate) {
         try {
@@ -251,90 +544,285 @@ public class OrderServiceImpl implements OrderService {
             stats.setPeriodStart(startDate);
             stats.setPeriodEnd(endDate);
 
-            // Build date range criteria
-            List<Criteria> criteriaList = new ArrayList<>();
-            if (startDate != null) {
-                criteriaList.add(Criteria.where("orderDate").gte(startDate));
-            }
-            if (endDate != null) {
-                criteriaList.add(Criteria.where("orderDate").lte(endDate));
+            // The previous period has the same length and ends the day before startDate
+            String previousStart = null;
+            String previousEnd = null;
+            if (startDate != null && endDate != null) {
+                try {
+                    LocalDate start = LocalDate.parse(startDate);
+                    long daysBetween = ChronoUnit.DAYS.between(start, LocalDate.parse(endDate)) + 1;
+                    stats.setDaysCovered(daysBetween);
+                    if (daysBetween > 0) {
+                        previousStart = start.minusDays(daysBetween).toString();
+                        previousEnd = start.minusDays(1).toString();
+                    }
+                } catch (Exception e) {
+                    log.warn("Error calculating days between {} and {}: {}", startDate, endDate, e.getMessage());
+                }
             }
 
-            Criteria criteria = criteriaList.isEmpty() ? new Criteria() :
-                new Criteria().andOperator(criteriaList.toArray(new Criteria[0]));
-            Query query = new Query(criteria);
+            if (useRollups) {
+                fillStatisticsFromRollups(stats, startDate, endDate, previousStart);
+            } else {
+                fillStatisticsFromOrders(stats, startDate, endDate, previousStart, previousEnd);
+            }
+            return stats;
+        } catch (Exception e) {
+            log.error("Error generating order statistics for period {} to {}: {}", startDate, endDate, e.getMessage());
+            return new OrderStatistics(); // Return empty statistics
+        }
+    }
 
-            // Get all orders in the period
-            List<OrderDto> orders = mongoTemplate.find(query, OrderDto.class);
+    /**
+     * Scans the orders of the period (and the previous one) with a single $facet aggregation;
+     * only grouped numbers leave the server
+     */
+    private void fillStatisticsFromOrders(OrderStatistics stats, String startDate, String endDate,
+                                          String previousStart, String previousEnd) {
+        Criteria period = dateRangeCriteria(startDate, endDate);
+        Criteria previousPeriod = previousStart != null ? dateRangeCriteria(previousStart, previousEnd) : null;
+
+        FacetOperation facets = Aggregation.facet(
+                        Aggregation.match(period),
+                        context -> new Document("$group", new Document("_id", null)
+                                .append("totalOrders", new Document("$sum", 1))
+                                .append("totalRevenue", new Document("$sum", ORDER_AMOUNT))
+                                .append("pendingOrders", countWhereStatus(1))
+                                .append("completedOrders", countWhereStatus(5))
+                                .append("cancelledOrders", countWhereStatus(6))
+                                .append("pendingRevenue", new Document("$sum", new Document("$cond",
+                                        List.of(statusIs(1), ORDER_AMOUNT, 0))))))
+                .as("summary")
+                .and(Aggregation.match(new Criteria().andOperator(period, Criteria.where("orderDate").ne(null))),
+                        context -> new Document("$group", new Document("_id", "$orderDate")
+                                .append("count", new Document("$sum", 1))
+                                .append("revenue", new Document("$sum", ORDER_AMOUNT))))
+                .as("byDate")
+                .and(Aggregation.match(new Criteria().andOperator(period, Criteria.where("orderStatus").ne(null))),
+                        Aggregation.sortByCount("orderStatus.orderStatusText"))
+                .as("byStatus")
+                .and(topProductStages(period))
+                .as("topProducts")
+                .and(Aggregation.match(previousPeriod != null ? previousPeriod : Criteria.where("_id").exists(false)),
+                        Aggregation.count().as("count"))
+                .as("previous");
+
+        Criteria scanned = previousPeriod != null ? dateRangeCriteria(previousStart, endDate) : period;
+        Aggregation aggregation = Aggregation.newAggregation(Aggregation.match(scanned), facets)
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+        Document result = mongoTemplate.aggregate(aggregation, OrderDto.class, Document.class).getUniqueMappedResult();
+        if (result == null) {
+            result = new Document();
+        }
 
-            // Calculate basic metrics
-            stats.setTotalOrders(orders.size());
+        List<Document> summaryDocs = result.getList("summary", Document.class, List.of());
+        Document summary = summaryDocs.isEmpty() ? new Document() : summaryDocs.get(0);
+        long totalOrders = longValue(summary.get("totalOrders"));
+        double totalRevenue = doubleValue(summary.get("totalRevenue"));
+        stats.setTotalOrders(totalOrders);
+        stats.setPendingOrders(longValue(summary.get("pendingOrders")));
+        stats.setCompletedOrders(longValue(summary.get("completedOrders")));
+        stats.setCancelledOrders(longValue(summary.get("cancelledOrders")));
+        stats.setTotalRevenue(totalRevenue);
+        stats.setPendingRevenue(doubleValue(summary.get("pendingRevenue")));
+        if (totalOrders > 0) {
+            stats.setAverageOrderValue(totalRevenue / totalOrders);
+        }
 
-            long pendingCount = orders.stream()
-                .filter(order -> order.getOrderStatus() != null && order.getOrderStatus().getOrderStatusCode() == 1)
-                .count();
-            stats.setPendingOrders(pendingCount);
+        Map<String, Long> ordersByDate = new TreeMap<>();
+        Map<String, Double> revenueByDate = new TreeMap<>();
+        for (Document day : result.getList("byDate", Document.class, List.of())) {
+            String date = String.valueOf(day.get("_id"));
+            ordersByDate.put(date, longValue(day.get("count")));
+            revenueByDate.put(date, doubleValue(day.get("revenue")));
+        }
+        stats.setOrdersByDate(ordersByDate);
+        stats.setRevenueByDate(revenueByDate);
 
-            long completedCount = orders.stream()
-                .filter(order -> order.getOrderStatus() != null && order.getOrderStatus().getOrderStatusCode() == 5)
-                .count();
-            stats.setCompletedOrders(completedCount);
+        Map<String, Long> ordersByStatus = new LinkedHashMap<>();
+        for (Document status : result.getList("byStatus", Document.class, List.of())) {
+            ordersByStatus.put(String.valueOf(status.get("_id")), longValue(status.get("count")));
+        }
+        stats.setOrdersByStatus(ordersByStatus);
+
+        List<OrderStatistics.ProductStatistics> topProducts = new ArrayList<>();
+        for (Document product : result.getList("topProducts", Document.class, List.of())) {
+            OrderStatistics.ProductStatistics productStats = new OrderStatistics.ProductStatistics();
+            productStats.setProductId(product.get("_id") != null ? product.get("_id").toString() : null);
+            productStats.setProductName(product.getString("name"));
+            productStats.setOrderCount(longValue(product.get("orderCount")));
+            productStats.setTotalQuantity(longValue(product.get("totalQuantity")));
+            productStats.setRevenue(doubleValue(product.get("revenue")));
+            topProducts.add(productStats);
+        }
+        stats.setTopProducts(topProducts);
 
-            // Calculate financial metrics
-            double totalRevenue = orders.stream()
-                .filter(order -> order.getTotalAmount() != null)
-                .mapToDouble(OrderDto::getTotalAmount)
-                .sum();
-            stats.setTotalRevenue(totalRevenue);
+        if (previousPeriod != null) {
+            List<Document> previousDocs = result.getList("previous", Document.class, List.of());
+            setOrdersLastPeriod(stats, previousDocs.isEmpty() ? 0 : longValue(previousDocs.get(0).get("count")));
+        }
+    }
 
-            if (orders.size() > 0) {
-                stats.setAverageOrderValue(totalRevenue / orders.size());
+    /**
+     * Sums the day rollups of the period (and the previous one) - O(days) small documents
+     */
+    private void fillStatisticsFromRollups(OrderStatistics stats, String startDate, String endDate, String previousStart) {
+        long totalOrders = 0;
+        double totalRevenue = 0;
+        long ordersLastPeriod = 0;
+        Map<String, Long> ordersByDate = new TreeMap<>();
+        Map<String, Double> revenueByDate = new TreeMap<>();
+        Map<Integer, OrderDailyRollup.StatusTotals> statuses = new TreeMap<>();
+        Map<String, OrderStatistics.ProductStatistics> products = new HashMap<>();
+
+        for (OrderDailyRollup day : orderRollupService.getRollups(previousStart != null ? previousStart : startDate, endDate)) {
+            if (startDate != null && day.getId().compareTo(startDate) < 0) {
+                ordersLastPeriod += day.getOrders();
+                continue;
             }
+            if (day.getOrders() <= 0) {
+                continue;
+            }
+            totalOrders += day.getOrders();
+            totalRevenue += day.getRevenue();
+            ordersByDate.put(day.getId(), day.getOrders());
+            revenueByDate.put(day.getId(), day.getRevenue());
+            if (day.getStatuses() != null) {
+                day.getStatuses().forEach((code, totals) -> {
+                    OrderDailyRollup.StatusTotals sum = statuses.computeIfAbsent(Integer.valueOf(code),
+                            c -> new OrderDailyRollup.StatusTotals());
+                    sum.setOrders(sum.getOrders() + totals.getOrders());
+                    sum.setRevenue(sum.getRevenue() + totals.getRevenue());
+                });
+            }
+            if (day.getProducts() != null) {
+                day.getProducts().forEach((knifeId, totals) -> {
+                    OrderStatistics.ProductStatistics product = products.computeIfAbsent(knifeId, id -> {
+                        OrderStatistics.ProductStatistics created = new OrderStatistics.ProductStatistics();
+                        created.setProductId(id);
+                        return created;
+                    });
+                    if (totals.getName() != null) {
+                        product.setProductName(totals.getName());
+                    }
+                    product.setOrderCount(product.getOrderCount() + totals.getOrders());
+                    product.setTotalQuantity(product.getTotalQuantity() + totals.getQuantity());
+                    product.setRevenue(product.getRevenue() + totals.getRevenue());
+                });
+            }
+        }
 
-            // Calculate daily breakdown
-            Map<String, Long> ordersByDate = orders.stream()
-                .filter(order -> order.getOrderDate() != null)
-                .collect(Collectors.groupingBy(
-                    OrderDto::getOrderDate,
-                    Collectors.counting()
-                ));
-            stats.setOrdersByDate(ordersByDate);
+        stats.setTotalOrders(totalOrders);
+        stats.setTotalRevenue(totalRevenue);
+        if (totalOrders > 0) {
+            stats.setAverageOrderValue(totalRevenue / totalOrders);
+        }
+        stats.setPendingOrders(statusOrders(statuses, 1));
+        stats.setCompletedOrders(statusOrders(statuses, 5));
+        stats.setCancelledOrders(statusOrders(statuses, 6));
+        OrderDailyRollup.StatusTotals pending = statuses.get(1);
+        stats.setPendingRevenue(pending != null ? pending.getRevenue() : 0);
+        stats.setOrdersByDate(ordersByDate);
+        stats.setRevenueByDate(revenueByDate);
+
+        Map<String, Long> ordersByStatus = new LinkedHashMap<>();
+        statuses.forEach((code, totals) -> {
+            if (totals.getOrders() > 0) {
+                ordersByStatus.merge(orderStatusHolder.getOrderStatusTextByCode(code), totals.getOrders(), Long::sum);
+            }
+        });
+        stats.setOrdersByStatus(ordersByStatus);
+
+        stats.setTopProducts(products.values().stream()
+                .filter(product -> product.getTotalQuantity() > 0)
+                .sorted(Comparator.comparingLong(OrderStatistics.ProductStatistics::getTotalQuantity)
+                        .thenComparingDouble(OrderStatistics.ProductStatistics::getRevenue)
+                        .reversed())
+                .limit(TOP_PRODUCTS_LIMIT)
+                .collect(Collectors.toList()));
+
+        if (previousStart != null) {
+            setOrdersLastPeriod(stats, ordersLastPeriod);
+        }
+    }
 
-            Map<String, Double> revenueByDate = orders.stream()
-                .filter(order -> order.getOrderDate() != null && order.getTotalAmount() != null)
-                .collect(Collectors.groupingBy(
-                    OrderDto::getOrderDate,
-                    Collectors.summingDouble(OrderDto::getTotalAmount)
-                ));
-            stats.setRevenueByDate(revenueByDate);
-
-            // Calculate status breakdown
-            Map<String, Long> ordersByStatus = orders.stream()
-                .filter(order -> order.getOrderStatus() != null)
-                .collect(Collectors.groupingBy(
-                    order -> order.getOrderStatus().getOrderStatusText(),
-                    Collectors.counting()
-                ));
-            stats.setOrdersByStatus(ordersByStatus);
+    private static long statusOrders(Map<Integer, OrderDailyRollup.StatusTotals> statuses, int statusCode) {
+        OrderDailyRollup.StatusTotals totals = statuses.get(statusCode);
+        return totals != null ? totals.getOrders() : 0;
+    }
 
-            // Calculate days covered
-            if (startDate != null && endDate != null) {
-                try {
-                    long daysBetween = ChronoUnit.DAYS.between(
-                        LocalDate.parse(startDate),
-                        LocalDate.parse(endDate)
-                    ) + 1;
-                    stats.setDaysCovered(daysBetween);
-                } catch (Exception e) {
-                    log.warn("Error calculating days between {} and {}: {}", startDate, endDate, e.getMessage());
-                }
-            }
+    /**
+     * growthRate is the change in order count against the previous period, in percent
+     */
+    private static void setOrdersLastPeriod(OrderStatistics stats, long ordersLastPeriod) {
+        stats.setOrdersLastPeriod(ordersLastPeriod);
+        if (ordersLastPeriod > 0) {
+            stats.setGrowthRate(Math.round((stats.getTotalOrders() - ordersLastPeriod) * 10000.0 / ordersLastPeriod) / 100.0);
+        }
+    }
 
-            return stats;
-        } catch (Exception e) {
-            log.error("Error generating order statistics for period {} to {}: {}", startDate, endDate, e.getMessage());
-            return new OrderStatistics(); // Return empty statistics
+    private static Criteria dateRangeCriteria(String startDate, String endDate) {
+        List<Criteria> criteriaList = new ArrayList<>();
+        if (startDate != null) {
+            criteriaList.add(Criteria.where("orderDate").gte(startDate));
         }
+        if (endDate != null) {
+            criteriaList.add(Criteria.where("orderDate").lte(endDate));
+        }
+        return criteriaList.isEmpty() ? new Criteria() :
+            new Criteria().andOperator(criteriaList.toArray(new Criteria[0]));
+    }
+
+    private static Document statusIs(int statusCode) {
+        return new Document("$eq", List.of("$orderStatus.orderStatusCode", statusCode));
+    }
+
+    private static Document countWhereStatus(int statusCode) {
+        return new Document("$sum", new Document("$cond", List.of(statusIs(statusCode), 1, 0)));
+    }
+
+    /**
+     * Best-selling knives of the period by units. A knife ordered in several sizes counts once per order;
+     * revenue uses the price the customer paid (see KnifePricing.effectivePrice).
+     */
+    private static AggregationOperation[] topProductStages(Criteria period) {
+        Document quantity = new Document("$ifNull", List.of("$knives.quantity", 1));
+        Document unitPrice = new Document("$cond", List.of(
+                new Document("$and", List.of(
+                        new Document("$gt", List.of("$knives.discountPrice", 0)),
+                        new Document("$lt", List.of("$knives.discountPrice", "$knives.price")))),
+                "$knives.discountPrice",
+                "$knives.price"));
+        return new AggregationOperation[]{
+                Aggregation.match(period),
+                Aggregation.project("knives"),
+                Aggregation.unwind("knives"),
+                context -> new Document("$group", new Document("_id",
+                        new Document("order", "$_id").append("knife", "$knives._id"))
+                        .append("name", new Document("$first", "$knives.name"))
+                        .append("quantity", new Document("$sum", quantity))
+                        .append("revenue", new Document("$sum", new Document("$multiply", List.of(unitPrice, quantity))))),
+                context -> new Document("$group", new Document("_id", "$_id.knife")
+                        .append("name", new Document("$first", "$name"))
+                        .append("orderCount", new Document("$sum", 1))
+                        .append("totalQuantity", new Document("$sum", "$quantity"))
+                        .append("revenue", new Document("$sum", "$revenue"))),
+                context -> new Document("$sort", new Document("totalQuantity", -1).append("revenue", -1)),
+                Aggregation.limit(TOP_PRODUCTS_LIMIT)
+        };
+    }
+
+    private static long longValue(Object value) {
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+
+    private static double doubleValue(Object value) {
+        return value instanceof Number number ? number.doubleValue() : 0;
+    }
+
+    @Override
+    public Map<String, Object> rebuildOrderRollups(String startDate, String endDate) {
+        return orderRollupService.rebuild(startDate, endDate);
     }
 
     @Override
@@ -404,10 +892,15 @@ public class OrderServiceImpl implements OrderService {
                 }
             }
 
+            // Legacy hashed numbers can collide; the oldest order keeps a duplicated number,
+            // the others get fresh ones so the unique orderNumber index can be built
+            int renumberedCount = renumberDuplicateOrderNumbers(errors);
+
             result.put("success", true);
             result.put("message", "Migration completed");
             result.put("totalProcessed", processedCount);
             result.put("totalUpdated", updatedCount);
+            result.put("duplicatesRenumbered", renumberedCount);
             result.put("errorCount", errors.size());
 
             if (!errors.isEmpty()) {
@@ -429,6 +922,36 @@ public class OrderServiceImpl implements OrderService {
         return result;
     }
 
+    private int renumberDuplicateOrderNumbers(List<String> errors) {
+        Aggregation duplicates = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("orderNumber").gt("")),
+                context -> new Document("$group", new Document("_id", "$orderNumber")
+                        .append("ids", new Document("$push", "$_id"))
+                        .append("count", new Document("$sum", 1))),
+                Aggregation.match(Criteria.where("count").gt(1)))
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        int renumbered = 0;
+        for (Document duplicate : mongoTemplate.aggregate(duplicates, OrderDto.class, Document.class)) {
+            List<Object> ids = new ArrayList<>(duplicate.getList("ids", Object.class));
+            ids.sort(Comparator.comparing(Object::toString));
+            for (Object id : ids.subList(1, ids.size())) {
+                String orderNumber = orderNumberService.nextOrderNumber();
+                try {
+                    mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(id)),
+                            new Update().set("orderNumber", orderNumber), OrderDto.class);
+                    renumbered++;
+                    log.info("Renumbered order {} from duplicate {} to {}", id, duplicate.get("_id"), orderNumber);
+                } catch (Exception e) {
+                    String errorMsg = String.format("Failed to renumber order %s: %s", id, e.getMessage());
+                    errors.add(errorMsg);
+                    log.error(errorMsg, e);
+                }
+            }
+        }
+        return renumbered;
+    }
+
     private String generateUniqueOrderNumber(OrderDto order, int index, Set<String> existingNumbers) {
         // Extract year from order date
         String year = "2024"; // Default year
@@ -0,0 +1,312 @@
+package com.kesik.bladecommerce.service.impl;
+
+import com.kesik.bladecommerce.dto.knife.BestSeller;
+import com.kesik.bladecommerce.dto.knife.BoughtTogether;
+import com.kesik.bladecommerce.dto.order.KnifeOrderDto;
+import com.kesik.bladecommerce.dto.order.OrderDto;
+import com.kesik.bladecommerce.entity.AnalyticsCheckpoint;
+import com.kesik.bladecommerce.entity.ProductRanking;
+import com.kesik.bladecommerce.service.ProductAnalyticsService;
+import com.kesik.bladecommerce.util.KnifePricing;
+import com.kesik.bladecommerce.util.ObjectIdUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+@Slf4j
+public class ProductAnalyticsServiceImpl implements ProductAnalyticsService {
+    private static final String CHECKPOINT_ID = "productRankings";
+    private static final int MAX_LIMIT = 50;
+    // Cancelled and returned orders (see OrderStatusHolder) are not sales
+    private static final List<Integer> EXCLUDED_STATUS_CODES = List.of(6, 7);
+    // Whether the order's current status counts as a sale, evaluated by the server in the same update that records it
+    private static final Document COUNTED_STATUS = new Document("$not", List.of(new Document("$in", List.of(
+            new Document("$ifNull", List.of("$orderStatus.orderStatusCode", 0)), EXCLUDED_STATUS_CODES))));
+
+    private final MongoTemplate mongoTemplate;
+
+    // Orders younger than this may still be committing with a smaller _id than one already read
+    @Value("${analytics.products.grace-seconds:120}")
+    private long graceSeconds;
+
+    @Value("${analytics.products.batch-size:5000}")
+    private int batchSize;
+
+    public ProductAnalyticsServiceImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.products.refresh-interval-ms:300000}")
+    public void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warn("Product analytics refresh failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized long refresh() {
+        ObjectId upperBound = ObjectIdUtil.floorOf(Instant.now().minusSeconds(graceSeconds));
+        long processed = 0;
+        while (true) {
+            int batch = processBatch(upperBound);
+            processed += Math.max(batch, 0);
+            if (batch < batchSize) {
+                break;
+            }
+        }
+        if (processed > 0) {
+            log.info("Product analytics processed {} new orders", processed);
+        }
+        return processed;
+    }
+
+    @Override
+    public void recordStatusChange(String orderId) {
+        // Flips countedInRankings only if it disagrees with the current status, so concurrent status changes
+        // and the fold each move an order in or out of the rankings exactly once
+        Query query = new Query(Criteria.where("_id").is(orderId).and("countedInRankings").exists(true)
+                .andOperator(Criteria.expr((AggregationExpression) context ->
+                        new Document("$ne", List.of("$countedInRankings", COUNTED_STATUS)))));
+        OrderDto flipped = claim(query);
+        if (flipped == null) {
+            return;
+        }
+        Map<String, ProductRanking> totals = new HashMap<>();
+        addOrder(totals, flipped);
+        applyTotals(totals, Boolean.TRUE.equals(flipped.getCountedInRankings()) ? 1 : -1);
+    }
+
+    @Override
+    public synchronized long rebuild() {
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(CHECKPOINT_ID)), AnalyticsCheckpoint.class);
+        mongoTemplate.remove(new Query(), ProductRanking.class);
+        mongoTemplate.updateMulti(new Query(Criteria.where("countedInRankings").exists(true)),
+                new Update().unset("countedInRankings"), OrderDto.class);
+        return refresh();
+    }
+
+    /**
+     * Read the next batch of orders after the checkpoint, advance the checkpoint, then apply the batch.
+     * The checkpoint moves first with a compare-and-set, so when two instances race only one applies a batch;
+     * a crash between the two steps loses that batch instead of counting it twice.
+     * Each order is counted by the status it has when countedInRankings is set on it, see recordStatusChange.
+     *
+     * @return Orders in the batch, or -1 if another instance took it
+     */
+    private int processBatch(ObjectId upperBound) {
+        AnalyticsCheckpoint checkpoint = mongoTemplate.findById(CHECKPOINT_ID, AnalyticsCheckpoint.class);
+        String lastOrderId = checkpoint != null ? checkpoint.getLastOrderId() : null;
+
+        Criteria criteria = lastOrderId != null
+                ? Criteria.where("_id").gt(new ObjectId(lastOrderId)).lt(upperBound)
+                : Criteria.where("_id").lt(upperBound);
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "_id")).limit(batchSize);
+        query.fields().include("_id");
+
+        List<String> orderIds = new ArrayList<>();
+        try (Stream<OrderDto> stream = mongoTemplate.stream(query, OrderDto.class)) {
+            stream.forEach(order -> orderIds.add(order.getId()));
+        }
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+
+        if (!advanceCheckpoint(lastOrderId, orderIds.get(orderIds.size() - 1), orderIds.size())) {
+            log.debug("Product analytics batch after {} was taken by another instance", lastOrderId);
+            return -1;
+        }
+        Map<String, ProductRanking> totals = new HashMap<>();
+        for (String orderId : orderIds) {
+            OrderDto order = claim(new Query(Criteria.where("_id").is(orderId).and("countedInRankings").exists(false)));
+            if (order != null && Boolean.TRUE.equals(order.getCountedInRankings())) {
+                addOrder(totals, order);
+            }
+        }
+        applyTotals(totals, 1);
+        return orderIds.size();
+    }
+
+    /**
+     * Set countedInRankings from the order's current status on a matching order
+     *
+     * @return The order's lines and new countedInRankings, or null if nothing matched
+     */
+    private OrderDto claim(Query query) {
+        query.fields().include("countedInRankings", "knives._id", "knives.name", "knives.slug",
+                "knives.price", "knives.discountPrice", "knives.quantity");
+        AggregationUpdate update = AggregationUpdate.from(List.<AggregationOperation>of(
+                context -> new Document("$set", new Document("countedInRankings", COUNTED_STATUS))));
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), OrderDto.class);
+    }
+
+    private boolean advanceCheckpoint(String expectedLastOrderId, String newLastOrderId, int orders) {
+        try {
+            // Upsert inserts the checkpoint on the first run and fails with a duplicate key if another instance moved it
+            mongoTemplate.upsert(
+                    new Query(Criteria.where("_id").is(CHECKPOINT_ID).and("lastOrderId").is(expectedLastOrderId)),
+                    new Update()
+                            .set("lastOrderId", newLastOrderId)
+                            .inc("processedOrders", orders)
+                            .set("updatedAt", Instant.now()),
+                    AnalyticsCheckpoint.class);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Add one order's lines to the batch totals; lines of the same knife (different sizes) count as one order
+     */
+    private static void addOrder(Map<String, ProductRanking> totals, OrderDto order) {
+        if (order.getKnives() == null) {
+            return;
+        }
+        Map<String, ProductRanking> lines = new LinkedHashMap<>();
+        for (KnifeOrderDto knife : order.getKnives()) {
+            if (knife == null || knife.getId() == null) {
+                continue;
+            }
+            // Orders placed before line quantities were recorded hold one unit per line
+            int quantity = knife.getQuantity() > 0 ? knife.getQuantity() : 1;
+            ProductRanking line = lines.computeIfAbsent(knife.getId(), id -> ProductRanking.builder()
+                    .id(id)
+                    .orders(1)
+                    .boughtWith(new HashMap<>())
+                    .build());
+            line.setName(knife.getName());
+            line.setSlug(knife.getSlug());
+            line.setQuantity(line.getQuantity() + quantity);
+            line.setRevenue(line.getRevenue() + KnifePricing.effectivePrice(knife.getPrice(), knife.getDiscountPrice()) * quantity);
+        }
+
+        for (ProductRanking line : lines.values()) {
+            ProductRanking total = totals.computeIfAbsent(line.getId(), id -> ProductRanking.builder()
+                    .id(id)
+                    .boughtWith(new HashMap<>())
+                    .build());
+            total.setName(line.getName());
+            total.setSlug(line.getSlug());
+            total.setOrders(total.getOrders() + 1);
+            total.setQuantity(total.getQuantity() + line.getQuantity());
+            total.setRevenue(total.getRevenue() + line.getRevenue());
+            for (String other : lines.keySet()) {
+                if (!other.equals(line.getId())) {
+                    total.getBoughtWith().merge(other, 1L, Long::sum);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param sign 1 to add the totals, -1 to take them back out
+     */
+    private void applyTotals(Map<String, ProductRanking> totals, int sign) {
+        if (totals.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProductRanking.class);
+        for (ProductRanking total : totals.values()) {
+            Update update = new Update()
+                    .inc("orders", sign * total.getOrders())
+                    .inc("quantity", sign * total.getQuantity())
+                    .inc("revenue", sign * total.getRevenue())
+                    .set("updatedAt", now);
+            if (sign > 0 && total.getName() != null) {
+                update.set("name", total.getName());
+            }
+            if (sign > 0 && total.getSlug() != null) {
+                update.set("slug", total.getSlug());
+            }
+            total.getBoughtWith().forEach((other, count) -> update.inc("boughtWith." + other, sign * count));
+            bulk.upsert(new Query(Criteria.where("_id").is(total.getId())), update);
+        }
+        bulk.execute();
+    }
+
+    @Override
+    public List<BestSeller> getBestSellers(int limit) {
+        Query query = new Query()
+                .with(Sort.by(Sort.Direction.DESC, "quantity"))
+                .limit(clampLimit(limit));
+        query.fields().exclude("boughtWith");
+        return mongoTemplate.find(query, ProductRanking.class).stream()
+                .map(ranking -> new BestSeller(ranking.getId(), ranking.getName(), ranking.getSlug(),
+                        ranking.getOrders(), ranking.getQuantity(), ranking.getRevenue()))
+                .toList();
+    }
+
+    @Override
+    public List<BoughtTogether> getBoughtTogether(String knifeId, int limit) {
+        ProductRanking ranking = mongoTemplate.findById(knifeId, ProductRanking.class);
+        if (ranking == null || ranking.getBoughtWith() == null || ranking.getBoughtWith().isEmpty()) {
+            return List.of();
+        }
+        List<Map.Entry<String, Long>> partners = ranking.getBoughtWith().entrySet().stream()
+                .filter(entry -> entry.getValue() > 0)
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(clampLimit(limit))
+                .toList();
+
+        Query query = new Query(Criteria.where("_id").in(partners.stream().map(Map.Entry::getKey).toList()));
+        query.fields().include("name", "slug");
+        Map<String, ProductRanking> partnerRankings = mongoTemplate.find(query, ProductRanking.class).stream()
+                .collect(Collectors.toMap(ProductRanking::getId, Function.identity()));
+
+        return partners.stream()
+                .map(entry -> {
+                    ProductRanking partner = partnerRankings.get(entry.getKey());
+                    return new BoughtTogether(entry.getKey(),
+                            partner != null ? partner.getName() : null,
+                            partner != null ? partner.getSlug() : null,
+                            entry.getValue());
+                })
+                .toList();
+    }
+
+    @Override
+    public Map<String, Long> getUnitsSold(Collection<String> knifeIds) {
+        if (knifeIds == null || knifeIds.isEmpty()) {
+            return Map.of();
+        }
+        Query query = new Query(Criteria.where("_id").in(knifeIds));
+        query.fields().include("quantity");
+        return mongoTemplate.find(query, ProductRanking.class).stream()
+                .collect(Collectors.toMap(ProductRanking::getId, ProductRanking::getQuantity));
+    }
+
+    private static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+}
@@ -0,0 +1,323 @@
+package com.kesik.bladecommerce.service.impl;
+
+import com.kesik.bladecommerce.dto.knife.KnifeDto;
+import com.kesik.bladecommerce.dto.stock.StockLedgerPosition;
+import com.kesik.bladecommerce.dto.stock.StockLedgerResponse;
+import com.kesik.bladecommerce.entity.StockMovement;
+import com.kesik.bladecommerce.entity.StockSnapshot;
+import com.kesik.bladecommerce.event.StockChangedEvent;
+import com.kesik.bladecommerce.service.StockLedgerService;
+import com.kesik.bladecommerce.service.StockShardService;
+import com.kesik.bladecommerce.util.ObjectIdUtil;
+import com.mongodb.bulk.BulkWriteError;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class StockLedgerServiceImpl implements StockLedgerService {
+
+    /**
+     * Movements kept in memory while MongoDB is unreachable; beyond this new movements are dropped (and logged)
+     */
+    private static final int MAX_BUFFERED_MOVEMENTS = 100_000;
+    private static final int MAX_MOVEMENTS_PER_INSERT = 1000;
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final StockShardService stockShardService;
+
+    private final ConcurrentLinkedDeque<StockMovement> buffer = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger bufferedCount = new AtomicInteger();
+
+    // Knives whose movements were dropped on a full buffer - their ledger is re-seeded once the buffer drains
+    private final Set<String> droppedKnives = ConcurrentHashMap.newKeySet();
+
+    // Must exceed the flush interval (plus clock skew between instances) so no movement lands behind a snapshot
+    @Value("${stock.ledger.compaction-grace-seconds:60}")
+    private long compactionGraceSeconds;
+
+    public StockLedgerServiceImpl(MongoTemplate mongoTemplate, StockShardService stockShardService) {
+        this.mongoTemplate = mongoTemplate;
+        this.stockShardService = stockShardService;
+    }
+
+    /**
+     * Buffer a movement. Changes made inside a transaction are only recorded once it commits.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(StockChangedEvent event) {
+        if (bufferedCount.incrementAndGet() > MAX_BUFFERED_MOVEMENTS) {
+            bufferedCount.decrementAndGet();
+            droppedKnives.add(event.knifeId());
+            log.error("Stock ledger buffer is full, dropping movement {} ({}) for knife {}",
+                    event.delta(), event.cause(), event.knifeId());
+            return;
+        }
+        buffer.add(StockMovement.builder()
+                .knifeId(event.knifeId())
+                .delta(event.delta())
+                .cause(event.cause())
+                .reference(event.reference())
+                .occurredAt(event.occurredAt())
+                .build());
+    }
+
+    @Override
+    public synchronized int flush() {
+        int written = 0;
+        List<StockMovement> batch = new ArrayList<>(MAX_MOVEMENTS_PER_INSERT);
+        StockMovement movement;
+        while (true) {
+            batch.clear();
+            while (batch.size() < MAX_MOVEMENTS_PER_INSERT && (movement = buffer.poll()) != null) {
+                batch.add(movement);
+            }
+            if (batch.isEmpty()) {
+                return written;
+            }
+            try {
+                insertBatch(batch);
+            } catch (RuntimeException e) {
+                // Keep the batch (with its ids) at the head of the buffer for the next flush
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    buffer.addFirst(batch.get(i));
+                }
+                throw e;
+            }
+            bufferedCount.addAndGet(-batch.size());
+            written += batch.size();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stock.ledger.flush-interval-ms:1000}")
+    public void scheduledFlush() {
+        try {
+            flush();
+            if (!droppedKnives.isEmpty()) {
+                List<String> knifeIds = new ArrayList<>(droppedKnives);
+                droppedKnives.removeAll(knifeIds);
+                int rebaselined = rebaseline(knifeIds);
+                log.warn("Re-seeded the stock ledger of {} knives after dropped movements", rebaselined);
+            }
+        } catch (Exception e) {
+            log.warn("Stock ledger flush failed, {} movements buffered: {}", bufferedCount.get(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        scheduledFlush();
+    }
+
+    /**
+     * Insert a batch, tolerating entries a previously failed attempt already wrote.
+     * Ids are assigned on the first attempt, so a retried entry shows up as a duplicate key instead of twice.
+     */
+    private void insertBatch(List<StockMovement> batch) {
+        for (StockMovement movement : batch) {
+            if (movement.getId() == null) {
+                movement.setId(new ObjectId().toHexString());
+            }
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StockMovement.class);
+        bulk.insert(batch);
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY_ERROR) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized int compact() {
+        // Seeding subtracts the tail from live stock, which already includes this instance's buffered movements
+        flush();
+        // Exclusive upper bound: the smallest ObjectId of the second that is grace seconds ago
+        ObjectId watermark = ObjectIdUtil.floorOf(Instant.now().minusSeconds(compactionGraceSeconds));
+        String watermarkHex = watermark.toHexString();
+        Instant now = Instant.now();
+        int compacted = 0;
+
+        // Knives compacted in the same run share a bound; group them so each group needs one aggregation
+        List<StockSnapshot> snapshots = mongoTemplate.findAll(StockSnapshot.class);
+        Map<String, List<String>> knivesByBound = snapshots.stream()
+                .filter(snapshot -> snapshot.getCompactedBefore().compareTo(watermarkHex) < 0)
+                .collect(Collectors.groupingBy(StockSnapshot::getCompactedBefore,
+                        Collectors.mapping(StockSnapshot::getId, Collectors.toList())));
+        for (Map.Entry<String, List<String>> group : knivesByBound.entrySet()) {
+            Map<String, LedgerSums> sums = sumMovements(Criteria.where("knifeId").in(group.getValue())
+                    .and("_id").gte(new ObjectId(group.getKey())).lt(watermark), watermark);
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StockSnapshot.class);
+            for (String knifeId : group.getValue()) {
+                LedgerSums knifeSums = sums.getOrDefault(knifeId, LedgerSums.EMPTY);
+                // The bound in the filter makes a concurrent or repeated run a no-op
+                bulk.updateOne(new Query(Criteria.where("_id").is(knifeId).and("compactedBefore").is(group.getKey())),
+                        new Update().inc("quantity", knifeSums.delta())
+                                .inc("consumed", knifeSums.consumed())
+                                .set("compactedBefore", watermarkHex)
+                                .set("compactedAt", now));
+            }
+            compacted += bulk.execute().getModifiedCount();
+        }
+
+        compacted += seedSnapshots(Criteria.where("_id").nin(snapshots.stream().map(StockSnapshot::getId).toList()),
+                watermark, now);
+        if (compacted > 0) {
+            log.info("Compacted stock ledger of {} knives up to {}", compacted, watermark.getDate().toInstant());
+        }
+        return compacted;
+    }
+
+    @Scheduled(fixedDelayString = "${stock.ledger.compaction-interval-ms:3600000}")
+    public void scheduledCompact() {
+        try {
+            compact();
+        } catch (Exception e) {
+            log.warn("Stock ledger compaction failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized int rebaseline(Collection<String> knifeIds) {
+        if (knifeIds.isEmpty()) {
+            return 0;
+        }
+        flush();
+        mongoTemplate.remove(new Query(Criteria.where("_id").in(knifeIds)), StockSnapshot.class);
+        return seedSnapshots(Criteria.where("_id").in(knifeIds),
+                ObjectIdUtil.floorOf(Instant.now().minusSeconds(compactionGraceSeconds)), Instant.now());
+    }
+
+    /**
+     * First snapshot of knives the ledger has not seen compacted yet: the level at the watermark is the
+     * current stock minus the movements after it
+     */
+    private int seedSnapshots(Criteria knifeCriteria, ObjectId watermark, Instant now) {
+        Query knivesQuery = new Query(knifeCriteria);
+        knivesQuery.fields().include("stockQuantity").include("stockStriped");
+        List<KnifeDto> knives = mongoTemplate.find(knivesQuery, KnifeDto.class);
+        if (knives.isEmpty()) {
+            return 0;
+        }
+
+        List<String> knifeIds = knives.stream().map(KnifeDto::getId).toList();
+        List<String> stripedIds = knives.stream().filter(KnifeDto::isStockStriped).map(KnifeDto::getId).toList();
+        Map<String, Integer> shardTotals = stripedIds.isEmpty() ? Collections.emptyMap() : stockShardService.getTotals(stripedIds);
+        Map<String, LedgerSums> tail = sumMovements(Criteria.where("knifeId").in(knifeIds).and("_id").gte(watermark), watermark);
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StockSnapshot.class);
+        for (KnifeDto knife : knives) {
+            int current = knife.isStockStriped()
+                    ? shardTotals.getOrDefault(knife.getId(), 0)
+                    : knife.getStockQuantity();
+            // Insert only - another instance may have seeded the same knife meanwhile
+            bulk.upsert(new Query(Criteria.where("_id").is(knife.getId())),
+                    new Update().setOnInsert("quantity", current - tail.getOrDefault(knife.getId(), LedgerSums.EMPTY).delta())
+                            .setOnInsert("consumed", 0)
+                            .setOnInsert("ledgerStartedAt", watermark.getDate().toInstant())
+                            .setOnInsert("compactedBefore", watermark.toHexString())
+                            .setOnInsert("compactedAt", now));
+        }
+        return bulk.execute().getUpserts().size();
+    }
+
+    @Override
+    public StockLedgerResponse getLedger(String knifeId, int limit) {
+        StockSnapshot snapshot = mongoTemplate.findById(knifeId, StockSnapshot.class);
+        Criteria tailCriteria = Criteria.where("knifeId").is(knifeId);
+        if (snapshot != null) {
+            tailCriteria = tailCriteria.and("_id").gte(new ObjectId(snapshot.getCompactedBefore()));
+        }
+        int tailDelta = sumMovements(tailCriteria, null).getOrDefault(knifeId, LedgerSums.EMPTY).delta();
+        int snapshotQuantity = snapshot != null ? snapshot.getQuantity() : 0;
+
+        Query recentQuery = new Query(Criteria.where("knifeId").is(knifeId))
+                .with(Sort.by(Sort.Direction.DESC, "_id"))
+                .limit(Math.max(1, Math.min(limit, 500)));
+        List<StockMovement> recent = mongoTemplate.find(recentQuery, StockMovement.class);
+
+        return new StockLedgerResponse(knifeId, snapshotQuantity,
+                snapshot != null ? snapshot.getCompactedBefore() : null,
+                tailDelta, snapshotQuantity + tailDelta, recent);
+    }
+
+    @Override
+    public Map<String, StockLedgerPosition> getPositions(Instant consumedBefore) {
+        ObjectId consumedBound = ObjectIdUtil.floorOf(consumedBefore);
+        List<StockSnapshot> snapshots = mongoTemplate.findAll(StockSnapshot.class);
+        Map<String, List<StockSnapshot>> snapshotsByBound = snapshots.stream()
+                .collect(Collectors.groupingBy(StockSnapshot::getCompactedBefore));
+
+        Map<String, StockLedgerPosition> positions = new HashMap<>();
+        for (Map.Entry<String, List<StockSnapshot>> group : snapshotsByBound.entrySet()) {
+            List<String> knifeIds = group.getValue().stream().map(StockSnapshot::getId).toList();
+            Map<String, LedgerSums> tails = sumMovements(Criteria.where("knifeId").in(knifeIds)
+                    .and("_id").gte(new ObjectId(group.getKey())), consumedBound);
+            for (StockSnapshot snapshot : group.getValue()) {
+                LedgerSums tail = tails.getOrDefault(snapshot.getId(), LedgerSums.EMPTY);
+                positions.put(snapshot.getId(), new StockLedgerPosition(snapshot.getId(), snapshot.getLedgerStartedAt(),
+                        snapshot.getQuantity() + tail.delta(), snapshot.getConsumed() + tail.consumed()));
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Net delta per knife, plus the units consumed (negated non-admin deltas) by movements older than consumedBefore
+     */
+    private Map<String, LedgerSums> sumMovements(Criteria criteria, ObjectId consumedBefore) {
+        Document consumedTerm = new Document("$cond", List.of(
+                new Document("$and", List.of(
+                        new Document("$lt", List.of("$_id", consumedBefore != null ? consumedBefore : new ObjectId())),
+                        new Document("$ne", List.of("$cause", StockMovement.Cause.ADMIN_EDIT.name())))),
+                new Document("$multiply", List.of("$delta", -1)),
+                0));
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria),
+                context -> new Document("$group", new Document("_id", "$knifeId")
+                        .append("delta", new Document("$sum", "$delta"))
+                        .append("consumed", new Document("$sum", consumedTerm))));
+        Map<String, LedgerSums> sums = new HashMap<>();
+        for (Document result : mongoTemplate.aggregate(aggregation, StockMovement.class, Document.class)) {
+            sums.put(result.getString("_id"), new LedgerSums(((Number) result.get("delta")).intValue(),
+                    ((Number) result.get("consumed")).intValue()));
+        }
+        return sums;
+    }
+
+    private record LedgerSums(int delta, int consumed) {
+        static final LedgerSums EMPTY = new LedgerSums(0, 0);
+    }
+}
@@ -0,0 +1,283 @@
+package com.kesik.bladecommerce.service.impl;
+
+import com.kesik.bladecommerce.dto.knife.KnifeDto;
+import com.kesik.bladecommerce.dto.order.OrderDto;
+import com.kesik.bladecommerce.dto.stock.StockLedgerPosition;
+import com.kesik.bladecommerce.entity.OrderPlacementIntent;
+import com.kesik.bladecommerce.entity.StockDriftReport;
+import com.kesik.bladecommerce.entity.StockMovement;
+import com.kesik.bladecommerce.entity.StockReservation;
+import com.kesik.bladecommerce.service.KnifeService;
+import com.kesik.bladecommerce.service.StockLedgerService;
+import com.kesik.bladecommerce.service.StockReconciliationService;
+import com.kesik.bladecommerce.service.StockShardService;
+import com.kesik.bladecommerce.util.ObjectIdUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+@Slf4j
+public class StockReconciliationServiceImpl implements StockReconciliationService {
+
+    private final MongoTemplate mongoTemplate;
+    private final StockLedgerService stockLedgerService;
+    private final StockShardService stockShardService;
+    private final KnifeService knifeService;
+
+    // Orders and movements younger than this are still settling (in-flight placements, unflushed ledger buffers)
+    @Value("${stock.reconciliation.grace-seconds:600}")
+    private long graceSeconds;
+
+    @Value("${stock.reconciliation.auto-correct:false}")
+    private boolean autoCorrectEnabled;
+
+    @Value("${stock.reconciliation.rebaseline-live-drift:true}")
+    private boolean rebaselineLiveDrift;
+
+    @Value("${stock.reconciliation.retention-days:30}")
+    private long retentionDays;
+
+    public StockReconciliationServiceImpl(MongoTemplate mongoTemplate, StockLedgerService stockLedgerService,
+                                          StockShardService stockShardService, KnifeService knifeService) {
+        this.mongoTemplate = mongoTemplate;
+        this.stockLedgerService = stockLedgerService;
+        this.stockShardService = stockShardService;
+        this.knifeService = knifeService;
+    }
+
+    @Override
+    public StockDriftReport reconcile(boolean autoCorrect) {
+        stockLedgerService.flush();
+        Instant now = Instant.now();
+        Instant cutoff = now.minusSeconds(graceSeconds);
+
+        Map<String, StockLedgerPosition> positions = stockLedgerService.getPositions(cutoff);
+        Map<String, Integer> ordered = sumOrderedUnits(positions.values(), cutoff);
+        Map<String, Integer> held = sumHeldUnits(positions, cutoff);
+        Map<String, Integer> live = getLiveQuantities(positions.keySet());
+        Map<String, StockDriftReport.Item> previousItems = autoCorrect || rebaselineLiveDrift ? confirmingItems(cutoff) : Map.of();
+
+        List<StockDriftReport.Item> items = new ArrayList<>();
+        List<String> rebaseline = new ArrayList<>();
+        for (StockLedgerPosition position : positions.values()) {
+            String knifeId = position.knifeId();
+            if (!live.containsKey(knifeId)) {
+                continue; // Knife deleted since the ledger took it over
+            }
+            int liveQuantity = live.get(knifeId);
+            int liveDrift = liveQuantity - position.ledgerQuantity();
+            int orderedUnits = ordered.getOrDefault(knifeId, 0);
+            int heldUnits = held.getOrDefault(knifeId, 0);
+            int orderDrift = position.consumed() - orderedUnits - heldUnits;
+            if (liveDrift == 0 && orderDrift == 0) {
+                continue;
+            }
+
+            // Only the unambiguous case is corrected: ledger and live agree, units left without an order, and the
+            // previous run saw the same drift. Live stock is read now while the ledger and orders stop at the cutoff,
+            // so a single observation can be a placement caught between the two; a repeat cannot
+            boolean corrected = false;
+            if (autoCorrect && liveDrift == 0 && orderDrift > 0 && seenBefore(previousItems.get(knifeId), orderDrift)) {
+                try {
+                    knifeService.incrementStockAtomic(knifeId, orderDrift, StockMovement.Cause.ROLLBACK);
+                    corrected = true;
+                } catch (Exception e) {
+                    log.error("Failed to correct stock drift of {} for knife {}", orderDrift, knifeId, e);
+                }
+            }
+            // A liveDrift that holds still across runs is movements the ledger lost (see StockLedgerService)
+            boolean rebaselined = false;
+            if (rebaselineLiveDrift && liveDrift != 0 && sameLiveDrift(previousItems.get(knifeId), liveDrift)) {
+                rebaseline.add(knifeId);
+                rebaselined = true;
+            }
+            items.add(new StockDriftReport.Item(knifeId, liveQuantity, position.ledgerQuantity(), liveDrift,
+                    position.consumed(), orderedUnits, heldUnits, orderDrift, corrected, rebaselined));
+        }
+        if (!rebaseline.isEmpty()) {
+            stockLedgerService.rebaseline(rebaseline);
+            log.warn("Re-seeded the stock ledger of {} knives with a steady live drift", rebaseline.size());
+        }
+
+        StockDriftReport report = mongoTemplate.insert(StockDriftReport.builder()
+                .generatedAt(now)
+                .cutoff(cutoff)
+                .knivesChecked(positions.size())
+                .autoCorrect(autoCorrect)
+                .items(items)
+                .purgeAt(now.plus(Duration.ofDays(retentionDays)))
+                .build());
+        if (items.isEmpty()) {
+            log.info("Stock reconciliation checked {} knives, no drift", positions.size());
+        } else {
+            log.warn("Stock reconciliation found drift on {} of {} knives (report {})",
+                    items.size(), positions.size(), report.getId());
+        }
+        return report;
+    }
+
+    /**
+     * Drift items of the latest earlier report, if it ran at least one grace period ago - placements in flight
+     * during that run have settled by this run's cutoff
+     */
+    private Map<String, StockDriftReport.Item> confirmingItems(Instant cutoff) {
+        StockDriftReport previous = getLatestReport();
+        if (previous == null || previous.getItems() == null || previous.getGeneratedAt() == null
+                || previous.getGeneratedAt().isAfter(cutoff)) {
+            return Map.of();
+        }
+        return previous.getItems().stream()
+                .collect(Collectors.toMap(StockDriftReport.Item::getKnifeId, item -> item, (first, second) -> first));
+    }
+
+    private static boolean seenBefore(StockDriftReport.Item previous, int orderDrift) {
+        // A drift that was already corrected once and is still there is left to a person
+        return previous != null && !previous.isCorrected() && previous.getLiveDrift() == 0
+                && previous.getOrderDrift() == orderDrift;
+    }
+
+    private static boolean sameLiveDrift(StockDriftReport.Item previous, int liveDrift) {
+        return previous != null && !previous.isRebaselined() && previous.getLiveDrift() == liveDrift;
+    }
+
+    @Scheduled(fixedDelayString = "${stock.reconciliation.interval-ms:3600000}",
+            initialDelayString = "${stock.reconciliation.interval-ms:3600000}")
+    public void scheduledReconcile() {
+        try {
+            reconcile(autoCorrectEnabled);
+        } catch (Exception e) {
+            log.warn("Stock reconciliation failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public StockDriftReport getLatestReport() {
+        return mongoTemplate.findOne(new Query().with(Sort.by(Sort.Direction.DESC, "generatedAt")).limit(1),
+                StockDriftReport.class);
+    }
+
+    /**
+     * Ordered units per knife since its ledger start, summed by the server. Results are streamed with
+     * allowDiskUse, so neither the application nor the aggregation holds the orders collection in memory.
+     */
+    private Map<String, Integer> sumOrderedUnits(Collection<StockLedgerPosition> positions, Instant cutoff) {
+        Map<String, Integer> ordered = new HashMap<>();
+        // Knives taken over by the same compaction run share a start, so this is normally one aggregation
+        Map<Instant, List<String>> knivesByStart = positions.stream()
+                .filter(position -> position.ledgerStartedAt() != null)
+                .collect(Collectors.groupingBy(StockLedgerPosition::ledgerStartedAt,
+                        Collectors.mapping(StockLedgerPosition::knifeId, Collectors.toList())));
+
+        for (Map.Entry<Instant, List<String>> group : knivesByStart.entrySet()) {
+            // Line ids may be stored as ObjectId or as string
+            List<Object> lineIds = new ArrayList<>(group.getValue());
+            group.getValue().stream().filter(ObjectId::isValid).map(ObjectId::new).forEach(lineIds::add);
+
+            Aggregation aggregation = Aggregation.newAggregation(
+                    Aggregation.match(Criteria.where("_id").gte(ObjectIdUtil.floorOf(group.getKey())).lt(ObjectIdUtil.floorOf(cutoff))),
+                    Aggregation.project("knives"),
+                    Aggregation.unwind("knives"),
+                    Aggregation.match(Criteria.where("knives._id").in(lineIds)),
+                    context -> new Document("$group", new Document("_id", "$knives._id")
+                            .append("units", new Document("$sum", new Document("$ifNull", List.of("$knives.quantity", 1))))))
+                    .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+            try (Stream<Document> results = mongoTemplate.aggregateStream(aggregation,
+                    mongoTemplate.getCollectionName(OrderDto.class), Document.class)) {
+                results.forEach(result -> ordered.merge(String.valueOf(result.get("_id")),
+                        ((Number) result.get("units")).intValue(), Integer::sum));
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Units out of stock but not (yet) in an order: ACTIVE reservations, and PENDING placements with the
+     * reservations they confirmed. Only holds made after the knife's ledger start count.
+     */
+    private Map<String, Integer> sumHeldUnits(Map<String, StockLedgerPosition> positions, Instant cutoff) {
+        Map<String, Integer> held = new HashMap<>();
+
+        List<StockReservation> activeReservations = mongoTemplate.find(new Query(Criteria.where("status")
+                .is(StockReservation.Status.ACTIVE).and("createdAt").lt(cutoff)), StockReservation.class);
+        for (StockReservation reservation : activeReservations) {
+            addReservationItems(held, positions, reservation);
+        }
+
+        List<OrderPlacementIntent> pendingIntents = mongoTemplate.find(new Query(Criteria.where("status")
+                .is(OrderPlacementIntent.Status.PENDING).and("createdAt").lt(cutoff)), OrderPlacementIntent.class);
+        for (OrderPlacementIntent intent : pendingIntents) {
+            if (intent.getDecrements() != null) {
+                intent.getDecrements().forEach((knifeId, quantity) -> {
+                    if (heldSinceLedgerStart(positions.get(knifeId), intent.getCreatedAt())) {
+                        held.merge(knifeId, quantity, Integer::sum);
+                    }
+                });
+            }
+        }
+        List<String> pendingIntentIds = pendingIntents.stream().map(OrderPlacementIntent::getId).toList();
+        if (!pendingIntentIds.isEmpty()) {
+            mongoTemplate.find(new Query(Criteria.where("status").is(StockReservation.Status.CONFIRMED)
+                            .and("confirmedBy").in(pendingIntentIds)), StockReservation.class)
+                    .forEach(reservation -> addReservationItems(held, positions, reservation));
+        }
+        return held;
+    }
+
+    private void addReservationItems(Map<String, Integer> held, Map<String, StockLedgerPosition> positions,
+                                     StockReservation reservation) {
+        for (StockReservation.Item item : reservation.getItems()) {
+            if (heldSinceLedgerStart(positions.get(item.getKnifeId()), reservation.getCreatedAt())) {
+                held.merge(item.getKnifeId(), item.getQuantity(), Integer::sum);
+            }
+        }
+    }
+
+    private boolean heldSinceLedgerStart(StockLedgerPosition position, Instant heldAt) {
+        return position != null && position.ledgerStartedAt() != null && heldAt != null
+                && !heldAt.isBefore(position.ledgerStartedAt());
+    }
+
+    /**
+     * Units actually available per knife - shard sums for striped knives
+     */
+    private Map<String, Integer> getLiveQuantities(Collection<String> knifeIds) {
+        if (knifeIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Query query = new Query(Criteria.where("_id").in(knifeIds));
+        query.fields().include("stockQuantity").include("stockStriped");
+        List<KnifeDto> knives = mongoTemplate.find(query, KnifeDto.class);
+
+        List<String> stripedIds = knives.stream().filter(KnifeDto::isStockStriped).map(KnifeDto::getId).toList();
+        Map<String, Integer> shardTotals = stripedIds.isEmpty() ? Collections.emptyMap() : stockShardService.getTotals(stripedIds);
+        Map<String, Integer> live = new HashMap<>();
+        for (KnifeDto knife : knives) {
+            live.put(knife.getId(), knife.isStockStriped()
+                    ? shardTotals.getOrDefault(knife.getId(), 0)
+                    : knife.getStockQuantity());
+        }
+        return live;
+    }
+}
@@ -0,0 +1,271 @@
+package com.kesik.bladecommerce.service.impl;
+
+import com.kesik.bladecommerce.dto.stock.StockCheckRequest;
+import com.kesik.bladecommerce.dto.stock.StockReservationResponse;
+import com.kesik.bladecommerce.entity.StockMovement;
+import com.kesik.bladecommerce.entity.StockReservation;
+import com.kesik.bladecommerce.exception.TooManyRequestsException;
+import com.kesik.bladecommerce.service.KnifeService;
+import com.kesik.bladecommerce.service.StockReservationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+@Slf4j
+public class StockReservationServiceImpl implements StockReservationService {
+
+    /**
+     * Upper bound of reservations released per sweep, so one run cannot monopolise the scheduler thread
+     */
+    private static final int MAX_RELEASES_PER_SWEEP = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final KnifeService knifeService;
+
+    @Value("${stock.reservation.hold-seconds:600}")
+    private long holdSeconds;
+
+    @Value("${stock.reservation.pending-stale-seconds:60}")
+    private long pendingStaleSeconds;
+
+    @Value("${stock.reservation.retention-hours:24}")
+    private long retentionHours;
+
+    // Abuse limits: an anonymous caller must not be able to hold the whole catalogue
+    @Value("${stock.reservation.max-lines:20}")
+    private int maxLines;
+
+    @Value("${stock.reservation.max-quantity-per-line:10}")
+    private int maxQuantityPerLine;
+
+    @Value("${stock.reservation.max-active-per-client:3}")
+    private int maxActivePerClient;
+
+    public StockReservationServiceImpl(MongoTemplate mongoTemplate, KnifeService knifeService) {
+        this.mongoTemplate = mongoTemplate;
+        this.knifeService = knifeService;
+    }
+
+    @Override
+    public StockReservationResponse reserve(List<StockCheckRequest> requestItems, String clientKey) {
+        List<StockReservation.Item> items = mergeItems(requestItems);
+        if (items.size() > maxLines) {
+            throw new IllegalArgumentException("A reservation may hold at most " + maxLines + " products");
+        }
+        for (StockReservation.Item item : items) {
+            if (item.getQuantity() > maxQuantityPerLine) {
+                throw new IllegalArgumentException("At most " + maxQuantityPerLine + " units of a product can be reserved");
+            }
+        }
+        if (clientKey != null) {
+            long active = mongoTemplate.count(new Query(Criteria.where("clientKey").is(clientKey)
+                    .and("status").in(StockReservation.Status.PENDING, StockReservation.Status.ACTIVE)), StockReservation.class);
+            if (active >= maxActivePerClient) {
+                throw new TooManyRequestsException("Too many open reservations, release one or complete checkout first");
+            }
+        }
+
+        // The reservation is written before any stock is taken, and every decrement is tagged with its id in
+        // stockHolds: if this process dies half way, the sweep finds the PENDING reservation and returns exactly
+        // the tagged units
+        Instant now = Instant.now();
+        StockReservation reservation = mongoTemplate.insert(StockReservation.builder()
+                .id(UUID.randomUUID().toString())
+                .items(items)
+                .status(StockReservation.Status.PENDING)
+                .clientKey(clientKey)
+                .createdAt(now)
+                .expiresAt(now.plusSeconds(holdSeconds))
+                .build());
+        String reservationId = reservation.getId();
+        Map<String, Integer> quantities = quantitiesOf(items);
+
+        try {
+            knifeService.decrementStockBulk(quantities, reservationId, StockMovement.Cause.RESERVATION);
+        } catch (RuntimeException e) {
+            releasePending(Criteria.where("_id").is(reservationId));
+            throw e;
+        }
+
+        boolean activated = mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(reservationId)
+                        .and("status").is(StockReservation.Status.PENDING)),
+                new Update().set("status", StockReservation.Status.ACTIVE), StockReservation.class)
+                .getModifiedCount() > 0;
+        if (!activated) {
+            // The sweep took this reservation for a crashed one and returned its stock; return anything tagged since
+            knifeService.releaseStockHold(reservationId, quantities);
+            throw new IllegalStateException("Stock reservation timed out, please try again");
+        }
+        // ACTIVE reservations are released by their status flip - the tags are no longer needed
+        knifeService.clearStockHold(reservationId, quantities.keySet());
+
+        log.info("Reserved stock for {} knives, reservation {} expires at {}",
+                items.size(), reservationId, reservation.getExpiresAt());
+        return new StockReservationResponse(reservationId, reservation.getExpiresAt(), items);
+    }
+
+    @Override
+    public void release(String reservationId) {
+        StockReservation released = finish(Criteria.where("_id").is(reservationId)
+                .and("status").is(StockReservation.Status.ACTIVE), StockReservation.Status.RELEASED);
+        if (released != null) {
+            restoreStock(released.getItems());
+            log.info("Released stock reservation {}", reservationId);
+        }
+    }
+
+    @Override
+    public Optional<StockReservation> confirm(String reservationId, String confirmedBy) {
+        if (reservationId == null || reservationId.isBlank()) {
+            return Optional.empty();
+        }
+        Update update = finishUpdate(StockReservation.Status.CONFIRMED).set("confirmedBy", confirmedBy);
+        StockReservation confirmed = mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(reservationId)
+                        .and("status").is(StockReservation.Status.ACTIVE)), update,
+                FindAndModifyOptions.options().returnNew(false), StockReservation.class);
+        if (confirmed == null) {
+            log.warn("Stock reservation {} is missing or no longer active", reservationId);
+        }
+        return Optional.ofNullable(confirmed);
+    }
+
+    @Override
+    public void revertConfirmation(String reservationId) {
+        finish(Criteria.where("_id").is(reservationId)
+                .and("status").is(StockReservation.Status.CONFIRMED), StockReservation.Status.RELEASED);
+    }
+
+    @Override
+    public boolean reopen(String reservationId, String confirmedBy) {
+        if (reservationId == null || confirmedBy == null) {
+            return false;
+        }
+        Update update = new Update()
+                .set("status", StockReservation.Status.ACTIVE)
+                .unset("purgeAt")
+                .unset("confirmedBy");
+        return mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(reservationId)
+                        .and("status").is(StockReservation.Status.CONFIRMED)
+                        .and("confirmedBy").is(confirmedBy)), update, StockReservation.class)
+                .getModifiedCount() > 0;
+    }
+
+    @Override
+    public int releaseExpired() {
+        int releasedCount = 0;
+        // PENDING reservations this old belong to a reserve call that died between its decrements and activation
+        Instant staleBefore = Instant.now().minusSeconds(pendingStaleSeconds);
+        while (releasedCount < MAX_RELEASES_PER_SWEEP
+                && releasePending(Criteria.where("createdAt").lt(staleBefore)) != null) {
+            releasedCount++;
+        }
+        // Claim one reservation at a time: the ACTIVE -> RELEASED flip guarantees a single releaser
+        // even when several instances sweep at once
+        while (releasedCount < MAX_RELEASES_PER_SWEEP) {
+            StockReservation expired = finish(Criteria.where("status").is(StockReservation.Status.ACTIVE)
+                    .and("expiresAt").lt(Instant.now()), StockReservation.Status.RELEASED);
+            if (expired == null) {
+                break;
+            }
+            restoreStock(expired.getItems());
+            releasedCount++;
+        }
+        if (releasedCount > 0) {
+            log.info("Released {} expired stock reservations", releasedCount);
+        }
+        return releasedCount;
+    }
+
+    @Scheduled(fixedDelayString = "${stock.reservation.sweep-interval-ms:30000}")
+    public void scheduledReleaseExpired() {
+        try {
+            releaseExpired();
+        } catch (Exception e) {
+            log.warn("Releasing expired stock reservations failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Atomically move a matching reservation to a terminal status and start its retention period
+     *
+     * @return The reservation as it was before the update, or null if none matched
+     */
+    private StockReservation finish(Criteria criteria, StockReservation.Status status) {
+        return mongoTemplate.findAndModify(new Query(criteria), finishUpdate(status),
+                FindAndModifyOptions.options().returnNew(false), StockReservation.class);
+    }
+
+    /**
+     * Claim a PENDING reservation (PENDING -> RELEASED) and return the stock tagged with its id.
+     * Only still-tagged knives get units back, so this is safe while the reserve call is still running.
+     *
+     * @return The released reservation, or null if none matched
+     */
+    private StockReservation releasePending(Criteria criteria) {
+        StockReservation released = finish(criteria.and("status").is(StockReservation.Status.PENDING),
+                StockReservation.Status.RELEASED);
+        if (released != null) {
+            knifeService.releaseStockHold(released.getId(), quantitiesOf(released.getItems()));
+        }
+        return released;
+    }
+
+    private Update finishUpdate(StockReservation.Status status) {
+        return new Update()
+                .set("status", status)
+                .set("purgeAt", Instant.now().plus(Duration.ofHours(retentionHours)));
+    }
+
+    private void restoreStock(List<StockReservation.Item> items) {
+        for (StockReservation.Item item : items) {
+            try {
+                knifeService.incrementStockAtomic(item.getKnifeId(), item.getQuantity(), StockMovement.Cause.RETURN);
+            } catch (Exception e) {
+                // Best effort, same as the order rollback - log for manual correction
+                log.error("Failed to restore reserved stock for product: {} (+{}). Manual correction may be needed.",
+                        item.getKnifeId(), item.getQuantity(), e);
+            }
+        }
+    }
+
+    private static Map<String, Integer> quantitiesOf(List<StockReservation.Item> items) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        items.forEach(item -> quantities.put(item.getKnifeId(), item.getQuantity()));
+        return quantities;
+    }
+
+    private List<StockReservation.Item> mergeItems(List<StockCheckRequest> requestItems) {
+        if (requestItems == null || requestItems.isEmpty()) {
+            throw new IllegalArgumentException("At least one item is required to reserve stock");
+        }
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (StockCheckRequest item : requestItems) {
+            if (item.getKnifeId() == null || item.getKnifeId().isBlank()) {
+                throw new IllegalArgumentException("Knife id is required");
+            }
+            if (item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive for knife: " + item.getKnifeId());
+            }
+            quantities.merge(item.getKnifeId(), item.getQuantity(), Integer::sum);
+        }
+        List<StockReservation.Item> items = new ArrayList<>(quantities.size());
+        quantities.forEach((knifeId, quantity) -> items.add(new StockReservation.Item(knifeId, quantity)));
+        return items;
+    }
+}
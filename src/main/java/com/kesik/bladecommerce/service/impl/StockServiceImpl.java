@@ -0,0 +1,102 @@
+package com.kesik.bladecommerce.service.impl;
+
+import com.kesik.bladecommerce.dto.knife.KnifeDto;
+import com.kesik.bladecommerce.dto.stock.BatchStockCheckResponse;
+import com.kesik.bladecommerce.dto.stock.StockCheckRequest;
+import com.kesik.bladecommerce.dto.stock.StockCheckResult;
+import com.kesik.bladecommerce.service.StockShardService;
+import com.kesik.bladecommerce.service.StockService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+@Service
+@Slf4j
+public class StockServiceImpl implements StockService {
+
+    private final MongoTemplate mongoTemplate;
+    private final StockShardService stockShardService;
+
+    public StockServiceImpl(MongoTemplate mongoTemplate, StockShardService stockShardService) {
+        this.mongoTemplate = mongoTemplate;
+        this.stockShardService = stockShardService;
+    }
+
+    @Override
+    public BatchStockCheckResponse checkBatchStock(List<StockCheckRequest> items) {
+        Map<String, KnifeDto> knivesById = findStockLevels(items.stream()
+                .map(StockCheckRequest::getKnifeId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList());
+
+        boolean allAvailable = true;
+        List<StockCheckResult> results = new ArrayList<>(items.size());
+        for (StockCheckRequest item : items) {
+            StockCheckResult result = checkItem(item, knivesById.get(item.getKnifeId()));
+            allAvailable &= result.isAvailable();
+            results.add(result);
+        }
+        return new BatchStockCheckResponse(allAvailable, results, items.size());
+    }
+
+    @Override
+    public Map<String, Integer> getStockLevels(Collection<String> knifeIds) {
+        Map<String, Integer> levels = new HashMap<>();
+        findStockLevels(knifeIds).forEach((knifeId, knife) -> levels.put(knifeId, knife.getStockQuantity()));
+        return levels;
+    }
+
+    /**
+     * One $in query, decoding only the fields a stock check needs.
+     * Striped knives get their live stock from the shard sums (one more query, only if any are striped).
+     */
+    private Map<String, KnifeDto> findStockLevels(Collection<String> knifeIds) {
+        Map<String, KnifeDto> knivesById = new HashMap<>();
+        if (knifeIds.isEmpty()) {
+            return knivesById;
+        }
+        Query query = new Query(Criteria.where("_id").in(knifeIds));
+        query.fields().include("name", "stockQuantity", "stockStriped");
+        List<String> stripedIds = new ArrayList<>();
+        for (KnifeDto knife : mongoTemplate.find(query, KnifeDto.class)) {
+            knivesById.put(knife.getId(), knife);
+            if (knife.isStockStriped()) {
+                stripedIds.add(knife.getId());
+            }
+        }
+        if (!stripedIds.isEmpty()) {
+            stockShardService.getTotals(stripedIds).forEach((knifeId, total) ->
+                    knivesById.get(knifeId).setStockQuantity(total));
+        }
+        return knivesById;
+    }
+
+    private StockCheckResult checkItem(StockCheckRequest item, KnifeDto knife) {
+        StockCheckResult.StockCheckResultBuilder result = StockCheckResult.builder()
+                .knifeId(item.getKnifeId())
+                .requested(item.getQuantity());
+
+        if (knife == null) {
+            return result.available(false).stock(0).reason("Product not found").build();
+        }
+
+        int currentStock = knife.getStockQuantity();
+        boolean available = currentStock >= item.getQuantity();
+        result.available(available).stock(currentStock).productName(knife.getName());
+        if (!available) {
+            result.reason(currentStock == 0 ? "Out of stock"
+                    : "Insufficient stock. Only " + currentStock + " available");
+        }
+        return result.build();
+    }
+}
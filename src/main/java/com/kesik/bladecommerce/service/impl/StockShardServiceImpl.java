@@ -0,0 +1,363 @@
+package com.kesik.bladecommerce.service.impl;
+
+import com.kesik.bladecommerce.dto.knife.KnifeDto;
+import com.kesik.bladecommerce.dto.stock.StockStripingStatus;
+import com.kesik.bladecommerce.entity.StockShard;
+import com.kesik.bladecommerce.service.CatalogSnapshotService;
+import com.kesik.bladecommerce.service.StockShardService;
+import com.kesik.bladecommerce.util.CatalogVersion;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Service
+@Slf4j
+public class StockShardServiceImpl implements StockShardService {
+
+    private static final int MIN_STRIPES = 2;
+    private static final int MAX_STRIPES = 64;
+
+    private final MongoTemplate mongoTemplate;
+    private final CatalogSnapshotService catalogSnapshot;
+    private final CatalogVersion catalogVersion;
+
+    public StockShardServiceImpl(MongoTemplate mongoTemplate, CatalogSnapshotService catalogSnapshot,
+                                 CatalogVersion catalogVersion) {
+        this.mongoTemplate = mongoTemplate;
+        this.catalogSnapshot = catalogSnapshot;
+        this.catalogVersion = catalogVersion;
+    }
+
+    @Override
+    public StockStripingStatus enableStriping(String knifeId, int stripes) {
+        if (stripes < MIN_STRIPES || stripes > MAX_STRIPES) {
+            throw new IllegalArgumentException("Stripes must be between " + MIN_STRIPES + " and " + MAX_STRIPES);
+        }
+        KnifeDto knife = requireKnife(knifeId);
+        if (knife.isStockStriped()) {
+            return getStatus(knifeId);
+        }
+
+        // 1. Empty shards, so decrements routed here find them as soon as the flag flips
+        for (int i = 0; i < stripes; i++) {
+            mongoTemplate.upsert(new Query(Criteria.where("_id").is(StockShard.idOf(knifeId, i))),
+                    new Update().setOnInsert("knifeId", knifeId).setOnInsert("shard", i).setOnInsert("quantity", 0),
+                    StockShard.class);
+        }
+
+        // 2. Flip the flag. From here on direct decrements of knives.stockQuantity no longer match,
+        //    so the quantity read here is final
+        KnifeDto before = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(knifeId).and("stockStriped").ne(true)),
+                new Update().set("stockStriped", true).inc("revision", 1),
+                FindAndModifyOptions.options().returnNew(false),
+                KnifeDto.class);
+        if (before == null) {
+            // Enabled concurrently
+            return getStatus(knifeId);
+        }
+
+        // 3. Spread the stock over the shards (buyers briefly see the knife as sold out until this completes)
+        int[] split = split(before.getStockQuantity(), stripes);
+        for (int i = 0; i < stripes; i++) {
+            if (split[i] > 0) {
+                mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(StockShard.idOf(knifeId, i))),
+                        new Update().inc("quantity", split[i]), StockShard.class);
+            }
+        }
+
+        publish(mongoTemplate.findById(knifeId, KnifeDto.class));
+        log.info("Enabled striped stock for knife {} with {} stripes ({} units)", knifeId, stripes, before.getStockQuantity());
+        return getStatus(knifeId);
+    }
+
+    @Override
+    public StockStripingStatus disableStriping(String knifeId) {
+        KnifeDto knife = requireKnife(knifeId);
+        if (!knife.isStockStriped()) {
+            return getStatus(knifeId);
+        }
+
+        // 1. Flip the flag and zero the display total; shard units are added back below
+        KnifeDto flipped = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(knifeId).and("stockStriped").is(true)),
+                new Update().set("stockStriped", false).set("stockQuantity", 0).inc("revision", 1),
+                KnifeDto.class);
+        if (flipped == null) {
+            return getStatus(knifeId);
+        }
+
+        // 2. Remove shards one by one; a concurrent shard decrement either lands before the removal
+        //    (and is reflected in the removed quantity) or finds no shard and fails
+        int total = 0;
+        Set<String> holdIds = new HashSet<>();
+        for (StockShard shard : findShards(knifeId)) {
+            StockShard removed = mongoTemplate.findAndRemove(
+                    new Query(Criteria.where("_id").is(shard.getId())), StockShard.class);
+            if (removed != null) {
+                total += removed.getQuantity();
+                if (removed.getHolds() != null) {
+                    removed.getHolds().forEach(hold -> holdIds.add(hold.getHoldId()));
+                }
+            }
+        }
+
+        // Open holds move to the knife document with the stock, so they can still be released from there
+        Update fold = new Update().inc("stockQuantity", total).inc("revision", 1);
+        if (!holdIds.isEmpty()) {
+            fold.addToSet("stockHolds").each(holdIds.toArray());
+        }
+        KnifeDto updated = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(knifeId)),
+                fold,
+                FindAndModifyOptions.options().returnNew(true),
+                KnifeDto.class);
+        publish(updated);
+        log.info("Disabled striped stock for knife {} ({} units folded back)", knifeId, total);
+        return getStatus(knifeId);
+    }
+
+    @Override
+    public StockStripingStatus getStatus(String knifeId) {
+        KnifeDto knife = requireKnife(knifeId);
+        List<StockShard> shards = findShards(knifeId);
+        int total = knife.isStockStriped()
+                ? shards.stream().mapToInt(StockShard::getQuantity).sum()
+                : knife.getStockQuantity();
+        return new StockStripingStatus(knifeId, knife.isStockStriped(), shards.size(), total);
+    }
+
+    @Override
+    public int decrement(String knifeId, int quantity, String holdId) {
+        List<StockShard> shards = findShards(knifeId);
+        if (shards.isEmpty()) {
+            return -1;
+        }
+        int available = shards.stream().mapToInt(StockShard::getQuantity).sum();
+        int start = ThreadLocalRandom.current().nextInt(shards.size());
+
+        // Fast path: one shard covers the whole quantity - start at a random shard to spread writes
+        for (int i = 0; i < shards.size(); i++) {
+            StockShard shard = shards.get((start + i) % shards.size());
+            if (shard.getQuantity() >= quantity && takeFromShard(shard.getId(), quantity, holdId)) {
+                return available - quantity;
+            }
+        }
+
+        // Fallback: stock is fragmented across shards - gather it, undoing partial takes on failure
+        List<StockShard> taken = new ArrayList<>();
+        int remaining = quantity;
+        for (int i = 0; i < shards.size() && remaining > 0; i++) {
+            StockShard shard = shards.get((start + i) % shards.size());
+            int take = Math.min(shard.getQuantity(), remaining);
+            if (take > 0 && takeFromShard(shard.getId(), take, holdId)) {
+                taken.add(StockShard.builder().id(shard.getId()).quantity(take).build());
+                remaining -= take;
+            }
+        }
+        if (remaining > 0) {
+            for (StockShard shard : taken) {
+                undoTake(knifeId, shard.getId(), shard.getQuantity(), holdId);
+            }
+            throw new IllegalStateException(String.format(
+                    "Insufficient stock for %s. Requested: %d, Available: %d", knifeId, quantity, available));
+        }
+        return available - quantity;
+    }
+
+    @Override
+    public boolean increment(String knifeId, int quantity) {
+        List<StockShard> shards = findShards(knifeId);
+        int start = shards.isEmpty() ? 0 : ThreadLocalRandom.current().nextInt(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            StockShard shard = shards.get((start + i) % shards.size());
+            // A shard removed by disableStriping no longer matches - try the next one
+            if (mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(shard.getId())),
+                    new Update().inc("quantity", quantity), StockShard.class).getMatchedCount() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int releaseHold(String knifeId, String holdId) {
+        int released = 0;
+        for (StockShard shard : mongoTemplate.find(new Query(Criteria.where("knifeId").is(knifeId)
+                .and("holds.holdId").is(holdId)), StockShard.class)) {
+            int quantity = shard.getHolds().stream()
+                    .filter(hold -> holdId.equals(hold.getHoldId()))
+                    .mapToInt(StockShard.Hold::getQuantity)
+                    .sum();
+            // Returning the units and dropping the tag in one update makes the release idempotent
+            if (mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(shard.getId()).and("holds.holdId").is(holdId)),
+                    new Update().inc("quantity", quantity).pull("holds", new Document("holdId", holdId)),
+                    StockShard.class).getModifiedCount() > 0) {
+                released += quantity;
+            }
+        }
+        return released;
+    }
+
+    @Override
+    public void clearHold(String holdId, Collection<String> knifeIds) {
+        if (knifeIds.isEmpty()) {
+            return;
+        }
+        mongoTemplate.updateMulti(new Query(Criteria.where("knifeId").in(knifeIds).and("holds.holdId").is(holdId)),
+                new Update().pull("holds", new Document("holdId", holdId)), StockShard.class);
+    }
+
+    @Override
+    public void setTotal(String knifeId, int quantity) {
+        List<StockShard> shards = findShards(knifeId);
+        int[] split = split(quantity, shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(shards.get(i).getId())),
+                    new Update().set("quantity", split[i]), StockShard.class);
+        }
+    }
+
+    @Override
+    public Map<String, Integer> getTotals(Collection<String> knifeIds) {
+        Map<String, Integer> totals = new HashMap<>();
+        if (knifeIds.isEmpty()) {
+            return totals;
+        }
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("knifeId").in(knifeIds)),
+                Aggregation.group("knifeId").sum("quantity").as("total"));
+        for (Document result : mongoTemplate.aggregate(aggregation, StockShard.class, Document.class)) {
+            totals.put(result.getString("_id"), ((Number) result.get("total")).intValue());
+        }
+        return totals;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${stock.striping.sync-interval-ms:5000}")
+    public void syncDisplayTotals() {
+        try {
+            Query stripedQuery = new Query(Criteria.where("stockStriped").is(true));
+            stripedQuery.fields().include("_id");
+            List<String> knifeIds = mongoTemplate.find(stripedQuery, KnifeDto.class).stream()
+                    .map(KnifeDto::getId)
+                    .toList();
+            if (knifeIds.isEmpty()) {
+                return;
+            }
+
+            Map<String, Integer> totals = getTotals(knifeIds);
+            boolean changed = false;
+            for (String knifeId : knifeIds) {
+                int total = totals.getOrDefault(knifeId, 0);
+                KnifeDto updated = mongoTemplate.findAndModify(
+                        new Query(Criteria.where("_id").is(knifeId).and("stockStriped").is(true)
+                                .and("stockQuantity").ne(total)),
+                        new Update().set("stockQuantity", total).inc("revision", 1),
+                        FindAndModifyOptions.options().returnNew(true),
+                        KnifeDto.class);
+                if (updated != null) {
+                    catalogSnapshot.upsert(updated);
+                    changed = true;
+                }
+            }
+            if (changed) {
+                catalogVersion.markDirty();
+            }
+        } catch (Exception e) {
+            log.warn("Striped stock sync failed: {}", e.getMessage());
+        }
+    }
+
+    private boolean takeFromShard(String shardId, int quantity, String holdId) {
+        Update update = new Update().inc("quantity", -quantity);
+        if (holdId != null) {
+            update.push("holds", new StockShard.Hold(holdId, quantity));
+        }
+        return mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(shardId).and("quantity").gte(quantity)),
+                update,
+                StockShard.class).getModifiedCount() > 0;
+    }
+
+    /**
+     * Put units taken from a shard back. If disableStriping removed the shard meanwhile, they go to another
+     * shard, or - with no shards left - onto the knife document, where striping folded the rest of the stock
+     */
+    private void undoTake(String knifeId, String shardId, int quantity, String holdId) {
+        Update update = new Update().inc("quantity", quantity);
+        if (holdId != null) {
+            update.pull("holds", new Document("holdId", holdId));
+        }
+        if (mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(shardId)),
+                update, StockShard.class).getMatchedCount() > 0) {
+            return;
+        }
+        if (holdId != null) {
+            // disableStriping moved the shard's tag to the knife; these units are returned here, not by a release
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(knifeId)),
+                    new Update().pull("stockHolds", holdId), KnifeDto.class);
+        }
+        if (increment(knifeId, quantity)) {
+            log.warn("Shard {} was removed during a failed decrement; returned {} units to another shard", shardId, quantity);
+            return;
+        }
+        KnifeDto updated = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(knifeId)),
+                new Update().inc("stockQuantity", quantity).inc("revision", 1),
+                FindAndModifyOptions.options().returnNew(true),
+                KnifeDto.class);
+        if (updated != null) {
+            catalogSnapshot.upsert(updated);
+            catalogVersion.markDirty();
+            log.warn("Striping of knife {} was disabled during a failed decrement; returned {} units to the knife",
+                    knifeId, quantity);
+        } else {
+            log.error("Could not return {} units of deleted knife {} after a failed decrement", quantity, knifeId);
+        }
+    }
+
+    private List<StockShard> findShards(String knifeId) {
+        return mongoTemplate.find(new Query(Criteria.where("knifeId").is(knifeId)), StockShard.class);
+    }
+
+    private KnifeDto requireKnife(String knifeId) {
+        KnifeDto knife = mongoTemplate.findById(knifeId, KnifeDto.class);
+        if (knife == null) {
+            throw new IllegalArgumentException("Product not found: " + knifeId);
+        }
+        return knife;
+    }
+
+    private void publish(KnifeDto knife) {
+        catalogSnapshot.upsert(knife);
+        catalogVersion.bump();
+    }
+
+    /**
+     * Split quantity into parts that differ by at most one
+     */
+    private static int[] split(int quantity, int parts) {
+        int[] split = new int[parts];
+        for (int i = 0; i < parts; i++) {
+            split[i] = quantity / parts + (i < quantity % parts ? 1 : 0);
+        }
+        return split;
+    }
+}
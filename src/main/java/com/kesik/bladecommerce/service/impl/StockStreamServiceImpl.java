@@ -0,0 +1,274 @@
+package com.kesik.bladecommerce.service.impl;
+
+import com.kesik.bladecommerce.dto.stock.StockLevelUpdate;
+import com.kesik.bladecommerce.event.StockChangedEvent;
+import com.kesik.bladecommerce.service.StockService;
+import com.kesik.bladecommerce.service.StockStreamService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+@Slf4j
+public class StockStreamServiceImpl implements StockStreamService {
+
+    /**
+     * Upper bound of knives per stream (a product page plus its related products)
+     */
+    private static final int MAX_IDS_PER_STREAM = 50;
+
+    private final StockService stockService;
+    private final TaskExecutor streamExecutor;
+
+    private final Map<String, Set<Subscriber>> subscribersByKnife = new ConcurrentHashMap<>();
+    private final Set<String> changedKnives = ConcurrentHashMap.newKeySet();
+    private final Map<String, Integer> lastPushed = new ConcurrentHashMap<>();
+
+    @Value("${stock.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${stock.stream.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    public StockStreamServiceImpl(StockService stockService,
+                                  @Qualifier("stockStreamExecutor") TaskExecutor streamExecutor) {
+        this.stockService = stockService;
+        this.streamExecutor = streamExecutor;
+    }
+
+    @Override
+    public SseEmitter subscribe(List<String> knifeIds) {
+        List<String> ids = knifeIds == null ? List.of() : knifeIds.stream()
+                .filter(Objects::nonNull)
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .distinct()
+                .toList();
+        if (ids.isEmpty()) {
+            throw new IllegalArgumentException("At least one knife id is required");
+        }
+        if (ids.size() > MAX_IDS_PER_STREAM) {
+            throw new IllegalArgumentException("At most " + MAX_IDS_PER_STREAM + " knife ids can be streamed at once");
+        }
+
+        // Browsers reconnect on their own once the stream times out
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, ids);
+        for (String id : ids) {
+            // Added inside compute: a concurrent unsubscribe cannot drop the set between lookup and add
+            subscribersByKnife.compute(id, (key, subscribers) -> {
+                Set<Subscriber> target = subscribers == null ? ConcurrentHashMap.newKeySet() : subscribers;
+                target.add(subscriber);
+                return target;
+            });
+        }
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(error -> unsubscribe(subscriber));
+
+        // Current levels first, so the page does not wait for the next change
+        Map<String, Integer> levels = stockService.getStockLevels(ids);
+        for (String id : ids) {
+            subscriber.send(id, levels.getOrDefault(id, 0));
+        }
+        return emitter;
+    }
+
+    /**
+     * Only marks the knife; the level is read on the next push so bursts of changes cost one query
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(StockChangedEvent event) {
+        if (subscribersByKnife.containsKey(event.knifeId())) {
+            changedKnives.add(event.knifeId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stock.stream.push-interval-ms:500}")
+    public void pushChanges() {
+        if (changedKnives.isEmpty()) {
+            return;
+        }
+        List<String> knifeIds = new ArrayList<>(changedKnives);
+        changedKnives.removeAll(knifeIds);
+        try {
+            push(knifeIds);
+        } catch (Exception e) {
+            log.warn("Pushing stock changes failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Re-read every streamed knife: picks up changes made by other instances (the change feed is per JVM)
+     * and doubles as a keep-alive that drops dead connections
+     */
+    @Scheduled(fixedDelayString = "${stock.stream.refresh-interval-ms:15000}")
+    public void refreshAll() {
+        if (subscribersByKnife.isEmpty()) {
+            return;
+        }
+        try {
+            push(new ArrayList<>(subscribersByKnife.keySet()));
+        } catch (Exception e) {
+            log.warn("Refreshing streamed stock levels failed: {}", e.getMessage());
+        }
+        long now = System.currentTimeMillis();
+        subscribersByKnife.values().stream()
+                .flatMap(Set::stream)
+                .distinct()
+                .forEach(subscriber -> {
+                    if (subscriber.isStalled(now)) {
+                        subscriber.close(new IOException("Stock stream client stopped reading"));
+                    } else {
+                        subscriber.keepAlive();
+                    }
+                });
+    }
+
+    private void push(Collection<String> knifeIds) {
+        Map<String, Integer> levels = stockService.getStockLevels(knifeIds);
+        for (String knifeId : knifeIds) {
+            int level = levels.getOrDefault(knifeId, 0);
+            if (Objects.equals(lastPushed.put(knifeId, level), level)) {
+                continue;
+            }
+            Set<Subscriber> subscribers = subscribersByKnife.get(knifeId);
+            if (subscribers != null) {
+                subscribers.forEach(subscriber -> subscriber.send(knifeId, level));
+            }
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscriber.closed = true;
+        for (String id : subscriber.knifeIds) {
+            subscribersByKnife.computeIfPresent(id, (key, subscribers) -> {
+                subscribers.remove(subscriber);
+                if (subscribers.isEmpty()) {
+                    lastPushed.remove(key);
+                    return null;
+                }
+                return subscribers;
+            });
+        }
+    }
+
+    /**
+     * One open stream. Sends run on the stream executor, at most one drain per emitter at a time, so they are
+     * serialised without blocking the scheduler. Unsent levels are coalesced per knife: a slow client gets
+     * the newest level, never a growing backlog.
+     */
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final List<String> knifeIds;
+        private final Map<String, Integer> pendingLevels = new LinkedHashMap<>();
+        private boolean pendingKeepAlive;
+        private boolean draining;
+        private volatile boolean closed;
+        private volatile long sendStartedAt;
+
+        private Subscriber(SseEmitter emitter, List<String> knifeIds) {
+            this.emitter = emitter;
+            this.knifeIds = knifeIds;
+        }
+
+        private void send(String knifeId, int level) {
+            synchronized (this) {
+                pendingLevels.put(knifeId, level);
+            }
+            scheduleDrain();
+        }
+
+        private void keepAlive() {
+            synchronized (this) {
+                pendingKeepAlive = true;
+            }
+            scheduleDrain();
+        }
+
+        private boolean isStalled(long now) {
+            long startedAt = sendStartedAt;
+            return startedAt != 0 && now - startedAt > sendTimeoutMs;
+        }
+
+        private void scheduleDrain() {
+            synchronized (this) {
+                if (draining || closed) {
+                    return;
+                }
+                draining = true;
+            }
+            try {
+                streamExecutor.execute(this::drain);
+            } catch (TaskRejectedException e) {
+                // Pending levels stay queued; the next change or keep-alive schedules again
+                synchronized (this) {
+                    draining = false;
+                }
+                log.debug("Stock stream send queue full, deferring");
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                List<SseEmitter.SseEventBuilder> events = new ArrayList<>();
+                synchronized (this) {
+                    pendingLevels.forEach((knifeId, level) -> events.add(SseEmitter.event().name("stock")
+                            .data(new StockLevelUpdate(knifeId, level, level > 0))));
+                    pendingLevels.clear();
+                    if (pendingKeepAlive) {
+                        events.add(SseEmitter.event().comment("keep-alive"));
+                        pendingKeepAlive = false;
+                    }
+                    if (events.isEmpty() || closed) {
+                        draining = false;
+                        return;
+                    }
+                }
+                for (SseEmitter.SseEventBuilder event : events) {
+                    if (!write(event)) {
+                        synchronized (this) {
+                            draining = false;
+                        }
+                        return;
+                    }
+                }
+            }
+        }
+
+        private boolean write(SseEmitter.SseEventBuilder event) {
+            sendStartedAt = System.currentTimeMillis();
+            try {
+                emitter.send(event);
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                close(e);
+                return false;
+            } finally {
+                sendStartedAt = 0;
+            }
+        }
+
+        private void close(Throwable error) {
+            // Client went away or stopped reading - completing triggers onCompletion, which unsubscribes too
+            unsubscribe(this);
+            emitter.completeWithError(error);
+        }
+    }
+}
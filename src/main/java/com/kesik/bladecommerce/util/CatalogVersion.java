@@ -0,0 +1,123 @@
+package com.kesik.bladecommerce.util;
+
+import com.kesik.bladecommerce.entity.Counter;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Monotonically increasing version of the catalog (knives + categories).
+ * Bumped on every catalog write and used to derive strong ETags for catalog reads.
+ *
+ * The version is the catalogVersion document in the counters collection, so every instance issues
+ * the same ETag for the same catalog state, whether or not it serves reads from the catalog snapshot.
+ * Reads are cached for cache-ms: a write on another instance may take that long to invalidate tags here.
+ * Stock-only writes (sales, hold releases, shard syncs) do not bump the counter one by one - they mark the
+ * version dirty and it is bumped once per cache-ms for all of them, so placements do not all write one document.
+ */
+@Component
+@Slf4j
+public class CatalogVersion {
+
+    private static final String COUNTER_ID = "catalogVersion";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${catalog.version.cache-ms:1000}")
+    private long cacheMs;
+
+    private volatile long version;
+    private volatile long readAt;
+
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    public CatalogVersion(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * A restart may ship a different response shape - tags issued before it must not match
+     */
+    @PostConstruct
+    public void init() {
+        bump();
+    }
+
+    public long current() {
+        if (System.currentTimeMillis() - readAt >= cacheMs) {
+            reload();
+        }
+        return version;
+    }
+
+    public long bump() {
+        increment();
+        return version;
+    }
+
+    /**
+     * Record a stock-only change; the version is bumped on the next tick together with every other one
+     */
+    public void markDirty() {
+        dirty.set(true);
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.version.cache-ms:1000}")
+    public void bumpIfDirty() {
+        if (dirty.getAndSet(false) && !increment()) {
+            dirty.set(true);
+        }
+    }
+
+    private boolean increment() {
+        try {
+            Counter counter = mongoTemplate.findAndModify(
+                    new Query(Criteria.where("_id").is(COUNTER_ID)),
+                    new Update().inc("value", 1),
+                    FindAndModifyOptions.options().returnNew(true).upsert(true),
+                    Counter.class);
+            if (counter != null) {
+                store(counter.getValue());
+            }
+            return true;
+        } catch (Exception e) {
+            // Tags stay at the last known version; the next read retries
+            log.warn("Catalog version bump failed: {}", e.getMessage());
+            readAt = 0;
+            return false;
+        }
+    }
+
+    /**
+     * Strong ETag for the current catalog version, e.g. "c-42"
+     */
+    public String etag() {
+        return "\"c-" + current() + "\"";
+    }
+
+    private void reload() {
+        try {
+            Counter counter = mongoTemplate.findById(COUNTER_ID, Counter.class);
+            store(counter != null ? counter.getValue() : 0);
+        } catch (Exception e) {
+            log.warn("Catalog version read failed: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void store(long value) {
+        // Never move backwards: a read that started before a bump may finish after it
+        if (value > version) {
+            version = value;
+        }
+        readAt = System.currentTimeMillis();
+    }
+}
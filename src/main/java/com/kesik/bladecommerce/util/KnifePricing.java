@@ -0,0 +1,41 @@
+package com.kesik.bladecommerce.util;
+
+import com.kesik.bladecommerce.dto.knife.KnifeDto;
+
+/**
+ * Derived pricing fields stored on knives so they can be indexed, sorted and filtered in MongoDB.
+ *
+ * discountPrice holds the discounted amount itself; percentageDiscount only controls whether the
+ * storefront shows the reduction as a percentage or as an amount.
+ */
+public final class KnifePricing {
+
+    private KnifePricing() {
+    }
+
+    /**
+     * Price the customer pays: the discount price when it is an actual reduction, otherwise the list price
+     */
+    public static double effectivePrice(double price, double discountPrice) {
+        return discountPrice > 0 && discountPrice < price ? discountPrice : price;
+    }
+
+    /**
+     * Reduction as a percentage of the list price, rounded to 2 decimals (0 when not on sale)
+     */
+    public static double discountPercent(double price, double discountPrice) {
+        if (price <= 0) {
+            return 0;
+        }
+        double reduction = price - effectivePrice(price, discountPrice);
+        return Math.round(reduction / price * 10000) / 100.0;
+    }
+
+    /**
+     * Recompute effectivePrice and discountPercent from price and discountPrice
+     */
+    public static void apply(KnifeDto knife) {
+        knife.setEffectivePrice(effectivePrice(knife.getPrice(), knife.getDiscountPrice()));
+        knife.setDiscountPercent(discountPercent(knife.getPrice(), knife.getDiscountPrice()));
+    }
+}
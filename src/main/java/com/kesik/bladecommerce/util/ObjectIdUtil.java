@@ -0,0 +1,21 @@
+package com.kesik.bladecommerce.util;
+
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+
+/**
+ * ObjectIds as time bounds: an ObjectId starts with its creation second, so ranges over _id are time ranges.
+ */
+public final class ObjectIdUtil {
+
+    private ObjectIdUtil() {
+    }
+
+    /**
+     * Smallest ObjectId of the instant's second - every id created at or after that second compares greater or equal
+     */
+    public static ObjectId floorOf(Instant instant) {
+        return new ObjectId(String.format("%08x%016x", instant.getEpochSecond(), 0L));
+    }
+}
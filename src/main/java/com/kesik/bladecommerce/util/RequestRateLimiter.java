@@ -0,0 +1,66 @@
+package com.kesik.bladecommerce.util;
+
+import com.kesik.bladecommerce.exception.TooManyRequestsException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fixed-window request limits per client for public write endpoints.
+ *
+ * Counters live in memory, so each instance enforces the limit on its own share of the traffic.
+ * Clients are identified by remote address (resolved through trusted proxies, see server.forward-headers-strategy).
+ */
+@Component
+public class RequestRateLimiter {
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    /**
+     * Count one request of the client against a limit
+     *
+     * @param bucket Name of the limited action, e.g. "reservations"
+     * @throws TooManyRequestsException if the client already made limit requests in the current window
+     */
+    public void check(String bucket, String clientKey, int limit, Duration window) {
+        long now = System.currentTimeMillis();
+        Window current = windows.compute(bucket + ":" + clientKey, (key, existing) ->
+                existing == null || existing.endsAt() <= now
+                        ? new Window(now + window.toMillis(), 1)
+                        : new Window(existing.endsAt(), existing.count() + 1));
+        if (current.count() > limit) {
+            throw new TooManyRequestsException("Too many requests, try again in "
+                    + Math.max(1, (current.endsAt() - now) / 1000) + " seconds");
+        }
+    }
+
+    /**
+     * Stable, non-reversible key for the calling client (the raw address is not stored anywhere)
+     */
+    public static String clientKey(HttpServletRequest request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(String.valueOf(request.getRemoteAddr()).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        windows.values().removeIf(window -> window.endsAt() <= now);
+    }
+
+    private record Window(long endsAt, int count) {
+    }
+}
@@ -0,0 +1,33 @@
+package com.kesik.bladecommerce.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter between retries of conflicting writes.
+ * Retrying at once lets the same concurrent placements collide again; a random pause spreads them out.
+ */
+public final class RetryBackoff {
+
+    private RetryBackoff() {
+    }
+
+    /**
+     * Sleep a random time in [0, min(maxMs, baseMs * 2^(attempt - 1))]
+     *
+     * @param attempt The attempt that just failed, starting at 1
+     * @return false if the thread was interrupted - the caller should stop retrying
+     */
+    public static boolean pause(long baseMs, long maxMs, int attempt) {
+        if (baseMs <= 0) {
+            return true;
+        }
+        long ceiling = Math.min(maxMs, baseMs << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.kesik.bladecommerce.util;
+
+import java.util.Locale;
+
+/**
+ * Turkish-aware text folding and URL slug generation.
+ * Folds ğ/ü/ş/ı/ö/ç (and their capitals) to ASCII so "Şef Bıçağı" matches "sef bicagi".
+ */
+public final class SlugUtil {
+
+    private SlugUtil() {
+    }
+
+    /**
+     * Lowercase and fold Turkish characters to ASCII, keeping all other characters.
+     */
+    public static String fold(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        StringBuilder folded = new StringBuilder(lower.length());
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            switch (c) {
+                case 'ğ' -> folded.append('g');
+                case 'ü' -> folded.append('u');
+                case 'ş' -> folded.append('s');
+                case 'ı' -> folded.append('i');
+                case 'ö' -> folded.append('o');
+                case 'ç' -> folded.append('c');
+                case '\u0307' -> { } // Combining dot left behind by lowercasing 'İ'
+                default -> folded.append(c);
+            }
+        }
+        return folded.toString();
+    }
+
+    /**
+     * Generate URL-friendly slug: "Şef Bıçağı 20cm" → "sef-bicagi-20cm"
+     */
+    public static String toSlug(String text) {
+        return fold(text)
+                .replaceAll("[^a-z0-9]+", "-")
+                .replaceAll("^-|-$", "");
+    }
+}
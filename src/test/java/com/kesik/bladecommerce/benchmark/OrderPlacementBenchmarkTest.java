@@ -0,0 +1,211 @@
+package com.kesik.bladecommerce.benchmark;
+
+import com.kesik.bladecommerce.BladeCommerceApplication;
+import com.kesik.bladecommerce.dto.iyzico.BasketItemDto;
+import com.kesik.bladecommerce.dto.iyzico.BuyerDto;
+import com.kesik.bladecommerce.dto.iyzico.OrderRequestDto;
+import com.kesik.bladecommerce.dto.knife.KnifeDto;
+import com.kesik.bladecommerce.dto.order.OrderDto;
+import com.kesik.bladecommerce.service.CatalogSnapshotService;
+import com.kesik.bladecommerce.service.OrderService;
+import org.bson.Document;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Order placement throughput and latency, compensating (orders.placement.transactional=false) vs transactional,
+ * against a single-node MongoDB replica set in Docker. Both modes run the same load on a fresh database:
+ * concurrent shoppers ordering 1-3 knives out of a small catalog, so placements contend on the same documents.
+ *
+ * Run with: mvn test -Pbenchmark [-Dbenchmark.threads=16 -Dbenchmark.orders=2000 -Dbenchmark.knives=20]
+ *
+ * Prints one result line per mode and checks that stock taken equals units ordered in both.
+ */
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class OrderPlacementBenchmarkTest {
+
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 16);
+    private static final int ORDERS = Integer.getInteger("benchmark.orders", 2000);
+    private static final int KNIVES = Integer.getInteger("benchmark.knives", 20);
+    private static final int WARMUP_ORDERS = Integer.getInteger("benchmark.warmup-orders", 200);
+    private static final int INITIAL_STOCK = 1_000_000;
+
+    @Container
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    @ParameterizedTest(name = "transactional={0}")
+    @ValueSource(booleans = {false, true})
+    void placeOrders(boolean transactional) throws Exception {
+        try (ConfigurableApplicationContext context = start(transactional)) {
+            MongoTemplate mongoTemplate = context.getBean(MongoTemplate.class);
+            OrderService orderService = context.getBean(OrderService.class);
+            List<String> knifeIds = seedKnives(mongoTemplate);
+            context.getBean(CatalogSnapshotService.class).refresh();
+
+            run(orderService, knifeIds, WARMUP_ORDERS);
+            Result result = run(orderService, knifeIds, ORDERS);
+            System.out.printf("%n[benchmark] mode=%s threads=%d knives=%d orders=%d failed=%d "
+                            + "throughput=%.1f orders/s p50=%.1f ms p95=%.1f ms p99=%.1f ms max=%.1f ms%n%n",
+                    transactional ? "transactional" : "compensating", THREADS, KNIVES, ORDERS, result.failed(),
+                    result.throughput(), result.percentile(50), result.percentile(95), result.percentile(99),
+                    result.percentile(100));
+
+            assertStockMatchesOrders(mongoTemplate, knifeIds);
+        }
+    }
+
+    private ConfigurableApplicationContext start(boolean transactional) {
+        return new SpringApplicationBuilder(BladeCommerceApplication.class)
+                .profiles("local")
+                .properties(
+                        "spring.data.mongodb.uri=" + MONGO.getReplicaSetUrl(transactional ? "bench_tx" : "bench_comp"),
+                        "orders.placement.transactional=" + transactional,
+                        "server.port=0",
+                        "spring.mail.host=localhost",
+                        "cors.allowed.origins=http://localhost",
+                        "cloudinary.cloud.name=benchmark",
+                        "cloudinary.api.key=benchmark",
+                        "cloudinary.api.secret=benchmark",
+                        "logging.level.com.kesik.bladecommerce=WARN")
+                .run();
+    }
+
+    private List<String> seedKnives(MongoTemplate mongoTemplate) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < KNIVES; i++) {
+            KnifeDto knife = new KnifeDto();
+            knife.setName("Benchmark knife " + i);
+            knife.setSlug("benchmark-knife-" + i);
+            knife.setCategoryId(1);
+            knife.setPrice(1000 + i);
+            knife.setEffectivePrice(1000 + i);
+            knife.setStockQuantity(INITIAL_STOCK);
+            ids.add(mongoTemplate.insert(knife).getId());
+        }
+        return ids;
+    }
+
+    private Result run(OrderService orderService, List<String> knifeIds, int orders) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger remaining = new AtomicInteger(orders);
+        AtomicInteger failed = new AtomicInteger();
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        CountDownLatch done = new CountDownLatch(THREADS);
+
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            executor.execute(() -> {
+                try {
+                    while (remaining.getAndDecrement() > 0) {
+                        OrderRequestDto request = randomOrder(knifeIds);
+                        long began = System.nanoTime();
+                        try {
+                            orderService.addOrder(request);
+                            latencies.add(System.nanoTime() - began);
+                        } catch (RuntimeException e) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        return new Result(sorted, failed.get(), elapsed);
+    }
+
+    private OrderRequestDto randomOrder(List<String> knifeIds) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<BasketItemDto> items = new ArrayList<>();
+        double total = 0;
+        List<String> shuffled = new ArrayList<>(knifeIds);
+        Collections.shuffle(shuffled, random);
+        for (String knifeId : shuffled.subList(0, Math.min(shuffled.size(), 1 + random.nextInt(3)))) {
+            BasketItemDto item = new BasketItemDto();
+            item.setId(knifeId);
+            item.setQuantity(1);
+            item.setPrice("1000");
+            items.add(item);
+            total += 1000;
+        }
+
+        BuyerDto buyer = new BuyerDto();
+        buyer.setName("Bench");
+        buyer.setSurname("Mark");
+        buyer.setEmail("bench@example.com");
+        buyer.setGsmNumber("+900000000000");
+
+        OrderRequestDto request = new OrderRequestDto();
+        request.setBuyer(buyer);
+        request.setBasketItems(items);
+        request.setPaidPrice(String.valueOf(total));
+        request.setSubtotal(total);
+        request.setShippingCost(0.0);
+        return request;
+    }
+
+    /**
+     * Units taken from each knife must equal the units in saved orders, in either mode
+     */
+    private void assertStockMatchesOrders(MongoTemplate mongoTemplate, List<String> knifeIds) {
+        Map<String, Integer> ordered = new HashMap<>();
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.unwind("knives"),
+                context -> new Document("$group", new Document("_id", "$knives._id")
+                        .append("units", new Document("$sum", "$knives.quantity"))));
+        mongoTemplate.aggregate(aggregation, mongoTemplate.getCollectionName(OrderDto.class), Document.class)
+                .forEach(result -> ordered.put(String.valueOf(result.get("_id")), ((Number) result.get("units")).intValue()));
+
+        for (String knifeId : knifeIds) {
+            KnifeDto knife = mongoTemplate.findById(knifeId, KnifeDto.class);
+            assertEquals(ordered.getOrDefault(knifeId, 0), INITIAL_STOCK - knife.getStockQuantity(),
+                    "Stock taken vs units ordered for knife " + knifeId);
+        }
+    }
+
+    private record Result(List<Long> latencies, int failed, long elapsedNanos) {
+
+        double throughput() {
+            return latencies.size() / (elapsedNanos / 1e9);
+        }
+
+        double percentile(int percentile) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * latencies.size()) - 1;
+            return latencies.get(Math.max(0, index)) / 1e6;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.kesik.bladecommerce.service.impl;
+
+import com.kesik.bladecommerce.entity.StockMovement;
+import com.kesik.bladecommerce.exception.InsufficientStockException;
+import com.kesik.bladecommerce.service.KnifeService;
+import com.kesik.bladecommerce.service.StockShardService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The ordered bulk stock decrement: a partial bulk is told apart by its tags and undone, lines the bulk
+ * could not take go through the single-item path, and holds come back exactly once.
+ */
+class KnifeStockBulkDecrementTest extends MongoIntegrationTestSupport {
+
+    private static ConfigurableApplicationContext context;
+    private static MongoTemplate mongoTemplate;
+    private static KnifeService knifeService;
+    private static StockShardService stockShardService;
+
+    @BeforeAll
+    static void start() {
+        context = startApplication("bulk-decrement");
+        mongoTemplate = context.getBean(MongoTemplate.class);
+        knifeService = context.getBean(KnifeService.class);
+        stockShardService = context.getBean(StockShardService.class);
+    }
+
+    @AfterAll
+    static void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    void takesEveryLine() {
+        String first = insertKnife(mongoTemplate, 10);
+        String second = insertKnife(mongoTemplate, 4);
+
+        knifeService.decrementStockBulk(quantities(first, 3, second, 4), null, StockMovement.Cause.ORDER);
+
+        assertEquals(7, available(mongoTemplate, first));
+        assertEquals(0, available(mongoTemplate, second));
+        assertNoHolds(mongoTemplate, first, second);
+    }
+
+    @Test
+    void partialBulkIsUndone() {
+        String plenty = insertKnife(mongoTemplate, 10);
+        String scarce = insertKnife(mongoTemplate, 1);
+        String after = insertKnife(mongoTemplate, 10);
+
+        // The ordered bulk stops at the scarce line; the re-read finds only the first line tagged
+        InsufficientStockException e = assertThrows(InsufficientStockException.class, () -> knifeService
+                .decrementStockBulk(quantities(plenty, 2, scarce, 3, after, 1), null, StockMovement.Cause.ORDER));
+
+        assertEquals(scarce, e.getKnifeId());
+        assertEquals(10, available(mongoTemplate, plenty));
+        assertEquals(1, available(mongoTemplate, scarce));
+        assertEquals(10, available(mongoTemplate, after));
+        assertNoHolds(mongoTemplate, plenty, scarce, after);
+    }
+
+    @Test
+    void missingKnifeUndoesLinesTakenSingly() {
+        String striped = insertKnife(mongoTemplate, 12);
+        stockShardService.enableStriping(striped, 4);
+        String plenty = insertKnife(mongoTemplate, 10);
+        String missing = UUID.randomUUID().toString();
+
+        assertThrows(IllegalArgumentException.class, () -> knifeService
+                .decrementStockBulk(quantities(plenty, 2, striped, 5, missing, 1), null, StockMovement.Cause.ORDER));
+
+        assertEquals(10, available(mongoTemplate, plenty));
+        assertEquals(12, available(mongoTemplate, striped));
+        assertNoHolds(mongoTemplate, plenty, striped);
+    }
+
+    @Test
+    void stripedLineFallsBackToShards() {
+        String plain = insertKnife(mongoTemplate, 10);
+        String striped = insertKnife(mongoTemplate, 12);
+        stockShardService.enableStriping(striped, 4);
+        String holdId = UUID.randomUUID().toString();
+
+        knifeService.decrementStockBulk(quantities(plain, 3, striped, 5), holdId, StockMovement.Cause.ORDER);
+
+        assertEquals(7, available(mongoTemplate, plain));
+        assertEquals(7, available(mongoTemplate, striped));
+
+        knifeService.clearStockHold(holdId, List.of(plain, striped));
+        assertNoHolds(mongoTemplate, plain, striped);
+    }
+
+    @Test
+    void holdIsReleasedOnce() {
+        String plain = insertKnife(mongoTemplate, 10);
+        String striped = insertKnife(mongoTemplate, 12);
+        stockShardService.enableStriping(striped, 4);
+        String holdId = UUID.randomUUID().toString();
+        Map<String, Integer> quantities = quantities(plain, 3, striped, 5);
+
+        knifeService.decrementStockBulk(quantities, holdId, StockMovement.Cause.ORDER);
+        knifeService.releaseStockHold(holdId, quantities);
+        knifeService.releaseStockHold(holdId, quantities);
+
+        assertEquals(10, available(mongoTemplate, plain));
+        assertEquals(12, available(mongoTemplate, striped));
+        assertNoHolds(mongoTemplate, plain, striped);
+    }
+
+    @Test
+    void concurrentBulksNeverOversell() throws Exception {
+        String first = insertKnife(mongoTemplate, 50);
+        String second = insertKnife(mongoTemplate, 80);
+        String striped = insertKnife(mongoTemplate, 60);
+        stockShardService.enableStriping(striped, 4);
+
+        AtomicInteger orders = new AtomicInteger();
+        List<CompletableFuture<Void>> buyers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            buyers.add(CompletableFuture.runAsync(() -> {
+                for (int attempt = 0; attempt < 30; attempt++) {
+                    try {
+                        knifeService.decrementStockBulk(quantities(first, 1, second, 2, striped, 1),
+                                null, StockMovement.Cause.ORDER);
+                        orders.incrementAndGet();
+                    } catch (InsufficientStockException e) {
+                        // Sold out
+                    }
+                }
+            }));
+        }
+        CompletableFuture.allOf(buyers.toArray(new CompletableFuture[0])).get();
+
+        // Stock taken equals the units of the orders that went through, whichever line ran out first
+        assertEquals(50 - orders.get(), available(mongoTemplate, first));
+        assertEquals(80 - 2 * orders.get(), available(mongoTemplate, second));
+        assertEquals(60 - orders.get(), available(mongoTemplate, striped));
+        assertNoHolds(mongoTemplate, first, second, striped);
+    }
+
+    private static Map<String, Integer> quantities(Object... idsAndQuantities) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (int i = 0; i < idsAndQuantities.length; i += 2) {
+            quantities.put((String) idsAndQuantities[i], (Integer) idsAndQuantities[i + 1]);
+        }
+        return quantities;
+    }
+}
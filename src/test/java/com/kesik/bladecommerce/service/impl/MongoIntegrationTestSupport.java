@@ -0,0 +1,102 @@
+package com.kesik.bladecommerce.service.impl;
+
+import com.kesik.bladecommerce.BladeCommerceApplication;
+import com.kesik.bladecommerce.dto.knife.KnifeDto;
+import com.kesik.bladecommerce.entity.StockShard;
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the application against a single-node MongoDB replica set in Docker, one database per test class.
+ * Skipped where Docker is not available. Background jobs are pushed out of the way, so tests drive the
+ * sweeps and recovery workers themselves.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+abstract class MongoIntegrationTestSupport {
+
+    private static final String DISABLED_INTERVAL = "3600000";
+
+    // Shared by every test class in the run; Testcontainers removes it when the JVM exits
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    @BeforeAll
+    static void startMongo() {
+        if (!MONGO.isRunning()) {
+            MONGO.start();
+        }
+    }
+
+    static ConfigurableApplicationContext startApplication(String database, String... properties) {
+        List<String> all = new ArrayList<>(List.of(
+                "spring.data.mongodb.uri=" + MONGO.getReplicaSetUrl(database),
+                "server.port=0",
+                "spring.mail.host=localhost",
+                "cors.allowed.origins=http://localhost",
+                "cloudinary.cloud.name=test",
+                "cloudinary.api.key=test",
+                "cloudinary.api.secret=test",
+                "logging.level.com.kesik.bladecommerce=WARN",
+                "stock.reservation.sweep-interval-ms=" + DISABLED_INTERVAL,
+                "orders.placement.intent.recovery-interval-ms=" + DISABLED_INTERVAL,
+                "stock.striping.sync-interval-ms=" + DISABLED_INTERVAL,
+                "catalog.snapshot.refresh-interval-ms=" + DISABLED_INTERVAL,
+                "analytics.products.refresh-interval-ms=" + DISABLED_INTERVAL));
+        all.addAll(List.of(properties));
+        return new SpringApplicationBuilder(BladeCommerceApplication.class)
+                .profiles("local")
+                .properties(all.toArray(new String[0]))
+                .run();
+    }
+
+    static String insertKnife(MongoTemplate mongoTemplate, int stock) {
+        KnifeDto knife = new KnifeDto();
+        knife.setName("Test knife");
+        knife.setCategoryId(1);
+        knife.setPrice(1000);
+        knife.setEffectivePrice(1000);
+        knife.setStockQuantity(stock);
+        return mongoTemplate.insert(knife).getId();
+    }
+
+    /**
+     * Units actually available: the shard sum while striped, the document's stockQuantity otherwise
+     */
+    static int available(MongoTemplate mongoTemplate, String knifeId) {
+        KnifeDto knife = mongoTemplate.findById(knifeId, KnifeDto.class);
+        if (!knife.isStockStriped()) {
+            return knife.getStockQuantity();
+        }
+        return shards(mongoTemplate, knifeId).stream().mapToInt(StockShard::getQuantity).sum();
+    }
+
+    /**
+     * No hold tag left on the knife document or any of its shards
+     */
+    static void assertNoHolds(MongoTemplate mongoTemplate, String... knifeIds) {
+        Stream.of(knifeIds).forEach(knifeId -> {
+            KnifeDto knife = mongoTemplate.findById(knifeId, KnifeDto.class);
+            assertTrue(knife.getStockHolds() == null || knife.getStockHolds().isEmpty(),
+                    "Hold tags left on knife " + knifeId + ": " + knife.getStockHolds());
+            for (StockShard shard : shards(mongoTemplate, knifeId)) {
+                assertTrue(shard.getHolds() == null || shard.getHolds().isEmpty(),
+                        "Hold tags left on shard " + shard.getId() + ": " + shard.getHolds());
+            }
+        });
+    }
+
+    static List<StockShard> shards(MongoTemplate mongoTemplate, String knifeId) {
+        return mongoTemplate.find(new Query(Criteria.where("knifeId").is(knifeId)), StockShard.class);
+    }
+}
@@ -0,0 +1,204 @@
+package com.kesik.bladecommerce.service.impl;
+
+import com.kesik.bladecommerce.dto.order.KnifeOrderDto;
+import com.kesik.bladecommerce.dto.order.OrderDto;
+import com.kesik.bladecommerce.dto.stock.StockCheckRequest;
+import com.kesik.bladecommerce.entity.OrderPlacementIntent;
+import com.kesik.bladecommerce.entity.StockMovement;
+import com.kesik.bladecommerce.entity.StockReservation;
+import com.kesik.bladecommerce.service.KnifeService;
+import com.kesik.bladecommerce.service.OrderPlacementIntentService;
+import com.kesik.bladecommerce.service.StockReservationService;
+import com.kesik.bladecommerce.service.StockShardService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Order placement intents: complete, compensate and the stale recovery worker may all reach the same intent,
+ * and whichever combination runs, stock taken equals the units of the orders that were saved.
+ */
+class OrderPlacementIntentRecoveryTest extends MongoIntegrationTestSupport {
+
+    private static ConfigurableApplicationContext context;
+    private static MongoTemplate mongoTemplate;
+    private static OrderPlacementIntentService intentService;
+    private static KnifeService knifeService;
+    private static StockShardService stockShardService;
+    private static StockReservationService reservationService;
+
+    @BeforeAll
+    static void start() {
+        context = startApplication("placement-intents", "orders.placement.intent.stale-after-seconds=0");
+        mongoTemplate = context.getBean(MongoTemplate.class);
+        intentService = context.getBean(OrderPlacementIntentService.class);
+        knifeService = context.getBean(KnifeService.class);
+        stockShardService = context.getBean(StockShardService.class);
+        reservationService = context.getBean(StockReservationService.class);
+    }
+
+    @AfterAll
+    static void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    void compensateReturnsStockOnce() {
+        String plain = insertKnife(mongoTemplate, 10);
+        String striped = stripedKnife(12);
+        String intentId = placeWithoutOrder(plain, 3, striped, 5);
+
+        intentService.compensate(intentId);
+        intentService.compensate(intentId);
+
+        assertEquals(10, available(mongoTemplate, plain));
+        assertEquals(12, available(mongoTemplate, striped));
+        assertNoHolds(mongoTemplate, plain, striped);
+        assertEquals(OrderPlacementIntent.Status.COMPENSATED, status(intentId));
+    }
+
+    @Test
+    void concurrentRecoveryReturnsStockOnce() throws Exception {
+        String plain = insertKnife(mongoTemplate, 10);
+        String striped = stripedKnife(12);
+        String intentId = placeWithoutOrder(plain, 3, striped, 5);
+        makeStale(intentId);
+
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            workers.add(CompletableFuture.runAsync(() -> {
+                try {
+                    barrier.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                intentService.recoverStale();
+            }));
+        }
+        CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).get();
+
+        assertEquals(10, available(mongoTemplate, plain));
+        assertEquals(12, available(mongoTemplate, striped));
+        assertNoHolds(mongoTemplate, plain, striped);
+        assertEquals(OrderPlacementIntent.Status.COMPENSATED, status(intentId));
+    }
+
+    @Test
+    void recoveryBeforeTheDecrementReturnsNothing() {
+        String plain = insertKnife(mongoTemplate, 10);
+        String intentId = intentService.begin(null);
+        // The placement died between recording its stock and decrementing it
+        intentService.recordStock(intentId, quantities(plain, 3), Map.of());
+        makeStale(intentId);
+
+        intentService.recoverStale();
+
+        assertEquals(10, available(mongoTemplate, plain));
+        assertEquals(OrderPlacementIntent.Status.COMPENSATED, status(intentId));
+    }
+
+    @Test
+    void savedOrderKeepsItsStock() {
+        String plain = insertKnife(mongoTemplate, 10);
+        String striped = stripedKnife(12);
+        String intentId = placeWithoutOrder(plain, 3, striped, 5);
+        // The order was saved, but the placement died before completing its intent
+        saveOrder(intentId, plain, 3, striped, 5);
+        makeStale(intentId);
+
+        intentService.recoverStale();
+        intentService.complete(intentId);
+        intentService.compensate(intentId);
+
+        assertEquals(7, available(mongoTemplate, plain));
+        assertEquals(7, available(mongoTemplate, striped));
+        assertNoHolds(mongoTemplate, plain, striped);
+        assertEquals(OrderPlacementIntent.Status.COMPLETED, status(intentId));
+    }
+
+    @Test
+    void compensateReleasesConfirmedReservationOnce() {
+        String plain = insertKnife(mongoTemplate, 10);
+        String reservationId = reservationService.reserve(List.of(new StockCheckRequest(plain, 4)), null)
+                .getReservationId();
+        String intentId = intentService.begin(reservationId);
+        reservationService.confirm(reservationId, intentId);
+        assertEquals(6, available(mongoTemplate, plain));
+
+        intentService.compensate(intentId);
+        intentService.resolve(intentId);
+
+        assertEquals(10, available(mongoTemplate, plain));
+        assertEquals(StockReservation.Status.RELEASED,
+                mongoTemplate.findById(reservationId, StockReservation.class).getStatus());
+        assertEquals(OrderPlacementIntent.Status.COMPENSATED, status(intentId));
+    }
+
+    /**
+     * Begin an intent and take its stock, as a placement does before saving the order
+     */
+    private static String placeWithoutOrder(Object... idsAndQuantities) {
+        Map<String, Integer> decrements = quantities(idsAndQuantities);
+        String intentId = intentService.begin(null);
+        intentService.recordStock(intentId, decrements, Map.of());
+        knifeService.decrementStockBulk(decrements, intentId, StockMovement.Cause.ORDER);
+        return intentId;
+    }
+
+    private static void saveOrder(String intentId, Object... idsAndQuantities) {
+        List<KnifeOrderDto> lines = new ArrayList<>();
+        quantities(idsAndQuantities).forEach((knifeId, quantity) -> {
+            KnifeOrderDto line = new KnifeOrderDto();
+            line.setId(knifeId);
+            line.setName("Test knife");
+            line.setPrice(1000);
+            line.setQuantity(quantity);
+            lines.add(line);
+        });
+        OrderDto order = new OrderDto();
+        order.setKnives(lines);
+        order.setPlacementIntentId(intentId);
+        mongoTemplate.insert(order);
+    }
+
+    private static String stripedKnife(int stock) {
+        String knifeId = insertKnife(mongoTemplate, stock);
+        stockShardService.enableStriping(knifeId, 4);
+        return knifeId;
+    }
+
+    private static void makeStale(String intentId) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(intentId)),
+                new Update().set("createdAt", Instant.now().minusSeconds(60)), OrderPlacementIntent.class);
+    }
+
+    private static OrderPlacementIntent.Status status(String intentId) {
+        return mongoTemplate.findById(intentId, OrderPlacementIntent.class).getStatus();
+    }
+
+    private static Map<String, Integer> quantities(Object... idsAndQuantities) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (int i = 0; i < idsAndQuantities.length; i += 2) {
+            quantities.put((String) idsAndQuantities[i], (Integer) idsAndQuantities[i + 1]);
+        }
+        return quantities;
+    }
+}
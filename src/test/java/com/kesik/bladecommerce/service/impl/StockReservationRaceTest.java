@@ -0,0 +1,179 @@
+package com.kesik.bladecommerce.service.impl;
+
+import com.kesik.bladecommerce.dto.stock.StockCheckRequest;
+import com.kesik.bladecommerce.entity.StockMovement;
+import com.kesik.bladecommerce.entity.StockReservation;
+import com.kesik.bladecommerce.service.KnifeService;
+import com.kesik.bladecommerce.service.StockReservationService;
+import com.kesik.bladecommerce.service.StockShardService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Stock reservations: every unit a reservation takes comes back exactly once, whichever of confirm, release
+ * and the expiry sweep gets to it first, and also when the reserving process died half way.
+ */
+class StockReservationRaceTest extends MongoIntegrationTestSupport {
+
+    private static ConfigurableApplicationContext context;
+    private static MongoTemplate mongoTemplate;
+    private static StockReservationService reservationService;
+    private static KnifeService knifeService;
+    private static StockShardService stockShardService;
+
+    @BeforeAll
+    static void start() {
+        context = startApplication("reservations");
+        mongoTemplate = context.getBean(MongoTemplate.class);
+        reservationService = context.getBean(StockReservationService.class);
+        knifeService = context.getBean(KnifeService.class);
+        stockShardService = context.getBean(StockShardService.class);
+    }
+
+    @AfterAll
+    static void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    void failedReserveReturnsEveryLine() {
+        String plenty = insertKnife(mongoTemplate, 5);
+        String scarce = insertKnife(mongoTemplate, 1);
+
+        assertThrows(IllegalStateException.class, () -> reservationService.reserve(
+                List.of(new StockCheckRequest(plenty, 2), new StockCheckRequest(scarce, 3)), null));
+
+        assertEquals(5, available(mongoTemplate, plenty));
+        assertEquals(1, available(mongoTemplate, scarce));
+        assertNoHolds(mongoTemplate, plenty, scarce);
+        assertEquals(0, mongoTemplate.count(new Query(Criteria.where("items.knifeId").is(plenty)
+                .and("status").ne(StockReservation.Status.RELEASED)), StockReservation.class));
+    }
+
+    @Test
+    void reservationTakesStockAndDropsItsTags() {
+        String knifeId = insertKnife(mongoTemplate, 10);
+        String stripedId = insertKnife(mongoTemplate, 12);
+        stockShardService.enableStriping(stripedId, 4);
+
+        String reservationId = reservationService.reserve(
+                List.of(new StockCheckRequest(knifeId, 3), new StockCheckRequest(stripedId, 5)), null).getReservationId();
+
+        assertEquals(StockReservation.Status.ACTIVE, status(reservationId));
+        assertEquals(7, available(mongoTemplate, knifeId));
+        assertEquals(7, available(mongoTemplate, stripedId));
+        assertNoHolds(mongoTemplate, knifeId, stripedId);
+
+        reservationService.release(reservationId);
+        reservationService.release(reservationId);
+        assertEquals(10, available(mongoTemplate, knifeId));
+        assertEquals(12, available(mongoTemplate, stripedId));
+    }
+
+    @Test
+    void confirmReleaseAndExpiryHaveOneWinner() throws Exception {
+        String knifeId = insertKnife(mongoTemplate, 1000);
+        int expected = 1000;
+        for (int round = 0; round < 25; round++) {
+            String reservationId = reservationService.reserve(List.of(new StockCheckRequest(knifeId, 2)), null).getReservationId();
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(reservationId)),
+                    new Update().set("expiresAt", Instant.now().minusSeconds(1)), StockReservation.class);
+
+            CyclicBarrier barrier = new CyclicBarrier(3);
+            CompletableFuture.allOf(
+                    CompletableFuture.runAsync(() -> awaitThen(barrier, () -> reservationService.confirm(reservationId, null))),
+                    CompletableFuture.runAsync(() -> awaitThen(barrier, () -> reservationService.release(reservationId))),
+                    CompletableFuture.runAsync(() -> awaitThen(barrier, reservationService::releaseExpired))
+            ).get();
+
+            // A confirmed reservation's units now belong to an order; a released one's are back on the shelf
+            if (status(reservationId) == StockReservation.Status.CONFIRMED) {
+                expected -= 2;
+            }
+            assertEquals(expected, available(mongoTemplate, knifeId), "Round " + round);
+        }
+    }
+
+    @Test
+    void reserveThatDiedHalfWayIsReleasedOnce() {
+        String knifeId = insertKnife(mongoTemplate, 10);
+        String stripedId = insertKnife(mongoTemplate, 12);
+        stockShardService.enableStriping(stripedId, 4);
+
+        // What a reserve call leaves behind when its process dies after taking stock, before activating
+        String reservationId = UUID.randomUUID().toString();
+        Instant longAgo = Instant.now().minusSeconds(3600);
+        mongoTemplate.insert(StockReservation.builder()
+                .id(reservationId)
+                .items(List.of(new StockReservation.Item(knifeId, 3), new StockReservation.Item(stripedId, 5)))
+                .status(StockReservation.Status.PENDING)
+                .createdAt(longAgo)
+                .expiresAt(longAgo.plusSeconds(600))
+                .build());
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        quantities.put(knifeId, 3);
+        quantities.put(stripedId, 5);
+        knifeService.decrementStockBulk(quantities, reservationId, StockMovement.Cause.RESERVATION);
+        assertEquals(7, available(mongoTemplate, knifeId));
+        assertEquals(7, available(mongoTemplate, stripedId));
+
+        reservationService.releaseExpired();
+        reservationService.releaseExpired();
+
+        assertEquals(StockReservation.Status.RELEASED, status(reservationId));
+        assertEquals(10, available(mongoTemplate, knifeId));
+        assertEquals(12, available(mongoTemplate, stripedId));
+        assertNoHolds(mongoTemplate, knifeId, stripedId);
+    }
+
+    @Test
+    void reserveThatDiedBeforeTakingStockReturnsNothing() {
+        String knifeId = insertKnife(mongoTemplate, 10);
+        String reservationId = UUID.randomUUID().toString();
+        Instant longAgo = Instant.now().minusSeconds(3600);
+        mongoTemplate.insert(StockReservation.builder()
+                .id(reservationId)
+                .items(List.of(new StockReservation.Item(knifeId, 3)))
+                .status(StockReservation.Status.PENDING)
+                .createdAt(longAgo)
+                .expiresAt(longAgo.plusSeconds(600))
+                .build());
+
+        reservationService.releaseExpired();
+
+        assertEquals(StockReservation.Status.RELEASED, status(reservationId));
+        assertEquals(10, available(mongoTemplate, knifeId));
+    }
+
+    private static StockReservation.Status status(String reservationId) {
+        return mongoTemplate.findById(reservationId, StockReservation.class).getStatus();
+    }
+
+    private static void awaitThen(CyclicBarrier barrier, Runnable action) {
+        try {
+            barrier.await();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        action.run();
+    }
+}
@@ -0,0 +1,129 @@
+package com.kesik.bladecommerce.service.impl;
+
+import com.kesik.bladecommerce.dto.knife.KnifeDto;
+import com.kesik.bladecommerce.entity.StockMovement;
+import com.kesik.bladecommerce.entity.StockShard;
+import com.kesik.bladecommerce.exception.InsufficientStockException;
+import com.kesik.bladecommerce.service.KnifeService;
+import com.kesik.bladecommerce.service.StockShardService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Striped stock: decrements gather fragmented stock across shards, put partial takes back when they fail,
+ * and fall back to the knife document when the shards are gone.
+ */
+class StockShardFallbackTest extends MongoIntegrationTestSupport {
+
+    private static ConfigurableApplicationContext context;
+    private static MongoTemplate mongoTemplate;
+    private static KnifeService knifeService;
+    private static StockShardService stockShardService;
+
+    @BeforeAll
+    static void start() {
+        context = startApplication("shards");
+        mongoTemplate = context.getBean(MongoTemplate.class);
+        knifeService = context.getBean(KnifeService.class);
+        stockShardService = context.getBean(StockShardService.class);
+    }
+
+    @AfterAll
+    static void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    void decrementGathersFragmentedStock() {
+        String knifeId = insertKnife(mongoTemplate, 8);
+        stockShardService.enableStriping(knifeId, 4);
+
+        // 2 units per shard, so 7 can only be served by gathering from every shard
+        knifeService.decrementStockAtomic(knifeId, 7, StockMovement.Cause.ORDER);
+
+        assertEquals(1, available(mongoTemplate, knifeId));
+        assertNoHolds(mongoTemplate, knifeId);
+    }
+
+    @Test
+    void failedGatherPutsUnitsBack() {
+        String knifeId = insertKnife(mongoTemplate, 8);
+        stockShardService.enableStriping(knifeId, 4);
+
+        assertThrows(InsufficientStockException.class,
+                () -> knifeService.decrementStockAtomic(knifeId, 9, StockMovement.Cause.ORDER));
+
+        assertEquals(8, available(mongoTemplate, knifeId));
+        assertEquals(4, shards(mongoTemplate, knifeId).size());
+        assertNoHolds(mongoTemplate, knifeId);
+    }
+
+    @Test
+    void staleStripedFlagFallsBackToKnifeDocument() {
+        String knifeId = insertKnife(mongoTemplate, 8);
+        stockShardService.enableStriping(knifeId, 4);
+
+        // Striping undone behind the catalog snapshot's back: it still routes this knife to its shards
+        mongoTemplate.remove(new Query(Criteria.where("knifeId").is(knifeId)), StockShard.class);
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(knifeId)),
+                new Update().set("stockStriped", false).set("stockQuantity", 8), KnifeDto.class);
+
+        knifeService.decrementStockAtomic(knifeId, 3, StockMovement.Cause.ORDER);
+
+        assertEquals(5, available(mongoTemplate, knifeId));
+        assertFalse(mongoTemplate.findById(knifeId, KnifeDto.class).isStockStriped());
+    }
+
+    @Test
+    void decrementsDuringDisableStripingNeverLoseStock() throws Exception {
+        int initial = 400;
+        for (int round = 0; round < 5; round++) {
+            String knifeId = insertKnife(mongoTemplate, initial);
+            stockShardService.enableStriping(knifeId, 8);
+
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicInteger taken = new AtomicInteger();
+            List<CompletableFuture<Void>> buyers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                buyers.add(CompletableFuture.runAsync(() -> {
+                    for (int attempt = 0; running.get(); attempt++) {
+                        int quantity = 1 + attempt % 3;
+                        try {
+                            knifeService.decrementStockAtomic(knifeId, quantity, StockMovement.Cause.ORDER);
+                            taken.addAndGet(quantity);
+                        } catch (InsufficientStockException e) {
+                            // Shard removed under the take; the partial take was put back
+                        }
+                    }
+                }));
+            }
+            // Let the buyers get going on the shards first
+            Thread.sleep(50);
+            stockShardService.disableStriping(knifeId);
+            Thread.sleep(50);
+            running.set(false);
+            CompletableFuture.allOf(buyers.toArray(new CompletableFuture[0])).get();
+
+            assertEquals(initial - taken.get(), available(mongoTemplate, knifeId), "Round " + round);
+            assertEquals(0, shards(mongoTemplate, knifeId).size());
+        }
+    }
+}